@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * BatchEvaluator.java
+ *
+ * <code>BatchEvaluator</code> scores many positions at once.  The
+ * positions are snapshots written by <code>BoardSnapshot.encode</code>;
+ * they are split into chunks that are evaluated in parallel, each chunk
+ * restoring its positions one after another onto a single board taken
+ * from a pool.  The results come back as a <code>PositionScores</code>.
+ */
+public class BatchEvaluator {
+
+    /** The number of positions evaluated together on one board. */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    /** The boards the chunks are evaluated on. */
+    private BoardPool<SolitaireBoard> boards;
+
+    /** The number of positions per chunk. */
+    private int chunkSize;
+
+    /**
+     * Creates a new <code>BatchEvaluator</code> instance for positions of
+     * one kind of game.
+     * @param layout the layout of the boards the snapshots were taken from
+     * @param rules the rules of the game
+     * @param decks the number of decks
+     */
+    public BatchEvaluator(final BoardGeometry layout, final RuleSet rules, final int decks) {
+        this(layout, rules, decks, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new <code>BatchEvaluator</code> instance for positions of
+     * one kind of game.
+     * @param layout the layout of the boards the snapshots were taken from
+     * @param rules the rules of the game
+     * @param decks the number of decks
+     * @param positionsPerChunk the number of positions evaluated together
+     */
+    public BatchEvaluator(final BoardGeometry layout, final RuleSet rules, final int decks,
+                          int positionsPerChunk) {
+        if (positionsPerChunk < 1) {
+            throw new IllegalArgumentException("chunk size " + positionsPerChunk);
+        }
+        chunkSize = positionsPerChunk;
+        boards = new BoardPool<SolitaireBoard>(Runtime.getRuntime().availableProcessors(),
+            new Supplier<SolitaireBoard>() {
+                public SolitaireBoard get() {
+                    return new SolitaireBoard(layout, rules, decks);
+                }
+            });
+    }
+
+    /**
+     * Evaluates a batch of positions.  A snapshot that cannot be restored
+     * is marked invalid rather than failing the batch.
+     * @param snapshots the positions, as written by <code>BoardSnapshot.encode</code>
+     * @return the figures of every position, in the order given.
+     */
+    public PositionScores evaluate(final byte[][] snapshots) {
+        final PositionScores scores = new PositionScores(snapshots.length);
+        int chunks = (snapshots.length + chunkSize - 1) / chunkSize;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * chunkSize;
+            int to = Math.min(snapshots.length, from + chunkSize);
+            evaluate(snapshots, from, to, scores);
+        });
+        return scores;
+    }
+
+    /**
+     * Evaluates the positions from <code>from</code> up to <code>to</code>
+     * on one board.
+     */
+    private void evaluate(byte[][] snapshots, int from, int to, PositionScores scores) {
+        SolitaireBoard board = boards.acquire();
+        List<Move> moves = new ArrayList<Move>();
+        try {
+            for (int k = from; k < to; k++) {
+                try {
+                    BoardSnapshot.decode(snapshots[k], board);
+                } catch (IllegalArgumentException e) {
+                    scores.setInvalid(k);
+                    continue;
+                }
+                board.legalMoves(moves);
+                int foundation = 0;
+                for (int f = 0; f < board.foundationCount(); f++) {
+                    foundation += board.fPileSize(f);
+                }
+                int faceDown = board.faceDownCount();
+                boolean possible = board.anotherPlayIsPossible();
+                scores.set(k, moves.size(), possible, foundation, faceDown,
+                           score(board, moves.size(), possible, foundation, faceDown));
+            }
+        } finally {
+            boards.release(board);
+        }
+    }
+
+    /**
+     * Works out the heuristic score of a position: ten points for every
+     * foundation card, less five for every face-down card and one for
+     * every card left in the stock and waste, plus one for every legal
+     * move.  A won position scores the most a game of its size can; a
+     * position with no play left loses a hundred points.
+     * @param board the board holding the position
+     * @param legalMoves the number of legal moves
+     * @param playPossible whether another play is possible
+     * @param foundationCards the number of foundation cards
+     * @param faceDownCards the number of face-down cards
+     * @return the score; higher is better.
+     */
+    public static int score(Board board, int legalMoves, boolean playPossible,
+                            int foundationCards, int faceDownCards) {
+        if (board.gameIsWon()) {
+            return 10 * board.cardCount();
+        }
+        int score = 10 * foundationCards - 5 * faceDownCards
+            - board.deckSize() - board.wasteSize() + legalMoves;
+        return playPossible ? score : score - 100;
+    }
+}
@@ -1,24 +1,49 @@
 import java.awt.Point;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This class represents a Board that can be used in a collection
  * of solitaire games similar to Elevens.  The variants differ in
  * card removal and the board size.
+ * <p>
+ * A board can be forked for lookahead: see <code>fork</code>.  The fork
+ * shares the columns, foundations, stock and deck with the board until
+ * one of the two writes to them, so making one costs no more than a few
+ * small arrays, and a move on either board copies only the piles it
+ * touches.
  */
 public abstract class Board {
 
     /**
-     * The cards on this board.
+     * The layout of this board.
      */
-    private Card[][] tableau;
-    
-    private ArrayList<ArrayList<Card>> foundation;
-    
-    private ArrayList<Card> deckPile;
+    private BoardGeometry geometry;
+
+    /**
+     * The tableau columns, bottom card first.  The face-down cards of a
+     * column are at the bottom of its stack.
+     */
+    private CardStack[] columns;
+
+    /**
+     * The number of face-down cards at the bottom of each column.
+     */
+    private int[] faceDown;
+
+    /**
+     * The number of face-down cards on the whole tableau, kept up to date
+     * as cards are turned over so that it never needs a scan.
+     */
+    private int faceDownTotal;
+
+    private CardStack[] foundation;
     
-    private int[] tPiles;
+    /**
+     * The stock and the waste.
+     */
+    private StockPile stock;
 
     /**
      * The deck of cards being used to play the current game.
@@ -26,9 +51,56 @@ public abstract class Board {
     private Deck deck;
 
     /**
-     * Flag used to control debugging print statements.
+     * The rules of the game played on this board.
+     */
+    private RuleSet ruleSet;
+
+    /**
+     * The rules, compiled for the deck.
+     */
+    private RuleTable rules;
+
+    /**
+     * Spots positions that can no longer be won.
+     */
+    private DeadEndDetector deadEnds;
+
+    /**
+     * Receives the events of this board, or null if nobody is listening.
      */
-    private static final boolean I_AM_DEBUGGING = true;
+    private GameListener listener;
+
+    /**
+     * The number of moves made in the current game.
+     */
+    private int movesMade;
+
+    /**
+     * Flight Recorder event timing the current game, reused from game
+     * to game.
+     */
+    private JfrGameEvent gameEvent;
+
+    /**
+     * Whether each column is shared with a fork, and must be copied before
+     * it is written to.
+     */
+    private boolean[] sharedColumns;
+
+    /**
+     * Whether each foundation pile is shared with a fork.
+     */
+    private boolean[] sharedFoundations;
+
+    /**
+     * Whether the stock is shared with a fork.
+     */
+    private boolean sharedStock;
+
+    /**
+     * Whether the deck is shared with a fork.
+     */
+    private boolean sharedDeck;
 
     /**
      * Creates a new <code>Board</code> instance.
@@ -39,55 +111,419 @@ public abstract class Board {
      *                    the deck
      */
     public Board(String[] ranks, String[] suits, int[] pointValues) {
-        int columns = 7;
-        int rows = 12;
-        tableau = new Card[rows][columns];
-        foundation = new ArrayList<ArrayList<Card>>(4);
-        deckPile = new ArrayList<Card>();
-        tPiles = new int[7];
-        for (int fPile = 0; fPile < 4; fPile++) {
-            foundation.add(new ArrayList<Card>());
-        }
-        for (int tPileIndex = 0; tPileIndex < 7; tPileIndex++) {
-            tPiles[tPileIndex] = tPileIndex +1;
-            if (I_AM_DEBUGGING) {
-                //System.out.println(tPiles[tPileIndex-1]);
-            }
+        this(BoardGeometry.STANDARD, ranks, suits, pointValues);
+    }
+
+    /**
+     * Creates a new <code>Board</code> instance with a given layout.
+     * @param layout the number of columns, foundations and visible rows
+     * @param ranks the names of the card ranks needed to create the deck
+     * @param suits the names of the card suits needed to create the deck
+     * @param pointValues the integer values of the cards needed to create
+     *                    the deck
+     */
+    public Board(BoardGeometry layout, String[] ranks, String[] suits, int[] pointValues) {
+        this(layout, 1, ranks, suits, pointValues);
+    }
+
+    /**
+     * Creates a new <code>Board</code> instance with a given layout, played
+     * with several decks shuffled together.
+     * @param layout the number of columns, foundations and visible rows
+     * @param decks the number of decks
+     * @param ranks the names of the card ranks needed to create the deck
+     * @param suits the names of the card suits needed to create the deck
+     * @param pointValues the integer values of the cards needed to create
+     *                    the deck
+     */
+    public Board(BoardGeometry layout, int decks,
+                 String[] ranks, String[] suits, int[] pointValues) {
+        this(layout, RuleSet.KLONDIKE, decks, ranks, suits, pointValues);
+    }
+
+    /**
+     * Creates a new <code>Board</code> instance with a given layout and
+     * rules, played with several decks shuffled together.
+     * @param layout the number of columns, foundations and visible rows
+     * @param gameRules the rules of the variant played
+     * @param decks the number of decks
+     * @param ranks the names of the card ranks needed to create the deck
+     * @param suits the names of the card suits needed to create the deck
+     * @param pointValues the integer values of the cards needed to create
+     *                    the deck
+     */
+    public Board(BoardGeometry layout, RuleSet gameRules, int decks,
+                 String[] ranks, String[] suits, int[] pointValues) {
+        geometry = layout;
+        ruleSet = gameRules;
+        rules = gameRules.compile(ranks, suits, pointValues);
+        columns = new CardStack[layout.columns()];
+        faceDown = new int[layout.columns()];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = new CardStack();
         }
-        deck = new Deck(ranks, suits, pointValues);
-        if (I_AM_DEBUGGING) {
-            System.out.println(deck);
-            System.out.println("----------");
+        foundation = new CardStack[layout.foundations()];
+        for (int fPile = 0; fPile < foundation.length; fPile++) {
+            foundation[fPile] = new CardStack();
         }
+        sharedColumns = new boolean[columns.length];
+        sharedFoundations = new boolean[foundation.length];
+        deck = new Deck(ranks, suits, pointValues, decks);
+        stock = new StockPile(deck.cardCount(), gameRules.drawCount(), gameRules.recycleLimit());
+        gameEvent = new JfrGameEvent();
+        deadEnds = new DeadEndDetector(this);
         dealMyCards();
     }
 
+    /**
+     * Creates a fork of a <code>Board</code>, for <code>fork</code>.  The
+     * piles and the deck are shared, not copied: both boards mark them
+     * shared, and whichever writes to one first copies it.  The fork has
+     * no listeners.
+     * @param original the board to fork; it is changed only in that its
+     *                 piles become shared
+     */
+    protected Board(Board original) {
+        geometry = original.geometry;
+        ruleSet = original.ruleSet;
+        rules = original.rules;
+        columns = original.columns.clone();
+        faceDown = original.faceDown.clone();
+        faceDownTotal = original.faceDownTotal;
+        foundation = original.foundation.clone();
+        stock = original.stock;
+        deck = original.deck;
+        deadEnds = original.deadEnds;
+        movesMade = original.movesMade;
+        gameEvent = new JfrGameEvent();
+        gameEvent.begin();
+        sharedColumns = new boolean[columns.length];
+        sharedFoundations = new boolean[foundation.length];
+        original.shareAll();
+        shareAll();
+    }
+
+    /**
+     * Makes a copy of this board to try moves on, such as a rollout, a
+     * hint or a branch of a search handed to another thread.  Nothing is
+     * copied up front: the fork shares every pile with this board, and
+     * the first write to a pile on either board copies that pile alone.
+     * Moves on the fork never show on this board, nor the other way
+     * round.  The fork starts with no listeners and is played on like
+     * any board.
+     * <p>
+     * A board is used by one thread at a time, and so is everything made
+     * to work on it, such as a <code>Solver</code>, its
+     * <code>MoveOrdering</code>, a <code>DeadEndDetector</code>,
+     * <code>DealFeatures</code> or a <code>CanonicalPosition</code>.  To
+     * work on a position from several threads, give each thread a fork:
+     * a fork may be handed to another thread once made, but the forking
+     * itself must be done by the thread that plays on this board.
+     * @return the fork.
+     */
+    public abstract Board fork();
+
+    /**
+     * Marks every pile and the deck as shared with a fork.
+     */
+    private void shareAll() {
+        Arrays.fill(sharedColumns, true);
+        Arrays.fill(sharedFoundations, true);
+        sharedStock = true;
+        sharedDeck = true;
+    }
+
+    /**
+     * Accesses a column to write to, copying it first if it is shared.
+     */
+    private CardStack ownColumn(int c) {
+        if (sharedColumns[c]) {
+            columns[c] = new CardStack(columns[c]);
+            sharedColumns[c] = false;
+        }
+        return columns[c];
+    }
+
+    /**
+     * Accesses a foundation pile to write to, copying it first if it is
+     * shared.
+     */
+    private CardStack ownFoundation(int fPileIndex) {
+        if (sharedFoundations[fPileIndex]) {
+            foundation[fPileIndex] = new CardStack(foundation[fPileIndex]);
+            sharedFoundations[fPileIndex] = false;
+        }
+        return foundation[fPileIndex];
+    }
+
+    /**
+     * Accesses the stock to write to, copying it first if it is shared.
+     */
+    private StockPile ownStock() {
+        if (sharedStock) {
+            stock = new StockPile(stock);
+            sharedStock = false;
+        }
+        return stock;
+    }
+
+    /**
+     * Accesses the deck to shuffle or deal from, copying it first if it
+     * is shared.
+     */
+    private Deck ownDeck() {
+        if (sharedDeck) {
+            deck = new Deck(deck);
+            sharedDeck = false;
+        }
+        return deck;
+    }
+
     /**
      * Start a new game by shuffling the deck and
-     * dealing some cards to this board.
+     * dealing some cards to this board.  Every pile is cleared first,
+     * the foundations and the waste included; nothing is allocated.
      */
     public void newGame() {
-        deck.shuffle();
-        int numCards = tableau.length;
+        ownDeck().shuffle();
+        startGame();
+    }
+
+    /**
+     * Start a new game by shuffling the deck with a seed and
+     * dealing some cards to this board.  The same seed always
+     * gives the same deal.  Every pile is cleared first, as by
+     * <code>newGame()</code>.
+     * @param seed the seed to shuffle the deck with
+     */
+    public void newGame(long seed) {
+        ownDeck().shuffle(seed);
+        startGame();
+    }
+
+    /**
+     * Accesses the seed the current game was dealt from.
+     * @return the seed the deck was shuffled with.
+     */
+    public long seed() {
+        return deck.seed();
+    }
+
+    /**
+     * Puts this board back the way it was built, ready to be handed to
+     * someone else: the listeners are removed, the draw rules of the board's
+     * <code>RuleSet</code> are restored, and a new game is dealt.
+     * Nothing is allocated.
+     */
+    public void reset() {
+        listener = null;
+        ownStock().setRules(ruleSet.drawCount(), ruleSet.recycleLimit());
+        newGame();
+    }
+
+    /**
+     * Clear every pile, deal the shuffled deck and tell the listeners.
+     */
+    private void startGame() {
+        movesMade = 0;
+        for (int fPile = 0; fPile < foundation.length; fPile++) {
+            ownFoundation(fPile).clear();
+        }
         dealMyCards();
+        if (listener != null) {
+            listener.gameStarted(this);
+        }
+    }
+
+    /**
+     * Gives this board piles of its own in place of those it shares with
+     * a fork, for <code>BoardSnapshot</code> to restore a game into.  The
+     * piles are about to be refilled, so the new ones start empty.
+     */
+    void unshare() {
+        for (int c = 0; c < columns.length; c++) {
+            if (sharedColumns[c]) {
+                columns[c] = new CardStack();
+                sharedColumns[c] = false;
+            }
+        }
+        for (int fPile = 0; fPile < foundation.length; fPile++) {
+            if (sharedFoundations[fPile]) {
+                foundation[fPile] = new CardStack();
+                sharedFoundations[fPile] = false;
+            }
+        }
+        if (sharedStock) {
+            stock = new StockPile(deck.cardCount(), stock.drawCount(), stock.recycleLimit());
+            sharedStock = false;
+        }
     }
 
     /**
-     * Accesses the size of the board.
-     * Note that this is not the number of cards it contains,
-     * which will be smaller near the end of a winning game.
-     * @return the size of the board
+     * Accesses a tableau column, for <code>BoardSnapshot</code>.  It may
+     * be shared with a fork, so it is only to be read, unless
+     * <code>unshare</code> was called first.
+     */
+    CardStack column(int c) {
+        return columns[c];
+    }
+
+    /**
+     * Accesses a foundation pile, for <code>BoardSnapshot</code>; like a
+     * column, it is only to be read.
+     */
+    CardStack foundationPile(int fPileIndex) {
+        return foundation[fPileIndex];
+    }
+
+    /**
+     * Accesses the stock and the waste, for <code>BoardSnapshot</code>;
+     * like a column, they are only to be read.
+     */
+    StockPile stockPile() {
+        return stock;
+    }
+
+    /**
+     * Accesses the deck, for <code>BoardSnapshot</code>.
+     */
+    Deck deck() {
+        return deck;
+    }
+
+    /**
+     * Finishes restoring a game whose cards <code>BoardSnapshot</code> has
+     * put back in the columns, foundations and stock.  The listeners are
+     * not told; the game goes on where it was saved.
+     * @param faceDownCounts the number of face-down cards of each column
+     * @param moves the number of moves made in the game
+     * @param seed the seed the game was dealt from
+     */
+    void restored(int[] faceDownCounts, int moves, long seed) {
+        System.arraycopy(faceDownCounts, 0, faceDown, 0, faceDown.length);
+        faceDownTotal = 0;
+        for (int count : faceDown) {
+            faceDownTotal += count;
+        }
+        movesMade = moves;
+        ownDeck().markDealt(seed);
+        gameEvent.begin();
+    }
+
+    /**
+     * Tells the listeners that the current game is over.
+     * @param outcome how the game ended
+     */
+    public void endGame(GameOutcome outcome) {
+        gameEvent.finish(deck.seed(), outcome, movesMade);
+        if (listener != null) {
+            listener.gameEnded(this, outcome);
+        }
+    }
+
+    /**
+     * Accesses the number of moves made in the current game.
+     * @return the number of moves made since the game was dealt.
+     */
+    public int movesMade() {
+        return movesMade;
+    }
+
+    /**
+     * Starts sending the events of this board to a listener.
+     * @param l the listener to add
+     */
+    public void addGameListener(GameListener l) {
+        if (listener == null) {
+            listener = l;
+        } else if (listener instanceof MulticastGameListener) {
+            ((MulticastGameListener) listener).add(l);
+        } else {
+            listener = new MulticastGameListener(listener, l);
+        }
+    }
+
+    /**
+     * Stops sending the events of this board to a listener.
+     * @param l the listener to remove
+     */
+    public void removeGameListener(GameListener l) {
+        if (listener == l) {
+            listener = null;
+        } else if (listener instanceof MulticastGameListener) {
+            listener = ((MulticastGameListener) listener).remove(l);
+        }
+    }
+
+    /**
+     * Accesses the listener of this board, for code such as a search
+     * that produces events of its own.
+     * @return the listener, or null if nobody is listening.
+     */
+    public GameListener gameListener() {
+        return listener;
+    }
+
+    /**
+     * Accesses the layout of the board.
+     * @return the number of columns, foundations and visible rows.
+     */
+    public BoardGeometry geometry() {
+        return geometry;
+    }
+
+    /**
+     * Accesses the number of rows of the board a display shows.
+     * Row <code>tabRowSize() - 1</code> holds the lowest face-up card of
+     * each column and the cards stacked on it take the rows above.
+     * A column may hold more face-up cards than this; the extra cards
+     * are at negative rows.
+     * @return the number of visible rows
      */
     public int tabRowSize() {
-        return tableau.length;
+        return geometry.visibleRows();
     }
     
     public int tabColSize() {
-        return tableau[0].length;
+        return columns.length;
+    }
+
+    /**
+     * Accesses the number of foundation piles.
+     * @return the number of foundation piles
+     */
+    public int foundationCount() {
+        return foundation.length;
     }
     
     public int fPileSize(int pileIndex) {
-        return foundation.get(pileIndex).size();
+        return foundation[pileIndex].size();
+    }
+
+    /**
+     * Accesses the number of face-down cards in a column.
+     * @param c the column
+     * @return the number of cards still to be turned over in the column
+     */
+    public int faceDownCount(int c) {
+        return faceDown[c];
+    }
+
+    /**
+     * Accesses the number of face-down cards on the whole tableau.
+     * @return the number of cards still to be turned over in the columns
+     */
+    public int faceDownCount() {
+        return faceDownTotal;
+    }
+
+    /**
+     * Accesses the number of face-up cards in a column.
+     * @param c the column
+     * @return the number of face-up cards in the column
+     */
+    public int faceUpCount(int c) {
+        return columns[c].size() - faceDown[c];
     }
 
     /**
@@ -95,66 +531,187 @@ public abstract class Board {
      * @return true if this board is empty; false otherwise.
      */
     public boolean isEmpty() {
-        for (int r = 0; r < tableau.length; r++) {
-            for (int c = 0; c < tableau[0].length; c++) {
-                if (tableau[r][c] != null) {
-                    return false;
-                }
+        for (CardStack column : columns) {
+            if (!column.isEmpty()) {
+                return false;
             }
         }
         return true;
     }
 
     /**
-     * Deal a card to the kth position in this board.
-     * If the deck is empty, the kth card is set to null.
-     * @param k the index of the card to be dealt.
+     * Turns the top card of a column face up if no face-up card is left
+     * on it, and tells the listeners about the card.
+     * @param c the column
      */
-    public void deal(int r, int c, boolean flag) {
-        if (I_AM_DEBUGGING) {
-            //System.out.println("tPiles[c]: " + tPiles[c]);
-            System.out.println("c: " + c);
-        }
-        if (tPiles[c] > 1 && (r == 11 || flag)) {
-            tableau[r][c] = deck.deal();
-            tPiles[c] -= 1;
-        } else {
-            tableau[r][c] = null;
+    private void turnOver(int c) {
+        if (faceDown[c] > 0 && faceDown[c] == columns[c].size()) {
+            faceDown[c]--;
+            faceDownTotal--;
+            if (listener != null) {
+                listener.cardDealt(this, columns[c].peek(), c);
+            }
         }
     }
+
+    /**
+     * Finds the place of a card of the tableau in its column's stack.
+     * @param r the row of the card
+     * @param c the column of the card
+     * @return the index of the card in the stack of column c.
+     */
+    private int stackIndex(int r, int c) {
+        return faceDown[c] + tabRowSize() - 1 - r;
+    }
     
+    /**
+     * Draws cards from the stock onto the waste, as many as the draw rules
+     * say.  If the stock is empty, the waste is turned over to form a new
+     * stock instead, if a recycle is left.
+     */
     public void deal() {
-        if (deck.size() > 0) {
-            deckPile.add(deck.deal());
+        if (stock.stockSize() > 0) {
+            JfrMoveEvent event = new JfrMoveEvent();
+            event.begin();
+            int drawn = ownStock().draw();
+            if (listener != null) {
+                for (int k = drawn - 1; k >= 0; k--) {
+                    listener.cardDealt(this, stock.wasteCard(k), -1);
+                }
+            }
+            moved(event, Move.Kind.DRAW, -1, -1, drawn);
+        } else {
+            deckReset();
         }
     }
     
     public void rmvDeckTopCard() {
-        deckPile.remove(deckPile.size()-1);
+        ownStock().takeWasteTop();
     }
     
+    /**
+     * Puts a card at a place on the tableau, or takes the cards at and
+     * above the place away if the card is null.
+     * @param move the card to put down
+     * @param r the row of the place
+     * @param c the column of the place
+     */
     public void tabSetCard(Card move, int r, int c) {
-        tableau[r][c] = move;
+        int k = stackIndex(r, c);
+        if (k < faceDown[c] || k > columns[c].size()) {
+            throw new IllegalArgumentException("No place for a card at row "
+                + r + ", column " + c);
+        }
+        CardStack column = ownColumn(c);
+        if (move == null) {
+            column.truncate(k);
+        } else if (k == column.size()) {
+            column.push(move);
+        } else {
+            column.set(k, move);
+        }
     }
     
+    /**
+     * Turns the waste over to form a new stock, if the stock is empty
+     * and a recycle is left.
+     */
     public void deckReset() {
-        deckPile.clear();
+        if (stock.canRecycle()) {
+            JfrMoveEvent event = new JfrMoveEvent();
+            event.begin();
+            ownStock().recycle();
+            moved(event, Move.Kind.RECYCLE, -1, -1, stock.stockSize());
+        }
+    }
+
+    /**
+     * Changes the number of cards a draw turns over and the number of
+     * times the waste may be turned over.  The number of recycles used
+     * so far in the current game is kept.
+     * @param cardsPerDraw the number of cards turned over in one draw, such as 1 or 3
+     * @param maxRecycles the number of times the waste may be turned over,
+     *                    or <code>StockPile.UNLIMITED</code>
+     */
+    public void setDrawRules(int cardsPerDraw, int maxRecycles) {
+        ownStock().setRules(cardsPerDraw, maxRecycles);
+    }
+
+    /**
+     * Accesses the number of cards a draw turns over.
+     * @return the draw count.
+     */
+    public int drawCount() {
+        return stock.drawCount();
+    }
+
+    /**
+     * Accesses the number of times the waste may be turned over.
+     * @return the recycle limit, or <code>StockPile.UNLIMITED</code>.
+     */
+    public int recycleLimit() {
+        return stock.recycleLimit();
+    }
+
+    /**
+     * Accesses the number of cards in the waste.
+     * @return the number of cards in the waste.
+     */
+    public int wasteSize() {
+        return stock.wasteSize();
+    }
+
+    /**
+     * Determines if <code>deal</code> would change anything: the stock
+     * has a card, or the waste can be turned over.
+     * @return true if a draw or a recycle is possible; false otherwise.
+     */
+    public boolean canDraw() {
+        return stock.stockSize() > 0 || stock.canRecycle();
+    }
+
+    /**
+     * Finds every card that drawing can bring to the top of the waste,
+     * without drawing.  The current top of the waste comes first.
+     * @param into the array to put the cards in; <code>cardCount()</code>
+     *             entries are always enough
+     * @return the number of cards put in the array.
+     */
+    public int reachableWasteCards(Card[] into) {
+        return stock.reachableCards(into);
     }
     
     public void fAddCard(Card move, int fPileIndex) {
-        foundation.get(fPileIndex).add(move);
+        ownFoundation(fPileIndex).push(move);
     }
     
     public void fPileReset(int fPileIndex) {
-        foundation.get(fPileIndex).clear();
+        ownFoundation(fPileIndex).clear();
     }
 
     /**
-     * Accesses the deck's size.
-     * @return the number of undealt cards left in the deck.
+     * Accesses the number of decks the game is played with.
+     * @return the number of decks shuffled together.
+     */
+    public int deckCount() {
+        return deck.deckCount();
+    }
+
+    /**
+     * Accesses the number of cards the game is played with.  Card ids
+     * run from 0 to one less than this.
+     * @return the number of cards in all the decks.
+     */
+    public int cardCount() {
+        return deck.cardCount();
+    }
+
+    /**
+     * Accesses the stock's size.
+     * @return the number of cards left to draw.
      */
     public int deckSize() {
-        return deck.size();
+        return stock.stockSize();
     }
     
     /**
@@ -163,30 +720,343 @@ public abstract class Board {
      * @param k is the board position of the card to return.
      */
     public Card tabCardAt(int r, int c) {
-        try {
-            return tableau[r][c];
-        }
-        catch (ArrayIndexOutOfBoundsException e){
+        if (c < 0 || c >= columns.length || r >= tabRowSize()) {
             return null;
         }
+        return columns[c].get(stackIndex(r, c));
     }
     
     public Card fCardAt(int fPileIndex) {
-        try {
-            return foundation.get(fPileIndex).get(fPileSize(fPileIndex)-1);
-        }
-        catch (ArrayIndexOutOfBoundsException e){
-            return null;
-        }
+        return foundation[fPileIndex].peek();
     }
     
     public Card dCardAt() {
-        try {
-            return deckPile.get(deckPile.size()-1);
+        return stock.wasteTop();
+    }
+
+    /**
+     * Accesses the rules of the game played on this board.
+     * @return the rules.
+     */
+    public RuleSet ruleSet() {
+        return ruleSet;
+    }
+
+    /**
+     * Determines if the rules let a card go on a tableau card.
+     * @param moving the card to move
+     * @param target the card to put it on
+     * @return true if the move is allowed; false otherwise.
+     */
+    public boolean canStack(Card moving, Card target) {
+        return rules.canStack(moving, target);
+    }
+
+    /**
+     * Determines if the rules let a card go on a foundation pile.
+     * @param moving the card to move
+     * @param fPileIndex the foundation pile
+     * @return true if the move is allowed; false otherwise.
+     */
+    public boolean canFound(Card moving, int fPileIndex) {
+        return rules.canFound(moving, fCardAt(fPileIndex));
+    }
+
+    /**
+     * Determines if the rules let a card go into an empty column.
+     * @param moving the card to move
+     * @return true if the move is allowed; false otherwise.
+     */
+    public boolean canFillEmpty(Card moving) {
+        return rules.canFillEmpty(moving);
+    }
+
+    /**
+     * Determines if the top card of the waste may go on a foundation pile.
+     * @param fPileIndex the foundation pile
+     * @return true if the move is allowed; false otherwise.
+     */
+    public boolean canMoveDeckCardToFoundation(int fPileIndex) {
+        Card card = dCardAt();
+        return card != null && rules.canFound(card, fCardAt(fPileIndex));
+    }
+
+    /**
+     * Determines if the top card of the waste may go on top of a column.
+     * @param c the column
+     * @return true if the move is allowed; false otherwise.
+     */
+    public boolean canMoveDeckCardToTableau(int c) {
+        Card card = dCardAt();
+        if (card == null) {
+            return false;
         }
-        catch (ArrayIndexOutOfBoundsException e){
-            return null;
+        Card top = tabCardAt(topRow(c), c);
+        return top == null ? rules.canFillEmpty(card) : rules.canStack(card, top);
+    }
+
+    /**
+     * Lists every legal move on this board: runs of face-up cards moved
+     * between columns, top cards and the waste card moved to foundations
+     * or columns, and drawing or turning the waste over.
+     * @param into the list to put the moves in; it is cleared first
+     * @return the list.
+     */
+    public List<Move> legalMoves(List<Move> into) {
+        into.clear();
+        for (int c = 0; c < columns.length; c++) {
+            CardStack column = columns[c];
+            for (int k = faceDown[c]; k < column.size(); k++) {
+                Card card = column.get(k);
+                for (int t = 0; t < columns.length; t++) {
+                    if (t == c) {
+                        continue;
+                    }
+                    Card top = columns[t].peek();
+                    // A run already at the bottom of a column gains nothing
+                    // by moving to an empty one.
+                    if (top == null ? k > 0 && rules.canFillEmpty(card)
+                                    : rules.canStack(card, top)) {
+                        into.add(new Move(Move.Kind.TABLEAU_TO_TABLEAU, c, t, column.size() - k));
+                    }
+                }
+            }
+            Card top = column.peek();
+            if (top != null) {
+                for (int fPile = 0; fPile < foundation.length; fPile++) {
+                    if (rules.canFound(top, fCardAt(fPile))) {
+                        into.add(new Move(Move.Kind.TABLEAU_TO_FOUNDATION, c, fPile, 1));
+                    }
+                }
+            }
+        }
+        if (dCardAt() != null) {
+            for (int c = 0; c < columns.length; c++) {
+                if (canMoveDeckCardToTableau(c)) {
+                    into.add(new Move(Move.Kind.WASTE_TO_TABLEAU, -1, c, 1));
+                }
+            }
+            for (int fPile = 0; fPile < foundation.length; fPile++) {
+                if (canMoveDeckCardToFoundation(fPile)) {
+                    into.add(new Move(Move.Kind.WASTE_TO_FOUNDATION, -1, fPile, 1));
+                }
+            }
+        }
+        if (stock.stockSize() > 0) {
+            into.add(new Move(Move.Kind.DRAW, -1, -1, Math.min(stock.drawCount(), stock.stockSize())));
+        } else if (stock.canRecycle()) {
+            into.add(new Move(Move.Kind.RECYCLE, -1, -1, stock.wasteSize()));
+        }
+        return into;
+    }
+
+    /**
+     * Determines if the game can no longer be won although moves may be
+     * left, for instance because a card is stuck above a lower card of
+     * its suit.  See <code>DeadEndDetector</code>; the check sees the
+     * face-down cards.
+     * @return true if the game is certainly lost; false if it may still
+     *         be won.
+     */
+    public boolean isDeadEnd() {
+        if (!deadEnds.checks(this)) {
+            // A fork shares the detector's tables, not its scratch room.
+            deadEnds = new DeadEndDetector(deadEnds, this);
         }
+        return deadEnds.isDeadEnd();
+    }
+
+    /**
+     * Works out the moves that finish the game once no card is face down.
+     * Every face-up run is then in order, so the cards can go to the
+     * foundations one at a time from the tops of the columns and the
+     * waste, drawing from the stock and turning the waste over, as the
+     * rules allow, when nothing else can go up.  The face-down cards are
+     * counted as the game goes, so while any are left this returns at
+     * once and is cheap to call after every move.
+     * @param into the list to put the moves in; it is cleared first
+     * @return true if the list now holds moves that win the game; false
+     *         if a card is face down or the stock runs out of cards that
+     *         can go up, and the list is then empty.
+     */
+    public boolean finishingMoves(List<Move> into) {
+        into.clear();
+        if (faceDownTotal != 0) {
+            return false;
+        }
+        int[] left = new int[columns.length];
+        int cards = 0;
+        for (int c = 0; c < columns.length; c++) {
+            left[c] = columns[c].size();
+            cards += left[c];
+        }
+        Card[] tops = new Card[foundation.length];
+        for (int fPile = 0; fPile < foundation.length; fPile++) {
+            tops[fPile] = foundation[fPile].peek();
+        }
+        // The waste, bottom first, then the stock in the order it is drawn.
+        int total = stock.wasteSize() + stock.stockSize();
+        Card[] pile = new Card[total];
+        for (int k = 0; k < total; k++) {
+            pile[k] = stock.at(k);
+        }
+        int waste = stock.wasteSize();
+        int recycles = stock.recycles();
+        boolean playedSinceRecycle = true;
+        cards += total;
+        while (cards > 0) {
+            int before = cards;
+            for (int c = 0; c < columns.length; c++) {
+                while (left[c] > 0) {
+                    int fPile = foundationFor(columns[c].get(left[c] - 1), tops);
+                    if (fPile < 0) {
+                        break;
+                    }
+                    tops[fPile] = columns[c].get(--left[c]);
+                    into.add(new Move(Move.Kind.TABLEAU_TO_FOUNDATION, c, fPile, 1));
+                    cards--;
+                }
+            }
+            while (waste > 0) {
+                int fPile = foundationFor(pile[waste - 1], tops);
+                if (fPile < 0) {
+                    break;
+                }
+                tops[fPile] = pile[waste - 1];
+                System.arraycopy(pile, waste, pile, waste - 1, total - waste);
+                waste--;
+                total--;
+                into.add(new Move(Move.Kind.WASTE_TO_FOUNDATION, -1, fPile, 1));
+                cards--;
+            }
+            if (cards < before) {
+                playedSinceRecycle = true;
+            } else if (waste < total) {
+                int drawn = Math.min(stock.drawCount(), total - waste);
+                waste += drawn;
+                into.add(new Move(Move.Kind.DRAW, -1, -1, drawn));
+            } else if (waste > 0 && playedSinceRecycle
+                       && (stock.recycleLimit() == StockPile.UNLIMITED
+                           || recycles < stock.recycleLimit())) {
+                into.add(new Move(Move.Kind.RECYCLE, -1, -1, waste));
+                waste = 0;
+                recycles++;
+                playedSinceRecycle = false;
+            } else {
+                into.clear();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finishes the game if <code>finishingMoves</code> can, making the
+     * moves one after another as <code>apply</code> does.
+     * @return true if the game was finished; false if it was left alone.
+     */
+    public boolean autoComplete() {
+        if (faceDownTotal != 0) {
+            return false;
+        }
+        List<Move> moves = new ArrayList<Move>();
+        if (!finishingMoves(moves)) {
+            return false;
+        }
+        for (Move move : moves) {
+            apply(move);
+        }
+        return true;
+    }
+
+    /**
+     * Finds a foundation pile a card may go on, given the top cards of
+     * the piles.
+     * @return the pile, or -1 if there is none.
+     */
+    private int foundationFor(Card card, Card[] tops) {
+        for (int fPile = 0; fPile < tops.length; fPile++) {
+            if (rules.canFound(card, tops[fPile])) {
+                return fPile;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determines if a move, such as one read back from a game record, may
+     * be made on this board.  Unlike <code>legalMoves</code> this allows
+     * every move the rules do, including a whole column moved into an
+     * empty one.  A draw or a recycle must also move the number of cards
+     * the board would.
+     * @param move the move to check
+     * @return true if the move is allowed; false otherwise.
+     */
+    public boolean isLegal(Move move) {
+        int from = move.from();
+        int to = move.to();
+        switch (move.kind()) {
+            case TABLEAU_TO_TABLEAU:
+                if (from < 0 || from >= columns.length || to < 0 || to >= columns.length
+                    || from == to || move.count() < 1 || move.count() > faceUpCount(from)) {
+                    return false;
+                }
+                Card moving = columns[from].get(columns[from].size() - move.count());
+                Card top = columns[to].peek();
+                return top == null ? rules.canFillEmpty(moving) : rules.canStack(moving, top);
+            case TABLEAU_TO_FOUNDATION:
+                return from >= 0 && from < columns.length && to >= 0 && to < foundation.length
+                    && canMoveToFoundation(topRow(from), from, to);
+            case WASTE_TO_TABLEAU:
+                return to >= 0 && to < columns.length && canMoveDeckCardToTableau(to);
+            case WASTE_TO_FOUNDATION:
+                return to >= 0 && to < foundation.length && canMoveDeckCardToFoundation(to);
+            case DRAW:
+                return stock.stockSize() > 0
+                    && move.count() == Math.min(stock.drawCount(), stock.stockSize());
+            default:
+                return stock.stockSize() == 0 && stock.canRecycle()
+                    && move.count() == stock.wasteSize();
+        }
+    }
+
+    /**
+     * Makes a move, such as one listed by <code>legalMoves</code>.
+     * The move is not checked.
+     * @param move the move to make
+     */
+    public void apply(Move move) {
+        switch (move.kind()) {
+            case TABLEAU_TO_TABLEAU:
+                moveRun(move.from(), columns[move.from()].size() - move.count(), move.to());
+                break;
+            case TABLEAU_TO_FOUNDATION:
+                moveCardToFoundation(topRow(move.from()), move.from(), move.to());
+                break;
+            case WASTE_TO_TABLEAU:
+                moveDeckCardToTableau(topRow(move.to()) - 1, move.to());
+                break;
+            case WASTE_TO_FOUNDATION:
+                moveDeckCardToFoundation(move.to());
+                break;
+            case DRAW:
+                deal();
+                break;
+            default:
+                deckReset();
+                break;
+        }
+    }
+
+    /**
+     * Accesses the row of the top card of a column, the only card that
+     * another card can be put on.
+     * @param c the column
+     * @return the row of the top face-up card, or <code>tabRowSize()</code>
+     *         if the column is empty.
+     */
+    public int topRow(int c) {
+        return tabRowSize() - faceUpCount(c);
     }
     
     public boolean tabHasCard(int r, int c) {
@@ -203,48 +1073,80 @@ public abstract class Board {
     public void moveSelectedTabCard(List<Point> selectedCards) {
         int rMove = (int) selectedCards.get(0).getX();
         int cMove = (int) selectedCards.get(0).getY();
-        int rTarget = (int) selectedCards.get(1).getX();
         int cTarget = (int) selectedCards.get(1).getY();
-        tableau[rTarget - 1][cTarget] = tabCardAt(rMove, cMove);
-        System.out.println("cMove: " + cMove);
-        deal(rMove, cMove, false);
-        if(I_AM_DEBUGGING)
-            //System.out.println(tabCardAt(0,0) + "\n" + tabCardAt(1,0));
-        for (int r = 1; r <= rMove; r++) {
-            if (tabHasCard(rMove - r, cMove)) {
-                tableau[rTarget - 1 - r][cTarget] = tabCardAt(rMove - r, cMove);
-                deal(rMove - r, cMove, false);
-            }
-        }
+        moveRun(cMove, stackIndex(rMove, cMove), cTarget);
+    }
+
+    /**
+     * Moves a card and the cards stacked on it onto another column.
+     * @param cMove the column the cards come from
+     * @param k the index of the lowest moved card in its column's stack
+     * @param cTarget the column the cards go to
+     */
+    private void moveRun(int cMove, int k, int cTarget) {
+        JfrMoveEvent event = new JfrMoveEvent();
+        event.begin();
+        int count = ownColumn(cMove).moveTo(k, ownColumn(cTarget));
+        turnOver(cMove);
+        moved(event, Move.Kind.TABLEAU_TO_TABLEAU, cMove, cTarget, count);
     }
     
     public void moveCardToFoundation(int r, int c, int fPile) {
-        Card move = tabCardAt(r,c);
-        foundation.get(fPile).add(move);
-        deal(r,c, false);
+        JfrMoveEvent event = new JfrMoveEvent();
+        event.begin();
+        Card move = ownColumn(c).remove(stackIndex(r, c));
+        ownFoundation(fPile).push(move);
+        turnOver(c);
+        moved(event, Move.Kind.TABLEAU_TO_FOUNDATION, c, fPile, 1);
     }
     
     public void moveDeckCardToTableau(int r, int c) {
+        JfrMoveEvent event = new JfrMoveEvent();
+        event.begin();
         tabSetCard(dCardAt(), r, c);
         rmvDeckTopCard();
+        moved(event, Move.Kind.WASTE_TO_TABLEAU, -1, c, 1);
     }
     
     public void moveDeckCardToFoundation(int fPileIndex) {
+        JfrMoveEvent event = new JfrMoveEvent();
+        event.begin();
         fAddCard(dCardAt(), fPileIndex);
         rmvDeckTopCard();
+        moved(event, Move.Kind.WASTE_TO_FOUNDATION, -1, fPileIndex, 1);
+    }
+
+    /**
+     * Counts a move, records it for Flight Recorder if it was slow,
+     * and tells the listeners about it.
+     */
+    private void moved(JfrMoveEvent event, Move.Kind kind, int from, int to, int count) {
+        event.finish(kind, from, to, count);
+        movesMade++;
+        if (listener != null) {
+            listener.moveApplied(this, new Move(kind, from, to, count));
+        }
     }
 
     /**
-     * Gets the indexes of the actual (non-null) cards on the board.
+     * Gets the indexes of the face-up cards on the board, row by row
+     * from the top.  The cost is proportional to the cards in play.
      *
      * @return a List that contains the locations (indexes)
-     *         of the non-null entries on the board.
+     *         of the face-up cards on the board.
      */
     public List<Point> cardIndexes() {
-        List<Point> selected = new ArrayList<Point>();
-        for (int r = 0; r < tableau.length; r++) {
-            for (int c = 0; c < tableau[0].length; c++){
-                if (tableau[r][c] != null) {
+        int deepest = 0;
+        int cardCount = 0;
+        for (int c = 0; c < columns.length; c++) {
+            deepest = Math.max(deepest, faceUpCount(c));
+            cardCount += faceUpCount(c);
+        }
+        List<Point> selected = new ArrayList<Point>(cardCount);
+        int bottom = tabRowSize() - 1;
+        for (int r = bottom - deepest + 1; r <= bottom; r++) {
+            for (int c = 0; c < columns.length; c++) {
+                if (bottom - r < faceUpCount(c)) {
                     selected.add(new Point(r,c));
                 }
             }
@@ -257,14 +1159,24 @@ public abstract class Board {
      * @return the string version of this board.
      */
     public String toString() {
-        String s = "";
-        for (int r = 0; r < tableau.length; r++) {
-            for (int c = 0; c < tableau[0].length; c++) {
-                int k = 7*r+c;
-                s += k + ": " + tableau[r][c] + "\n";
+        StringBuilder s = new StringBuilder();
+        for (int c = 0; c < columns.length; c++) {
+            s.append("column ").append(c).append(": ")
+             .append(faceDown[c]).append(" down, up [");
+            for (int k = faceDown[c]; k < columns[c].size(); k++) {
+                if (k > faceDown[c]) {
+                    s.append(", ");
+                }
+                s.append(columns[c].get(k));
             }
+            s.append("]\n");
         }
-        return s;
+        for (int fPile = 0; fPile < foundation.length; fPile++) {
+            s.append("foundation ").append(fPile).append(": ")
+             .append(fCardAt(fPile)).append("\n");
+        }
+        s.append("waste: ").append(dCardAt()).append("\n");
+        return s.toString();
     }
 
     /**
@@ -274,15 +1186,7 @@ public abstract class Board {
      *         false otherwise.
      */
     public boolean gameIsWon() {
-        if (deck.isEmpty()) {
-            for (Card[] c : tableau) {
-                if (c[1] != null) {
-                    return false;
-                }
-            }
-            return true;
-        }
-        return false;
+        return stock.isEmpty() && isEmpty();
     }
 
     /**
@@ -311,16 +1215,26 @@ public abstract class Board {
     public abstract boolean dealMoveIsPossible();
 
     /**
-     * Deal cards to this board to start the game.
+     * Deal cards to this board to start the game: column c gets c
+     * face-down cards and one face-up card on top, as far as the deck goes.
      */
     private void dealMyCards() {
-        for (int r = 0; r < tableau.length; r++) {
-            for (int c = 0; c < tableau[0].length; c++) {
-                if (r == 11)
-                    tableau[r][c] = deck.deal();
-                else
-                    tableau[r][c] = null;
+        gameEvent.begin();
+        faceDownTotal = 0;
+        Deck dealt = ownDeck();
+        for (int c = 0; c < columns.length; c++) {
+            CardStack column = ownColumn(c);
+            column.clear();
+            faceDown[c] = 0;
+            for (int k = 0; k <= c && !dealt.isEmpty(); k++) {
+                column.push(dealt.deal());
+            }
+            faceDown[c] = Math.max(0, column.size() - 1);
+            faceDownTotal += faceDown[c];
+            if (listener != null && !column.isEmpty()) {
+                listener.cardDealt(this, column.peek(), c);
             }
         }
+        ownStock().fill(dealt);
     }
 }
@@ -0,0 +1,76 @@
+/**
+ * BoardGeometry.java
+ *
+ * <code>BoardGeometry</code> describes the layout of a <code>Board</code>:
+ * how many tableau columns and foundation piles it has, and how many rows
+ * of face-up cards a display shows per column.
+ */
+public class BoardGeometry {
+
+    /**
+     * The layout of standard Klondike: 7 columns and 4 foundations,
+     * shown 12 rows deep.
+     */
+    public static final BoardGeometry STANDARD = new BoardGeometry(7, 4, 12);
+
+    /** The number of tableau columns. */
+    private int columns;
+
+    /** The number of foundation piles. */
+    private int foundations;
+
+    /** The number of face-up rows a display shows per column. */
+    private int visibleRows;
+
+    /**
+     * Creates a new <code>BoardGeometry</code> instance.
+     * @param columnCount the number of tableau columns
+     * @param foundationCount the number of foundation piles
+     * @param rowCount the number of face-up rows a display shows per column;
+     *                 columns may grow longer than this
+     */
+    public BoardGeometry(int columnCount, int foundationCount, int rowCount) {
+        if (columnCount < 1 || foundationCount < 1 || rowCount < 1) {
+            throw new IllegalArgumentException("A board needs at least one column, "
+                + "one foundation and one row: " + columnCount + ", "
+                + foundationCount + ", " + rowCount);
+        }
+        columns = columnCount;
+        foundations = foundationCount;
+        visibleRows = rowCount;
+    }
+
+    /**
+     * Accesses the number of tableau columns.
+     * @return the number of tableau columns.
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Accesses the number of foundation piles.
+     * @return the number of foundation piles.
+     */
+    public int foundations() {
+        return foundations;
+    }
+
+    /**
+     * Accesses the number of face-up rows a display shows per column.
+     * @return the number of visible rows.
+     */
+    public int visibleRows() {
+        return visibleRows;
+    }
+
+    /**
+     * Generates and returns a string representation of this geometry.
+     * @return the string version of this geometry.
+     */
+    @Override
+    public String toString() {
+        return columns + " columns, " + foundations + " foundations, "
+            + visibleRows + " rows";
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * BoardPool.java
+ *
+ * <code>BoardPool</code> keeps boards that are not in use so they can be
+ * handed out again instead of building new ones.  It can be shared by
+ * any number of threads.  The boards sit in a fixed array of slots taken
+ * and filled with compare-and-set, so neither taking nor returning a
+ * board locks or allocates.
+ * @param <T> the kind of board pooled
+ */
+public class BoardPool<T extends Board> {
+
+    /** The idle boards; empty slots are null. */
+    private AtomicReferenceArray<T> slots;
+
+    /** Makes a board when no idle one is left. */
+    private Supplier<T> factory;
+
+    /** The number of boards built by the factory. */
+    private AtomicInteger created;
+
+    /**
+     * Creates a new, empty <code>BoardPool</code> instance.
+     * @param capacity the largest number of idle boards kept
+     * @param boardFactory makes a board when no idle one is left
+     */
+    public BoardPool(int capacity, Supplier<T> boardFactory) {
+        slots = new AtomicReferenceArray<T>(Math.max(1, capacity));
+        factory = boardFactory;
+        created = new AtomicInteger();
+    }
+
+    /**
+     * Takes an idle board, or builds one if none is idle.  The board has
+     * no listeners and a new game dealt.
+     * @return the board, now owned by the caller.
+     */
+    public T acquire() {
+        int n = slots.length();
+        int first = start(n);
+        for (int k = 0; k < n; k++) {
+            int slot = (first + k) % n;
+            T board = slots.get(slot);
+            if (board != null && slots.compareAndSet(slot, board, null)) {
+                return board;
+            }
+        }
+        created.incrementAndGet();
+        return factory.get();
+    }
+
+    /**
+     * Gives a board back.  It is reset (see <code>Board.reset</code>) and
+     * kept for the next <code>acquire</code>, unless the pool is full.
+     * The caller must not use the board afterwards.
+     * @param board the board to give back
+     */
+    public void release(T board) {
+        board.reset();
+        int n = slots.length();
+        int first = start(n);
+        for (int k = 0; k < n; k++) {
+            int slot = (first + k) % n;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, board)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Accesses the number of boards the pool has had to build.
+     * @return the number of boards built.
+     */
+    public int created() {
+        return created.get();
+    }
+
+    /**
+     * Counts the idle boards.
+     * @return the number of boards waiting in the pool.
+     */
+    public int idle() {
+        int count = 0;
+        for (int k = 0; k < slots.length(); k++) {
+            if (slots.get(k) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Picks the slot a thread starts looking from, so threads working at
+     * the same time mostly touch different slots.
+     */
+    private static int start(int n) {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 33) % n;
+    }
+}
@@ -0,0 +1,474 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BoardSnapshot.java
+ *
+ * <code>BoardSnapshot</code> saves the state of a game and puts it back:
+ * the columns with their face-down cards, the foundations, the waste and
+ * the stock in draw order, the draw rules in force, the number of moves
+ * made and the seed of the deal.  There are two forms that both restore
+ * exactly:
+ * <ul>
+ * <li>a binary form, one byte per card for decks of fewer than 256 cards,
+ *     for storage and transfer.  The draw rules and the move and recycle
+ *     counts are varints, so any rules the board accepts are kept, and a
+ *     one-deck Klondike game takes 87 bytes until its 128th move and 88
+ *     after, up to 16383 moves;</li>
+ * <li>a text form, one line per pile, for people reading bug reports.</li>
+ * </ul>
+ * A snapshot can only be restored into a board with the same number of
+ * columns, foundations and cards.
+ */
+public class BoardSnapshot {
+
+    /** The version written as the first byte of the binary form. */
+    private static final int VERSION = 1;
+
+    /** The first word of the text form. */
+    private static final String TEXT_HEADER = "solitaire";
+
+    /**
+     * Saves a game in the binary form.
+     * @param board the board the game is played on
+     * @return the snapshot.
+     */
+    public static byte[] encode(Board board) {
+        StockPile stock = board.stockPile();
+        int wide = wide(board) ? 2 : 1;
+        // Three bytes, four varints of up to five bytes and the seed, then the piles.
+        int size = 3 + 4 * 5 + 8 + wide * (2 * board.tabColSize() + board.foundationCount() + 2
+                                           + board.cardCount());
+        ByteWriter out = new ByteWriter(new byte[size], wide);
+        out.put(VERSION);
+        out.put(board.tabColSize());
+        out.put(board.foundationCount());
+        out.putVarint(stock.drawCount());
+        out.putVarint(stock.recycleLimit() + 1);
+        out.putVarint(stock.recycles());
+        out.putVarint(board.movesMade());
+        out.putLong(board.seed());
+        for (int c = 0; c < board.tabColSize(); c++) {
+            CardStack column = board.column(c);
+            out.putCount(board.faceDownCount(c));
+            out.putCount(column.size());
+            for (int k = 0; k < column.size(); k++) {
+                out.putCount(column.get(k).id());
+            }
+        }
+        for (int f = 0; f < board.foundationCount(); f++) {
+            CardStack pile = board.foundationPile(f);
+            out.putCount(pile.size());
+            for (int k = 0; k < pile.size(); k++) {
+                out.putCount(pile.get(k).id());
+            }
+        }
+        out.putCount(stock.wasteSize());
+        out.putCount(stock.stockSize());
+        for (int k = 0; k < stock.wasteSize() + stock.stockSize(); k++) {
+            out.putCount(stock.at(k).id());
+        }
+        return out.bytes();
+    }
+
+    /**
+     * Restores a game saved in the binary form.
+     * @param snapshot the snapshot
+     * @param board the board to restore the game on; its current game is
+     *              replaced, or left alone if the snapshot cannot be read
+     * @throws IllegalArgumentException if the snapshot is damaged or was
+     *         taken of a different kind of board
+     */
+    public static void decode(byte[] snapshot, Board board) {
+        ByteReader in = new ByteReader(snapshot, wide(board) ? 2 : 1);
+        try {
+            if (in.get() != VERSION) {
+                throw new IllegalArgumentException("Unknown snapshot version " + snapshot[0]);
+            }
+            checkShape(board, in.get(), in.get());
+            int draw = in.getVarint();
+            int recycleLimit = in.getVarint() - 1;
+            int recycles = in.getVarint();
+            int moves = in.getVarint();
+            long seed = in.getLong();
+            Restorer restorer = new Restorer(board);
+            for (int c = 0; c < board.tabColSize(); c++) {
+                restorer.faceDown[c] = in.getCount();
+                int n = in.getCount();
+                for (int k = 0; k < n; k++) {
+                    restorer.toColumn(c, in.getCount());
+                }
+            }
+            for (int f = 0; f < board.foundationCount(); f++) {
+                int n = in.getCount();
+                for (int k = 0; k < n; k++) {
+                    restorer.toFoundation(f, in.getCount());
+                }
+            }
+            int waste = in.getCount();
+            int stock = in.getCount();
+            for (int k = 0; k < waste + stock; k++) {
+                restorer.toStock(in.getCount());
+            }
+            restorer.finish(draw, recycleLimit, waste, stock, recycles, moves, seed);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Snapshot is cut short", e);
+        }
+    }
+
+    /**
+     * Saves a game in the text form, such as
+     * <pre>
+     * solitaire columns=7 foundations=4 draw=1 recycle-limit=0 recycles=0 moves=3 seed=42
+     * t0: Kc
+     * t1: (8s) 7h 6c
+     * ...
+     * f0: As
+     * ...
+     * waste: 3h
+     * stock: 5c Kd ...
+     * </pre>
+     * Face-down cards are in parentheses.  Cards are written with
+     * <code>Card.code</code>; a card from the second or a later deck has
+     * ":" and its deck number after the code.
+     * @param board the board the game is played on
+     * @return the snapshot.
+     */
+    public static String toText(Board board) {
+        StockPile stock = board.stockPile();
+        StringBuilder s = new StringBuilder();
+        s.append(TEXT_HEADER)
+         .append(" columns=").append(board.tabColSize())
+         .append(" foundations=").append(board.foundationCount())
+         .append(" draw=").append(stock.drawCount())
+         .append(" recycle-limit=").append(stock.recycleLimit())
+         .append(" recycles=").append(stock.recycles())
+         .append(" moves=").append(board.movesMade())
+         .append(" seed=").append(board.seed()).append('\n');
+        for (int c = 0; c < board.tabColSize(); c++) {
+            CardStack column = board.column(c);
+            s.append('t').append(c).append(':');
+            for (int k = 0; k < column.size(); k++) {
+                s.append(' ');
+                if (k < board.faceDownCount(c)) {
+                    s.append('(').append(code(column.get(k))).append(')');
+                } else {
+                    s.append(code(column.get(k)));
+                }
+            }
+            s.append('\n');
+        }
+        for (int f = 0; f < board.foundationCount(); f++) {
+            CardStack pile = board.foundationPile(f);
+            s.append('f').append(f).append(':');
+            for (int k = 0; k < pile.size(); k++) {
+                s.append(' ').append(code(pile.get(k)));
+            }
+            s.append('\n');
+        }
+        s.append("waste:");
+        for (int k = 0; k < stock.wasteSize(); k++) {
+            s.append(' ').append(code(stock.at(k)));
+        }
+        s.append("\nstock:");
+        for (int k = stock.wasteSize(); k < stock.wasteSize() + stock.stockSize(); k++) {
+            s.append(' ').append(code(stock.at(k)));
+        }
+        return s.append('\n').toString();
+    }
+
+    /**
+     * Restores a game saved in the text form.
+     * @param text the snapshot
+     * @param board the board to restore the game on; its current game is
+     *              replaced, or left alone if the text cannot be read
+     * @throws IllegalArgumentException if the text is not a snapshot or
+     *         was taken of a different kind of board
+     */
+    public static void fromText(String text, Board board) {
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        for (int id = 0; id < board.cardCount(); id++) {
+            ids.put(code(board.deck().card(id)), id);
+        }
+        Map<String, String> header = new HashMap<String, String>();
+        Restorer restorer = new Restorer(board);
+        int waste = 0;
+        int stock = 0;
+        try {
+            BufferedReader lines = new BufferedReader(new StringReader(text));
+            String line = lines.readLine();
+            if (line == null || !line.startsWith(TEXT_HEADER + " ")) {
+                throw new IllegalArgumentException("Not a board snapshot");
+            }
+            for (String field : line.substring(TEXT_HEADER.length()).trim().split("\\s+")) {
+                int eq = field.indexOf('=');
+                header.put(field.substring(0, eq), field.substring(eq + 1));
+            }
+            checkShape(board, number(header, "columns"), number(header, "foundations"));
+            while ((line = lines.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                String pile = line.substring(0, colon);
+                String[] cards = line.substring(colon + 1).trim().split("\\s+");
+                for (String card : cards) {
+                    if (card.isEmpty()) {
+                        continue;
+                    }
+                    boolean down = card.startsWith("(") && card.endsWith(")");
+                    int id = id(ids, down ? card.substring(1, card.length() - 1) : card);
+                    if (pile.equals("waste")) {
+                        restorer.toStock(id);
+                        waste++;
+                    } else if (pile.equals("stock")) {
+                        restorer.toStock(id);
+                        stock++;
+                    } else if (pile.charAt(0) == 't') {
+                        int c = Integer.parseInt(pile.substring(1));
+                        restorer.toColumn(c, id);
+                        if (down) {
+                            restorer.faceDown[c]++;
+                        }
+                    } else if (pile.charAt(0) == 'f') {
+                        restorer.toFoundation(Integer.parseInt(pile.substring(1)), id);
+                    } else {
+                        throw new IllegalArgumentException("Unknown pile " + pile);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Snapshot could not be read", e);
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Snapshot is damaged", e);
+        }
+        restorer.finish(number(header, "draw"), number(header, "recycle-limit"), waste, stock,
+                        number(header, "recycles"), number(header, "moves"),
+                        Long.parseLong(header.get("seed")));
+    }
+
+    /**
+     * Determines if card ids and counts need two bytes each.
+     */
+    private static boolean wide(Board board) {
+        return board.cardCount() > 255;
+    }
+
+    /**
+     * Makes sure a snapshot fits a board.
+     */
+    private static void checkShape(Board board, int columns, int foundations) {
+        if (columns != board.tabColSize() || foundations != board.foundationCount()) {
+            throw new IllegalArgumentException("Snapshot of a board with " + columns
+                + " columns and " + foundations + " foundations does not fit "
+                + board.geometry());
+        }
+    }
+
+    /**
+     * Writes a card in the text form.
+     */
+    private static String code(Card card) {
+        return card.copy() == 0 ? card.code() : card.code() + ":" + card.copy();
+    }
+
+    /**
+     * Reads a card in the text form.
+     */
+    private static int id(Map<String, Integer> ids, String code) {
+        Integer id = ids.get(code);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown card " + code);
+        }
+        return id;
+    }
+
+    /**
+     * Reads a number from the header of the text form.
+     */
+    private static int number(Map<String, String> header, String name) {
+        String value = header.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Snapshot has no " + name);
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Gathers the cards of a snapshot, making sure each card of the deck
+     * turns up exactly once, and puts them on the board only when the
+     * whole snapshot has been read.
+     */
+    private static class Restorer {
+        private Board board;
+        private boolean[] placed;
+        private int placedCount;
+        private int[] faceDown;
+        private CardStack[] columns;
+        private CardStack[] foundations;
+        private Card[] stockCards;
+        private int stockCount;
+
+        Restorer(Board target) {
+            board = target;
+            placed = new boolean[board.cardCount()];
+            faceDown = new int[board.tabColSize()];
+            columns = new CardStack[board.tabColSize()];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = new CardStack();
+            }
+            foundations = new CardStack[board.foundationCount()];
+            for (int f = 0; f < foundations.length; f++) {
+                foundations[f] = new CardStack();
+            }
+            stockCards = new Card[board.cardCount()];
+        }
+
+        void toColumn(int c, int id) {
+            columns[c].push(take(id));
+        }
+
+        void toFoundation(int f, int id) {
+            foundations[f].push(take(id));
+        }
+
+        void toStock(int id) {
+            stockCards[stockCount++] = take(id);
+        }
+
+        private Card take(int id) {
+            if (id < 0 || id >= placed.length || placed[id]) {
+                throw new IllegalArgumentException("Card " + id + " is missing or doubled");
+            }
+            placed[id] = true;
+            placedCount++;
+            return board.deck().card(id);
+        }
+
+        void finish(int draw, int recycleLimit, int waste, int stock, int recycles,
+                    int moves, long seed) {
+            if (placedCount != placed.length) {
+                throw new IllegalArgumentException("Snapshot has " + placedCount
+                    + " of the " + placed.length + " cards");
+            }
+            for (int c = 0; c < faceDown.length; c++) {
+                if (faceDown[c] > columns[c].size()
+                    || (faceDown[c] > 0 && faceDown[c] == columns[c].size())) {
+                    throw new IllegalArgumentException("Column " + c
+                        + " has no face-up card on its face-down cards");
+                }
+            }
+            StockPile.checkRules(draw, recycleLimit);
+            // Nothing below can fail, so the board is only changed once
+            // the whole snapshot is known to be good.
+            board.unshare();
+            StockPile pile = board.stockPile();
+            pile.setRules(draw, recycleLimit);
+            for (int c = 0; c < columns.length; c++) {
+                board.column(c).clear();
+                columns[c].moveTo(0, board.column(c));
+            }
+            for (int f = 0; f < foundations.length; f++) {
+                board.foundationPile(f).clear();
+                foundations[f].moveTo(0, board.foundationPile(f));
+            }
+            pile.load(stockCards, waste, stock, recycles);
+            board.restored(faceDown, moves, seed);
+        }
+    }
+
+    /**
+     * Writes the binary form.
+     */
+    private static class ByteWriter {
+        private byte[] bytes;
+        private int length;
+        private int countBytes;
+
+        ByteWriter(byte[] buffer, int wide) {
+            bytes = buffer;
+            countBytes = wide;
+        }
+
+        void put(int b) {
+            bytes[length++] = (byte) b;
+        }
+
+        void putCount(int n) {
+            if (countBytes == 2) {
+                put(n >>> 8);
+            }
+            put(n);
+        }
+
+        void putVarint(int n) {
+            while ((n & ~0x7F) != 0) {
+                put((n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            put(n);
+        }
+
+        void putLong(long n) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                put((int) (n >>> shift));
+            }
+        }
+
+        byte[] bytes() {
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, 0, result, 0, length);
+            return result;
+        }
+    }
+
+    /**
+     * Reads the binary form.
+     */
+    private static class ByteReader {
+        private byte[] bytes;
+        private int position;
+        private int countBytes;
+
+        ByteReader(byte[] snapshot, int wide) {
+            bytes = snapshot;
+            countBytes = wide;
+        }
+
+        int get() {
+            return bytes[position++] & 0xFF;
+        }
+
+        int getCount() {
+            int n = get();
+            if (countBytes == 2) {
+                n = (n << 8) | get();
+            }
+            return n;
+        }
+
+        int getVarint() {
+            int n = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = get();
+                n |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return n;
+                }
+            }
+            throw new IllegalArgumentException("Bad number in snapshot");
+        }
+
+        long getLong() {
+            long n = 0;
+            for (int k = 0; k < 8; k++) {
+                n = (n << 8) | get();
+            }
+            return n;
+        }
+    }
+}
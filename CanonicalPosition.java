@@ -0,0 +1,229 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CanonicalPosition.java
+ *
+ * <code>CanonicalPosition</code> gives the position on a board a hash and
+ * a written form that are the same for every position that plays the
+ * same way, so a table of positions can treat them as one.
+ * <p>
+ * Three things are left out.
+ * <ul>
+ * <li>The order of the columns and of the foundations: the same cards
+ *     in other columns are the same position.</li>
+ * <li>Which of two suits of the same color a card has: swapping the
+ *     hearts and diamonds everywhere on the board, face-down cards and
+ *     stock included, changes nothing the rules can see, and likewise
+ *     the spades and clubs.</li>
+ * <li>Which deck a card comes from, when several are shuffled together.</li>
+ * </ul>
+ * Cards are relabelled by their face under each suit swap, the position
+ * is hashed under each relabelling in one pass over the board, and the
+ * smallest hash is kept.  A pile is hashed by adding up a random number
+ * for each label at each place (Zobrist hashing), so every relabelling
+ * costs a table lookup per card.  The board is not copied.
+ */
+public class CanonicalPosition {
+
+    /** The board read. */
+    private Board board;
+
+    /** For each suit swap, the label of each card by id. */
+    private int[][] labels;
+
+    /** The cards of the first deck, by label. */
+    private Card[] byLabel;
+
+    /**
+     * A random number for each label at each place in a pile, looked up
+     * by place, card id and suit swap, the swaps side by side: places 0
+     * and up are in a column, <code>cardCount</code> and up in the stock.
+     */
+    private long[] zobrist;
+
+    /** The hash of each column under each suit swap, as it is worked out. */
+    private long[] columnHash;
+
+    /** The hash of the whole position under each suit swap. */
+    private long[] keys;
+
+    /**
+     * Creates a new <code>CanonicalPosition</code> instance.
+     * @param gameBoard the board to read
+     */
+    public CanonicalPosition(Board gameBoard) {
+        board = gameBoard;
+        Deck deck = gameBoard.deck();
+        int faces = deck.cardCount() / deck.deckCount();
+        byLabel = new Card[faces];
+        List<String> suits = new ArrayList<String>();
+        for (int id = 0; id < faces; id++) {
+            Card card = deck.card(id);
+            byLabel[card.face()] = card;
+            if (!suits.contains(card.suit())) {
+                suits.add(card.suit());
+            }
+        }
+        List<int[]> swaps = new ArrayList<int[]>();
+        permute(suits, new int[suits.size()], 0, new boolean[suits.size()], swaps);
+        labels = new int[swaps.size()][deck.cardCount()];
+        for (int g = 0; g < swaps.size(); g++) {
+            int[] swap = swaps.get(g);
+            for (int id = 0; id < deck.cardCount(); id++) {
+                int face = deck.card(id).face();
+                int rank = face / suits.size();
+                labels[g][id] = rank * suits.size() + swap[face % suits.size()];
+            }
+        }
+        int cards = deck.cardCount();
+        zobrist = new long[2 * cards * cards * swaps.size()];
+        for (int k = 0; k < 2 * cards; k++) {
+            for (int id = 0; id < cards; id++) {
+                for (int g = 0; g < swaps.size(); g++) {
+                    long label = (long) k * faces + labels[g][id];
+                    zobrist[(k * cards + id) * swaps.size() + g] =
+                        Deck.mix(label + 0x2545F4914F6CDD1DL);
+                }
+            }
+        }
+        columnHash = new long[swaps.size()];
+        keys = new long[swaps.size()];
+    }
+
+    /**
+     * Accesses the number of suit swaps folded together, the identity
+     * included: 4 for the standard deck.
+     * @return the number of suit swaps.
+     */
+    public int symmetries() {
+        return labels.length;
+    }
+
+    /**
+     * Hashes the position on the board.  Positions that differ only in
+     * the order of the columns or foundations, in swapped suits of the
+     * same color, or in which deck their cards come from have the same
+     * hash.  The moves made and the seed do not count.
+     * @return the hash.
+     */
+    public long hash() {
+        return keys[hashAll()];
+    }
+
+    /**
+     * Writes the position on the board in its canonical form: the
+     * columns, then the foundations, each sorted, then the stock and the
+     * waste.  Two positions have the same form if and only if they are
+     * the same position up to the symmetries <code>hash</code> leaves out
+     * (barring a hash collision in choosing the suit swap).
+     * @return the canonical form.
+     */
+    public String form() {
+        int[] label = labels[hashAll()];
+        List<String> columns = new ArrayList<String>();
+        for (int c = 0; c < board.tabColSize(); c++) {
+            CardStack column = board.column(c);
+            StringBuilder text = new StringBuilder();
+            for (int k = 0; k < column.size(); k++) {
+                if (k == board.faceDownCount(c)) {
+                    text.append('|');
+                }
+                text.append(byLabel[label[column.get(k).id()]].code()).append(' ');
+            }
+            columns.add(text.toString());
+        }
+        List<String> foundations = new ArrayList<String>();
+        for (int f = 0; f < board.foundationCount(); f++) {
+            Card top = board.fCardAt(f);
+            foundations.add(top == null ? "-" : byLabel[label[top.id()]].code());
+        }
+        Collections.sort(columns);
+        Collections.sort(foundations);
+        StringBuilder form = new StringBuilder();
+        for (String column : columns) {
+            form.append('[').append(column.trim()).append("] ");
+        }
+        form.append(foundations);
+        StockPile stock = board.stockPile();
+        form.append(" stock");
+        for (int k = 0; k < stock.wasteSize() + stock.stockSize(); k++) {
+            form.append(k == stock.wasteSize() ? " | " : " ")
+                .append(byLabel[label[stock.at(k).id()]].code());
+        }
+        if (stock.recycleLimit() != StockPile.UNLIMITED) {
+            form.append(" recycles=").append(stock.recycles());
+        }
+        return form.toString();
+    }
+
+    /**
+     * Hashes the position under every suit swap in one pass.
+     * @return the number of the suit swap with the smallest hash.
+     */
+    private int hashAll() {
+        int n = labels.length;
+        int cards = board.cardCount();
+        Arrays.fill(keys, 0);
+        for (int c = 0; c < board.tabColSize(); c++) {
+            CardStack column = board.column(c);
+            Arrays.fill(columnHash, board.faceDownCount(c));
+            for (int k = 0; k < column.size(); k++) {
+                int at = (k * cards + column.get(k).id()) * n;
+                for (int g = 0; g < n; g++) {
+                    columnHash[g] += zobrist[at + g];
+                }
+            }
+            for (int g = 0; g < n; g++) {
+                keys[g] += Deck.mix(columnHash[g]);
+            }
+        }
+        for (int f = 0; f < board.foundationCount(); f++) {
+            Card top = board.fCardAt(f);
+            for (int g = 0; g < n; g++) {
+                keys[g] += Deck.mix(0x51ED27L + (top == null ? 0 : labels[g][top.id()] + 1));
+            }
+        }
+        StockPile stock = board.stockPile();
+        Arrays.fill(columnHash, stock.wasteSize() * 31L + stock.stockSize());
+        for (int k = 0; k < stock.wasteSize() + stock.stockSize(); k++) {
+            int at = ((cards + k) * cards + stock.at(k).id()) * n;
+            for (int g = 0; g < n; g++) {
+                columnHash[g] += zobrist[at + g];
+            }
+        }
+        int best = 0;
+        for (int g = 0; g < n; g++) {
+            long h = columnHash[g];
+            if (stock.recycleLimit() != StockPile.UNLIMITED) {
+                h += stock.recycles() * 0x9E3779B97F4A7C15L;
+            }
+            keys[g] = keys[g] * 0x9E3779B97F4A7C15L + Deck.mix(h);
+            if (keys[g] < keys[best]) {
+                best = g;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lists the ways of swapping suits that keep every suit's color.
+     */
+    private static void permute(List<String> suits, int[] swap, int s, boolean[] used,
+                                List<int[]> into) {
+        if (s == swap.length) {
+            into.add(swap.clone());
+            return;
+        }
+        for (int t = 0; t < swap.length; t++) {
+            if (!used[t] && RuleSet.isRed(suits.get(t)) == RuleSet.isRed(suits.get(s))) {
+                used[t] = true;
+                swap[s] = t;
+                permute(suits, swap, s + 1, used, into);
+                used[t] = false;
+            }
+        }
+    }
+}
@@ -20,6 +20,23 @@ public class Card {
      */
     private int pointValue;
 
+    /**
+     * The number of this card in its deck, 0 to the deck's card count - 1.
+     * Every card of a deck has its own id, copies included.
+     */
+    private int id;
+
+    /**
+     * The number of this card's rank and suit: the rank's index times
+     * the number of suits plus the suit's index.  Copies of a card from
+     * different decks share it.
+     */
+    private int face;
+
+    /**
+     * Which of the shuffled-together decks this card comes from, from 0.
+     */
+    private int copy;
 
     /**
      * Creates a new <code>Card</code> instance.
@@ -33,9 +50,28 @@ public class Card {
      */
     public Card(String cardRank, String cardSuit, int cardPointValue) {
         //initializes a new Card with the given rank, suit, and point value
+        this(cardRank, cardSuit, cardPointValue, -1, -1, 0);
+    }
+
+    /**
+     * Creates a new <code>Card</code> instance that knows its place in
+     * a deck.
+     *
+     * @param cardRank  the rank of the card
+     * @param cardSuit  the suit of the card
+     * @param cardPointValue the point value of the card
+     * @param cardId    the number of the card in its deck
+     * @param cardFace  the number of the card's rank and suit
+     * @param cardCopy  which of the decks the card comes from
+     */
+    public Card(String cardRank, String cardSuit, int cardPointValue,
+                int cardId, int cardFace, int cardCopy) {
         rank = cardRank;
         suit = cardSuit;
         pointValue = cardPointValue;
+        id = cardId;
+        face = cardFace;
+        copy = cardCopy;
     }
 
 
@@ -63,7 +99,47 @@ public class Card {
         return pointValue;
     }
 
+    /**
+     * Accesses this <code>Card's</code> number in its deck.
+     * @return this <code>Card's</code> id, or -1 if it is not part of a deck.
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * Accesses the number of this <code>Card's</code> rank and suit.
+     * @return this <code>Card's</code> face, or -1 if it is not part of a deck.
+     */
+    public int face() {
+        return face;
+    }
+
+    /**
+     * Accesses which deck this <code>Card</code> comes from.
+     * @return this <code>Card's</code> deck number, from 0.
+     */
+    public int copy() {
+        return copy;
+    }
+
+    /**
+     * Accesses a short code for this card: the rank ("A", "2" to "10",
+     * "J", "Q", "K" for the standard ranks) followed by the first letter
+     * of the suit, such as "10h" or "Qs".
+     * @return the code of this card.
+     */
+    public String code() {
+        String r = rank;
+        if (r.equals("ace") || r.equals("jack") || r.equals("queen") || r.equals("king")) {
+            r = r.substring(0, 1).toUpperCase();
+        }
+        return r + suit.charAt(0);
+    }
+
     /** Compare this card with the argument.
+     * Copies of a card from different decks match; use <code>id</code>
+     * to tell them apart.
      * @param otherCard the other card to compare to this
      * @return true if the rank, suit, and point value of this card
      *              are equal to those of the argument;
@@ -75,6 +151,16 @@ public class Card {
             && otherCard.pointValue() == this.pointValue();
     }
 
+    /**
+     * Returns a hash code for this card, its id.  Cards are equal only to
+     * themselves, so this keeps hashing consistent and cheap.
+     * @return the hash code of this card.
+     */
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
     /**
      * Converts the rank, suit, and point value into a string in the format
      *     "[Rank] of [Suit] (point value = [PointValue])".
@@ -0,0 +1,196 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * This class slides cards across the game frame when a move is made.
+ * It is installed as the glass pane of a <code>CardGameGUI</code>.
+ * The moving cards are composited once into an off-screen buffer and
+ * every frame only the area the buffer covered or now covers is repainted,
+ * so a frame does not allocate anything.
+ */
+public class CardAnimator extends JComponent implements ActionListener {
+
+    /** Version of the serialized form inherited from JComponent. */
+    private static final long serialVersionUID = 1L;
+
+    /** Length of one card slide in milliseconds. */
+    public static final int DURATION_MS = 150;
+    /** Delay between two frames in milliseconds (about 60 frames/second). */
+    private static final int FRAME_MS = 16;
+
+    /** The single timer driving every animation. */
+    private Timer timer;
+    /** Off-screen buffer holding the moving cards. */
+    private BufferedImage buffer;
+    /** Width of the part of the buffer in use. */
+    private int bufferWidth;
+    /** Height of the part of the buffer in use. */
+    private int bufferHeight;
+    /** The labels that are hidden until the cards arrive. */
+    private JLabel[] targets;
+    /** The number of entries of targets in use. */
+    private int targetCount;
+    /** Where the cards start. */
+    private int fromX;
+    private int fromY;
+    /** Where the cards end. */
+    private int toX;
+    private int toY;
+    /** Time (System.nanoTime) at which the current slide started. */
+    private long startTime;
+    /** Area covered by the buffer in the last frame. */
+    private Rectangle lastBounds;
+    /** Area covered by the buffer in this frame. */
+    private Rectangle bounds;
+
+    /**
+     * Creates a new <code>CardAnimator</code> instance.
+     * @param maxCards the largest number of cards that can move at once
+     * @param cardWidth the width of a card
+     * @param cardHeight the height of a card
+     * @param yStep the distance between the tops of two stacked cards
+     */
+    public CardAnimator(int maxCards, int cardWidth, int cardHeight, int yStep) {
+        setOpaque(false);
+        targets = new JLabel[maxCards];
+        lastBounds = new Rectangle();
+        bounds = new Rectangle();
+        GraphicsConfiguration gc = GraphicsEnvironment.isHeadless()
+            ? null
+            : GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        int width = cardWidth;
+        int height = cardHeight + (maxCards - 1) * yStep;
+        if (gc != null) {
+            buffer = gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        } else {
+            buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        timer = new Timer(FRAME_MS, this);
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Determines if a slide is in progress.
+     * @return true if cards are moving; false otherwise.
+     */
+    public boolean isAnimating() {
+        return timer.isRunning();
+    }
+
+    /**
+     * Slide the cards shown by the given labels from a point to the
+     * location of the first label.  The labels must already show the cards
+     * in their new place; they are hidden until the slide ends.
+     * @param from the upper left corner the cards start at, in the
+     *             coordinates of the labels' parent
+     * @param cards the labels at the destination, bottom card first
+     * @param count the number of labels used
+     */
+    public void slide(Point from, JLabel[] cards, int count) {
+        finish();
+        if (count <= 0 || count > targets.length) {
+            return;
+        }
+        Graphics2D g = buffer.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, buffer.getWidth(), buffer.getHeight());
+        g.setComposite(AlphaComposite.SrcOver);
+        Point to = SwingUtilities.convertPoint(cards[0].getParent(),
+            cards[0].getX(), cards[0].getY(), this);
+        Point start = SwingUtilities.convertPoint(cards[0].getParent(), from, this);
+        int originY = cards[0].getY();
+        bufferWidth = 0;
+        bufferHeight = 0;
+        for (int k = 0; k < count; k++) {
+            Icon icon = cards[k].getIcon();
+            int dy = cards[k].getY() - originY;
+            if (icon instanceof ImageIcon) {
+                Image image = ((ImageIcon) icon).getImage();
+                g.drawImage(image, 0, dy, null);
+            }
+            bufferWidth = Math.max(bufferWidth, cards[k].getWidth());
+            bufferHeight = Math.max(bufferHeight, dy + cards[k].getHeight());
+            bufferWidth = Math.min(bufferWidth, buffer.getWidth());
+            bufferHeight = Math.min(bufferHeight, buffer.getHeight());
+            targets[k] = cards[k];
+            cards[k].setVisible(false);
+        }
+        g.dispose();
+        targetCount = count;
+        fromX = start.x;
+        fromY = start.y;
+        toX = to.x;
+        toY = to.y;
+        lastBounds.setBounds(fromX, fromY, bufferWidth, bufferHeight);
+        bounds.setBounds(lastBounds);
+        startTime = System.nanoTime();
+        setVisible(true);
+        timer.start();
+    }
+
+    /**
+     * Ends the current slide at once, showing the cards in their new place.
+     */
+    public void finish() {
+        if (!timer.isRunning()) {
+            return;
+        }
+        timer.stop();
+        for (int k = 0; k < targetCount; k++) {
+            targets[k].setVisible(true);
+            targets[k] = null;
+        }
+        targetCount = 0;
+        repaint(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Advance the slide by one frame.
+     * @param e the timer event
+     */
+    public void actionPerformed(ActionEvent e) {
+        long elapsed = System.nanoTime() - startTime;
+        double t = elapsed / (DURATION_MS * 1000000.0);
+        if (t >= 1.0) {
+            finish();
+            return;
+        }
+        // Ease out so the cards settle into place.
+        double eased = 1.0 - (1.0 - t) * (1.0 - t);
+        int x = fromX + (int) Math.round((toX - fromX) * eased);
+        int y = fromY + (int) Math.round((toY - fromY) * eased);
+        lastBounds.setBounds(bounds);
+        bounds.setBounds(x, y, bufferWidth, bufferHeight);
+        lastBounds.add(bounds);
+        repaint(lastBounds.x, lastBounds.y, lastBounds.width, lastBounds.height);
+    }
+
+    /**
+     * Draw the moving cards.
+     * @param g the graphics context of the glass pane
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (timer.isRunning()) {
+            g.drawImage(buffer, bounds.x, bounds.y, bounds.x + bufferWidth,
+                bounds.y + bufferHeight, 0, 0, bufferWidth, bufferHeight, null);
+        }
+    }
+}
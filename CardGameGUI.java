@@ -10,17 +10,33 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseEvent;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.JComponent;
 import javax.swing.JButton;
 import javax.swing.JLabel;
+import javax.swing.JSlider;
 import javax.swing.ImageIcon;
-import java.net.URL;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import java.util.List;
 import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * This class provides a GUI for solitaire games related to Elevens.
  */
 public class CardGameGUI extends JFrame implements ActionListener {
+
+    /** The system property naming the player; the login name by default. */
+    public static final String PLAYER_PROPERTY = "solitaire.player";
+    /** The system property naming the statistics file. */
+    public static final String STATS_PROPERTY = "solitaire.stats";
+    /** The system property naming the endgame table; there is none by default. */
+    public static final String ENDGAMES_PROPERTY = "solitaire.endgames";
+    /** The system property naming the directory games are recorded in; none by default. */
+    public static final String RECORDS_PROPERTY = "solitaire.records";
     
     /** Height of the game frame. (302) */
     private static final int DEFAULT_HEIGHT = 816;
@@ -30,6 +46,14 @@ public class CardGameGUI extends JFrame implements ActionListener {
     private static final int CARD_WIDTH = 73;
     /** Height of a card.*/
     private static final int CARD_HEIGHT = 97;
+    /** Row (y coord) of the upper left corner of the lowest tableau row. */
+    private static final int TABLEAU_BOTTOM = 500;
+    /** Row (y coord) of the upper left corner of the deck card. */
+    private static final int DECK_TOP = 670;
+    /** Number of tableau columns (or foundations) the layout is drawn for. */
+    private static final int DEFAULT_COLUMNS = 7;
+    /** Number of tableau rows the layout is drawn for. */
+    private static final int DEFAULT_ROWS = 12;
     /** Row (y coord) of the upper left corner of the first card. */
     private static final int LAYOUT_TOP = 30;
     /** Column (x coord) of the upper left corner of the first card. */
@@ -53,9 +77,17 @@ public class CardGameGUI extends JFrame implements ActionListener {
     /** Distance between the tops of the "n undealt cards" and
      *  the "You lose/win" labels. */
     private static final int LABEL_HEIGHT_INC = 35;
+    /** Time between the moves of a replay being played, in milliseconds. */
+    private static final int REPLAY_STEP_MS = 150;
 
     /** The board (Board subclass). */
     private Board board;
+    /** The card images, scaled for this display. */
+    private CardImages images;
+    /** How much wider than the default layout the board is (unscaled). */
+    private int widthShift;
+    /** How much taller than the default layout the board is (unscaled). */
+    private int heightShift;
 
     /** The main panel containing the game components. */
     private JPanel panel;
@@ -65,10 +97,16 @@ public class CardGameGUI extends JFrame implements ActionListener {
     private JButton restartButton;
     /** The Deal button. */
     private JButton dealButton;
+    /** Plays the rest of the game once nothing is hidden. */
+    private JButton finishButton;
+    /** The moves the finish button makes, worked out at each repaint. */
+    private List<Move> finishingMoves = new ArrayList<Move>();
     /** The "number of undealt cards remain" message. */
     private JLabel statusMsg;
     /** The "you've won n out of m games" message. */
     private JLabel totalsMsg;
+    /** The message shown until the board is ready. */
+    private JLabel loadingMsg;
     /** The card displays for tableau. */
     private JLabel[][] tDisplayCards;
     /** The card displays for foundation. */
@@ -79,73 +117,141 @@ public class CardGameGUI extends JFrame implements ActionListener {
     private JLabel winMsg;
     /** The loss message. */
     private JLabel lossMsg;
+    /** Whether the end of the game being played has been reported. */
+    private boolean gameEnded;
     /** The coordinates of the card displays on tableau. */
     private Point[][] tCardCoords;
     /** The coordinates of the card displays on foundation. */
     private Point[] fCardCoords;
     /** The coordinates of the card display on deck. */
     private Point dCardCoords;
+    /** Slides moved cards into place. */
+    private CardAnimator animator;
+    /** Scratch array of the labels a move lands on. */
+    private JLabel[] movingLabels;
     
 
     /** kth element is true iff the user has selected card #k. */
     private int[][] selections;
-    /** The number of games won. */
-    private int totalWins;
-    /** The number of games played. */
-    private int totalGames;
+    /** Counts the games won and played, and is published through JMX. */
+    private EngineMetrics metrics;
+    /** The saved records of the players. */
+    private StatsStore stats;
+    /** The player at this table. */
+    private String player;
+    /** The known endgames, or null. */
+    private EndgameTable endgames;
+    /** The canonical position of the board, for the endgame lookups. */
+    private CanonicalPosition endgamePosition;
+    /** The game being replayed, or null while a game is played. */
+    private GameReplay replay;
+    /** The board of the game being played, kept while another is replayed. */
+    private Board liveBoard;
+    /** Starts and stops playing the replay. */
+    private JButton playButton;
+    /** Makes the next move of the replay. */
+    private JButton stepButton;
+    /** Takes back the last move of the replay. */
+    private JButton backButton;
+    /** Leaves the replay. */
+    private JButton doneButton;
+    /** Goes to any move of the replay. */
+    private JSlider seekSlider;
+    /** Makes the moves of the replay while it is played. */
+    private Timer replayTimer;
     
+
     /**
-     * Flag used to control debugging print statements.
+     * Initialize the GUI at the scale that suits the screen.
+     * @param gameBoard is a <code>Board</code> subclass.
      */
-    private static final boolean I_AM_DEBUGGING = true;
-
+    public CardGameGUI(Board gameBoard) {
+        this(gameBoard, CardImages.defaultScale());
+    }
 
     /**
      * Initialize the GUI.
      * @param gameBoard is a <code>Board</code> subclass.
+     * @param scale the factor the cards and the layout are scaled by
      */
-    public CardGameGUI(Board gameBoard) {
+    public CardGameGUI(Board gameBoard, double scale) {
+        this(scale);
+        setBoard(gameBoard);
+    }
+
+    /**
+     * Initialize an empty game frame.  It shows a message until a board is
+     * given to <code>setBoard</code>, so the frame can be put on the screen
+     * while the board and the card images are still being prepared.
+     * @param scale the factor the cards and the layout are scaled by
+     */
+    public CardGameGUI(double scale) {
+        images = CardImages.forScale(scale);
+        metrics = new EngineMetrics();
+        metrics.register("gui");
+        player = System.getProperty(PLAYER_PROPERTY, System.getProperty("user.name"));
+        initFrame();
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+    }
+
+    /**
+     * Lay the cards of a board out on the table, opening the statistics
+     * file first.  This is done once, on the event dispatch thread.
+     * @param gameBoard is a <code>Board</code> subclass.
+     */
+    public void setBoard(Board gameBoard) {
+        setBoard(gameBoard, openStats());
+    }
+
+    /**
+     * Lay the cards of a board out on the table.  This is done once,
+     * on the event dispatch thread.
+     * @param gameBoard is a <code>Board</code> subclass.
+     * @param gameStats the players' records, as opened by
+     *                  <code>openStats</code> off the event dispatch thread
+     */
+    public void setBoard(Board gameBoard, StatsStore gameStats) {
         board = gameBoard;
-        totalWins = 0;
-        totalGames = 0;
+        stats = gameStats;
+        gameEnded = false;
+        board.addGameListener(metrics);
+        board.addGameListener(new StatsRecorder(stats, player));
+        GameRecordWriter records = openRecords(board);
+        if (records != null) {
+            board.addGameListener(new GameRecorder(records, board));
+        }
+        endgames = openEndgames(board.ruleSet());
+        endgamePosition = endgames == null ? null : new CanonicalPosition(board);
+        int piles = Math.max(board.tabColSize(), board.foundationCount());
+        widthShift = LAYOUT_WIDTH_INC * Math.max(0, piles - DEFAULT_COLUMNS);
+        heightShift = LAYOUT_HEIGHT_INC * Math.max(0, board.tabRowSize() - DEFAULT_ROWS);
 
-        // Initialize tcardCoords using 7 cards per row
+        // Initialize tCardCoords, one column per tableau column
         tCardCoords = new Point[board.tabRowSize()][board.tabColSize()];
-        int x = LAYOUT_LEFT;
-        int y = LAYOUT_TOP;
+        int x = scaled(LAYOUT_LEFT);
+        int y = scaled(LAYOUT_TOP);
         for (int r = 0; r < board.tabRowSize(); r++) {
             for(int c = 0; c < board.tabColSize(); c++){
-                x = LAYOUT_LEFT + LAYOUT_WIDTH_INC * c;
-                y = 500 - (LAYOUT_HEIGHT_INC * r);
+                x = scaled(LAYOUT_LEFT + LAYOUT_WIDTH_INC * c);
+                y = scaled(TABLEAU_BOTTOM + heightShift - (LAYOUT_HEIGHT_INC * r));
                 tCardCoords[r][c] = new Point(x, y);
-                if (I_AM_DEBUGGING) {
-                    //System.out.println(x + " " + y);
-                    //System.out.println(cardCoords[r][c]);
-                    //System.out.println(LAYOUT_LEFT + LAYOUT_WIDTH_INC * c);
-                    //System.out.println("\n");
-                }
             }
         }
         
-        // Initialize fCardCoords using 4 cards per row
-        fCardCoords = new Point[4];
-        for (int fPileIndex = 0; fPileIndex < 4; fPileIndex++) {
-            x = LAYOUT_LEFT + LAYOUT_WIDTH_INC * fPileIndex;
-            y = LAYOUT_TOP;
+        // Initialize fCardCoords, one per foundation pile
+        fCardCoords = new Point[board.foundationCount()];
+        for (int fPileIndex = 0; fPileIndex < board.foundationCount(); fPileIndex++) {
+            x = scaled(LAYOUT_LEFT + LAYOUT_WIDTH_INC * fPileIndex);
+            y = scaled(LAYOUT_TOP);
             fCardCoords[fPileIndex] = new Point(x, y);
         }
         
         // Initialize dCardCoords
-        dCardCoords = new Point(LAYOUT_LEFT, 700 - LAYOUT_TOP);
+        dCardCoords = new Point(scaled(LAYOUT_LEFT), scaled(DECK_TOP + heightShift));
 
         selections = new int[board.tabRowSize()][board.tabColSize()];
         initDisplay();
-        setDefaultCloseOperation(EXIT_ON_CLOSE);
         repaint();
-        if (I_AM_DEBUGGING) {
-            //System.out.println(board.tabCardAt(0,0));
-            //System.out.println(board.tabCardAt(1,0));
-        }
     }
 
     /**
@@ -161,84 +267,272 @@ public class CardGameGUI extends JFrame implements ActionListener {
 
     /**
      * Draw the display (cards and messages).
+     * Labels whose card has not changed keep their icon and are not
+     * repainted.
      */
     public void repaint() {
+        if (board == null) {
+            super.repaint();
+            return;
+        }
         for (int r = 0; r < board.tabRowSize(); r++) {
             for (int c = 0; c < board.tabColSize(); c++) {
-                String cardImageFileName =
-                    imageFileName(board.tabCardAt(r,c), selections[r][c]);
-                    URL imageURL = getClass().getResource(cardImageFileName);
-                if (I_AM_DEBUGGING) {
-                    //System.out.println(displayCards[r][c]);
-                    //System.out.println(selections[r][c]);
-                    //System.out.println(cardImageFileName);
-                    //System.out.println(board.tabCardAt(r,c));
-                    //System.out.println(imageURL);
-                }
-                if (imageURL != null) {
-                    ImageIcon icon = new ImageIcon(imageURL);
-                    tDisplayCards[r][c].setIcon(icon);
-                    tDisplayCards[r][c].setVisible(true);
-                    if (I_AM_DEBUGGING) {
-                        //System.out.println(icon);
-                    }
-                } else {
-                    throw new RuntimeException(
-                    "Card image not found: \""
-                    + cardImageFileName + "\"");
-                }
+                tDisplayCards[r][c].setIcon(
+                    cardIcon(board.tabCardAt(r,c), selections[r][c]));
             }
         }
-        if (I_AM_DEBUGGING) {
-            //System.out.println(displayCards[0][0]);
-        }
-        for (int fPileIndex = 0; fPileIndex < 4; fPileIndex++) {
-            String cardImageFileName =
-                imageFileName(board.fCardAt(fPileIndex), 0);
-                URL imageURL = getClass().getResource(cardImageFileName);
-            if (imageURL != null) {
-                ImageIcon icon = new ImageIcon(imageURL);
-                fDisplayCards[fPileIndex].setIcon(icon);
-                fDisplayCards[fPileIndex].setVisible(true);
-            } else {
-                throw new RuntimeException(
-                "Card image not found: \""
-                + cardImageFileName + "\"");
-            }
+        for (int fPileIndex = 0; fPileIndex < board.foundationCount(); fPileIndex++) {
+            fDisplayCards[fPileIndex].setIcon(
+                cardIcon(board.fCardAt(fPileIndex), 0));
+        }
+        dDisplayCards.setIcon(cardIcon(board.dCardAt(), 0));
+
+        int outcome = endgameOutcome();
+        if (replay != null) {
+            statusMsg.setText("Move " + replay.position() + " of " + replay.length() + ".");
+            seekSlider.setValue(replay.position());
+            winMsg.setVisible(board.isEmpty());
+        } else if (outcome > 0) {
+            statusMsg.setText("You can win in " + outcome + " moves.");
+        } else {
+            statusMsg.setText(board.deckSize()
+                + " undealt cards remain.");
         }
-        
-        String cardImageFileName =
-                imageFileName(board.dCardAt(), 0);
-                URL imageURL = getClass().getResource(cardImageFileName);
-        if (imageURL != null) {
-                ImageIcon icon = new ImageIcon(imageURL);
-                dDisplayCards.setIcon(icon);
-                dDisplayCards.setVisible(true);
-            } else {
-                throw new RuntimeException(
-                "Card image not found: \""
-                + cardImageFileName + "\"");
-            }
-        
-        statusMsg.setText(board.deckSize()
-            + " undealt cards remain.");
         statusMsg.setVisible(true);
-        totalsMsg.setText("You've won " + totalWins
-             + " out of " + totalGames + " games.");
+        finishButton.setVisible(replay == null && !winMsg.isVisible()
+                                && board.finishingMoves(finishingMoves));
+        totalsMsg.setText(totalsText());
         totalsMsg.setVisible(true);
-        pack();
-        panel.repaint();
     }
 
     /**
-     * Initialize the display.
+     * Shows a recorded game in place of the one being played, with buttons
+     * to play it, step through it and leave it and a slider to go to any
+     * move.  Until the replay is left, the cards cannot be moved by hand.
+     * This is done on the event dispatch thread, after
+     * <code>setBoard</code>.
+     * @param game the game, on a board with the layout of this one
+     * @throws IllegalArgumentException if the layouts differ
      */
-    private void initDisplay()  {
+    public void replay(GameReplay game) {
+        BoardGeometry layout = game.board().geometry();
+        BoardGeometry shown = (replay == null ? board : liveBoard).geometry();
+        if (layout.columns() != shown.columns() || layout.foundations() != shown.foundations()
+            || layout.visibleRows() != shown.visibleRows()) {
+            throw new IllegalArgumentException("The replay is of a board with another layout");
+        }
+        animator.finish();
+        if (replay == null) {
+            liveBoard = board;
+        }
+        replay = game;
+        board = game.board();
+        if (playButton == null) {
+            initReplayControls();
+        }
+        replayTimer.stop();
+        playButton.setText("Play");
+        seekSlider.getModel().setRangeProperties(game.position(), 0, 0, game.length(), false);
+        showReplayControls(true);
+        lossMsg.setVisible(false);
+        clearSelections();
+        repaint();
+    }
+
+    /**
+     * Leaves the replay and goes back to the game being played.
+     */
+    private void endReplay() {
+        replayTimer.stop();
+        replay = null;
+        board = liveBoard;
+        liveBoard = null;
+        showReplayControls(false);
+        winMsg.setVisible(board.isEmpty());
+        lossMsg.setVisible(!board.isEmpty() && isLost());
+        repaint();
+    }
+
+    /**
+     * Goes to a move of the replay and shows the board there.
+     * @param moveNumber the number of moves made
+     */
+    private void seekReplay(int moveNumber) {
+        replay.seek(moveNumber);
+        if (replay.atEnd()) {
+            replayTimer.stop();
+            playButton.setText("Play");
+        }
+        repaint();
+    }
+
+    /**
+     * Shows the replay buttons and slider in place of the game's buttons,
+     * or the other way round.
+     * @param replaying true to show the replay controls
+     */
+    private void showReplayControls(boolean replaying) {
+        moveButton.setVisible(!replaying);
+        restartButton.setVisible(!replaying);
+        dealButton.setVisible(!replaying);
+        finishButton.setVisible(false);
+        playButton.setVisible(replaying);
+        stepButton.setVisible(replaying);
+        backButton.setVisible(replaying);
+        doneButton.setVisible(replaying);
+        seekSlider.setVisible(replaying);
+        getRootPane().setDefaultButton(replaying ? stepButton : moveButton);
+    }
+
+    /**
+     * Builds the replay buttons and slider, the first time a game is replayed.
+     */
+    private void initReplayControls() {
+        playButton = replayButton("Play", BUTTON_LEFT, BUTTON_TOP);
+        backButton = replayButton("Back", BUTTON_LEFT, BUTTON_TOP + BUTTON_HEIGHT_INC);
+        stepButton = replayButton("Step", BUTTON_LEFT + 110, BUTTON_TOP + BUTTON_HEIGHT_INC);
+        doneButton = replayButton("Done", BUTTON_LEFT, BUTTON_TOP + 2 * BUTTON_HEIGHT_INC);
+
+        seekSlider = new JSlider(0, 0);
+        seekSlider.setBounds(scaled(LABEL_LEFT + widthShift),
+                             scaled(LABEL_TOP + 3 * LABEL_HEIGHT_INC + BUTTON_HEIGHT_INC),
+                             scaled(250), scaled(30));
+        seekSlider.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+                if (replay != null && seekSlider.getValue() != replay.position()) {
+                    animator.finish();
+                    seekReplay(seekSlider.getValue());
+                }
+            }
+        });
+        panel.add(seekSlider);
+
+        replayTimer = new Timer(REPLAY_STEP_MS, this);
+    }
+
+    /**
+     * Builds a button of the replay controls.
+     * @param text the label of the button
+     * @param left where it goes across, at a scale of 1
+     * @param top where it goes down, at a scale of 1
+     * @return the button, added to the panel.
+     */
+    private JButton replayButton(String text, int left, int top) {
+        JButton button = new JButton();
+        button.setText(text);
+        panel.add(button);
+        button.setBounds(scaled(left + widthShift), scaled(top), scaled(100), scaled(30));
+        scaleFont(button);
+        button.addActionListener(this);
+        return button;
+    }
+
+    /**
+     * Unselects every card.
+     */
+    private void clearSelections() {
+        for (int r = 0; r < selections.length; r++) {
+            for (int c = 0; c < selections[r].length; c++) {
+                selections[r][c] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the scaled icon for a card.
+     * @param c the card to get the icon for
+     * @param isSelected flag that indicates if the card is selected
+     * @return the shared icon for the card
+     */
+    private ImageIcon cardIcon(Card c, int isSelected) {
+        return images.icon(imageFileName(c, isSelected));
+    }
+
+    /**
+     * Scales a layout size to this display.
+     * @param size the size at a scale of 1
+     * @return the size on this display
+     */
+    private int scaled(int size) {
+        return images.scaled(size);
+    }
+
+    /**
+     * Scales the font of a component to this display.
+     * @param component the button or label to rescale
+     */
+    private void scaleFont(JComponent component) {
+        Font font = component.getFont();
+        component.setFont(font.deriveFont((float) (font.getSize2D() * images.scale())));
+    }
+
+    /**
+     * Slide cards that have just been moved onto a tableau column.
+     * @param from where the cards were before the move
+     * @param r the row of the lowest moved card
+     * @param c the column the cards were moved to
+     * @param count the number of cards moved
+     */
+    private void slideToTableau(Point from, int r, int c, int count) {
+        int n = 0;
+        while (n < count && r - n >= 0) {
+            movingLabels[n] = tDisplayCards[r - n][c];
+            n++;
+        }
+        animator.slide(from, movingLabels, n);
+    }
+
+    /**
+     * Slide a card that has just been moved onto a foundation pile.
+     * @param from where the card was before the move
+     * @param fPileIndex the foundation pile the card was moved to
+     */
+    private void slideToFoundation(Point from, int fPileIndex) {
+        movingLabels[0] = fDisplayCards[fPileIndex];
+        animator.slide(from, movingLabels, 1);
+    }
+
+    /**
+     * Initialize the empty frame.
+     */
+    private void initFrame() {
         panel = new JPanel() {
             public void paintComponent(Graphics g) {
                 super.paintComponent(g);
             }
         };
+        panel.setLayout(null);
+        sizeFrame();
+
+        loadingMsg = new JLabel("Shuffling the deck...");
+        loadingMsg.setBounds(scaled(LABEL_LEFT + widthShift), scaled(LABEL_TOP + BUTTON_HEIGHT_INC),
+                             scaled(250), scaled(30));
+        scaleFont(loadingMsg);
+        panel.add(loadingMsg);
+
+        getContentPane().add(panel);
+        pack();
+    }
+
+    /**
+     * Size the frame for the layout of the board, or for the default
+     * layout if no board has been set yet.
+     */
+    private void sizeFrame() {
+        int height = scaled(DEFAULT_HEIGHT + (DEFAULT_COLUMNS - 2) * LAYOUT_HEIGHT_INC
+                            + heightShift);
+        int width = scaled(DEFAULT_WIDTH + widthShift);
+
+        this.setSize(new Dimension(width, height));
+        panel.setPreferredSize(
+            new Dimension(width - scaled(20), height - scaled(20)));
+    }
+
+    /**
+     * Initialize the display.
+     */
+    private void initDisplay()  {
+        panel.remove(loadingMsg);
 
         // If board object's class name follows the standard format
         // of ...Board or ...board, use the prefix for the JFrame title
@@ -251,105 +545,109 @@ public class CardGameGUI extends JFrame implements ActionListener {
             setTitle(className.substring(0, titleLength));
         }
 
-        // Calculate number of rows of cards (5 cards per row)
-        // and adjust JFrame height if necessary
-        int numCardRows = board.tabColSize();
-        int height = DEFAULT_HEIGHT;
-        if (numCardRows > 2) {
-            height += (numCardRows - 2) * LAYOUT_HEIGHT_INC;
-        }
-
-        this.setSize(new Dimension(DEFAULT_WIDTH, height));
-        panel.setLayout(null);
-        panel.setPreferredSize(
-            new Dimension(DEFAULT_WIDTH - 20, height - 20));
+        sizeFrame();
         tDisplayCards = new JLabel[board.tabRowSize()][board.tabColSize()];
         for (int r = 0; r < board.tabRowSize(); r++) {
             for (int c = 0; c < board.tabColSize(); c++){
                 tDisplayCards[r][c] = new JLabel();
                 panel.add(tDisplayCards[r][c]);
-                if (I_AM_DEBUGGING) {
-                    //System.out.println(displayCards[r][c]);
-                }
                 tDisplayCards[r][c].setBounds(tCardCoords[r][c].x, tCardCoords[r][c].y,
-                                        CARD_WIDTH, CARD_HEIGHT);
-                if (I_AM_DEBUGGING) {
-                    //System.out.println(displayCards[r][c] + "\n");
-                    //System.out.println(cardCoords[r][c]);
-                }
+                                        scaled(CARD_WIDTH), scaled(CARD_HEIGHT));
                 tDisplayCards[r][c].addMouseListener(new MyMouseListener());
                 selections[r][c] = 0;
             }
         }
-        fDisplayCards = new JLabel[4];
-        for (int fPileIndex = 0; fPileIndex < 4; fPileIndex++) {
+        fDisplayCards = new JLabel[board.foundationCount()];
+        for (int fPileIndex = 0; fPileIndex < board.foundationCount(); fPileIndex++) {
             fDisplayCards[fPileIndex] = new JLabel();
             panel.add(fDisplayCards[fPileIndex]);
             fDisplayCards[fPileIndex].setBounds(fCardCoords[fPileIndex].x, fCardCoords[fPileIndex].y,
-                                CARD_WIDTH, CARD_HEIGHT);
+                                scaled(CARD_WIDTH), scaled(CARD_HEIGHT));
             fDisplayCards[fPileIndex].addMouseListener(new MyMouseListener());
         }
         dDisplayCards = new JLabel();
         panel.add(dDisplayCards);
         dDisplayCards.setBounds(dCardCoords.x, dCardCoords.y,
-                                CARD_WIDTH, CARD_HEIGHT);
+                                scaled(CARD_WIDTH), scaled(CARD_HEIGHT));
         dDisplayCards.addMouseListener(new MyMouseListener());
         
         moveButton = new JButton();
         moveButton.setText("Move");
         panel.add(moveButton);
-        moveButton.setBounds(BUTTON_LEFT, BUTTON_TOP, 100, 30);
+        moveButton.setBounds(scaled(BUTTON_LEFT + widthShift), scaled(BUTTON_TOP),
+                             scaled(100), scaled(30));
+        scaleFont(moveButton);
         moveButton.addActionListener(this);
 
         restartButton = new JButton();
         restartButton.setText("Restart");
         panel.add(restartButton);
-        restartButton.setBounds(BUTTON_LEFT, BUTTON_TOP + BUTTON_HEIGHT_INC,
-                                        100, 30);
+        restartButton.setBounds(scaled(BUTTON_LEFT + widthShift), scaled(BUTTON_TOP + BUTTON_HEIGHT_INC),
+                                        scaled(100), scaled(30));
+        scaleFont(restartButton);
         restartButton.addActionListener(this);
         
         dealButton = new JButton();
         dealButton.setText("Deal");
         panel.add(dealButton);
-        dealButton.setBounds(BUTTON_LEFT, BUTTON_TOP + 2 * BUTTON_HEIGHT_INC,
-                                        100, 30);
+        dealButton.setBounds(scaled(BUTTON_LEFT + widthShift), scaled(BUTTON_TOP + 2 * BUTTON_HEIGHT_INC),
+                                        scaled(100), scaled(30));
+        scaleFont(dealButton);
         dealButton.addActionListener(this);
 
+        finishButton = new JButton();
+        finishButton.setText("Finish");
+        panel.add(finishButton);
+        finishButton.setBounds(scaled(BUTTON_LEFT + 110 + widthShift), scaled(BUTTON_TOP),
+                               scaled(100), scaled(30));
+        scaleFont(finishButton);
+        finishButton.addActionListener(this);
+        finishButton.setVisible(false);
+
         statusMsg = new JLabel(
             board.deckSize() + " undealt cards remain.");
         panel.add(statusMsg);
-        statusMsg.setBounds(LABEL_LEFT, LABEL_TOP + BUTTON_HEIGHT_INC, 250, 30);
+        statusMsg.setBounds(scaled(LABEL_LEFT + widthShift), scaled(LABEL_TOP + BUTTON_HEIGHT_INC),
+                            scaled(250), scaled(30));
+        scaleFont(statusMsg);
 
         winMsg = new JLabel();
-        winMsg.setBounds(LABEL_LEFT, LABEL_TOP + LABEL_HEIGHT_INC + BUTTON_HEIGHT_INC, 200, 30);
-        winMsg.setFont(new Font("SansSerif", Font.BOLD, 25));
+        winMsg.setBounds(scaled(LABEL_LEFT + widthShift), scaled(LABEL_TOP + LABEL_HEIGHT_INC + BUTTON_HEIGHT_INC),
+                         scaled(200), scaled(30));
+        winMsg.setFont(new Font("SansSerif", Font.BOLD, scaled(25)));
         winMsg.setForeground(Color.GREEN);
         winMsg.setText("You win!");
         panel.add(winMsg);
         winMsg.setVisible(false);
 
         lossMsg = new JLabel();
-        lossMsg.setBounds(LABEL_LEFT, LABEL_TOP + LABEL_HEIGHT_INC + BUTTON_HEIGHT_INC, 200, 30);
-        lossMsg.setFont(new Font("SanSerif", Font.BOLD, 25));
+        lossMsg.setBounds(scaled(LABEL_LEFT + widthShift), scaled(LABEL_TOP + LABEL_HEIGHT_INC + BUTTON_HEIGHT_INC),
+                          scaled(200), scaled(30));
+        lossMsg.setFont(new Font("SanSerif", Font.BOLD, scaled(25)));
         lossMsg.setForeground(Color.RED);
         lossMsg.setText("Sorry, you lose.");
         panel.add(lossMsg);
         lossMsg.setVisible(false);
 
-        totalsMsg = new JLabel("You've won " + totalWins
-            + " out of " + totalGames + " games.");
-        totalsMsg.setBounds(LABEL_LEFT, LABEL_TOP + 2 * LABEL_HEIGHT_INC + BUTTON_HEIGHT_INC,
-                                  250, 30);
+        totalsMsg = new JLabel(totalsText());
+        totalsMsg.setBounds(scaled(LABEL_LEFT + widthShift), scaled(LABEL_TOP + 2 * LABEL_HEIGHT_INC + BUTTON_HEIGHT_INC),
+                                  scaled(250), scaled(30));
+        scaleFont(totalsMsg);
         panel.add(totalsMsg);
 
-        if (!board.anotherPlayIsPossible()) {
+        if (isLost()) {
             signalLoss();
         }
 
+        movingLabels = new JLabel[board.tabRowSize()];
+        animator = new CardAnimator(board.tabRowSize(), scaled(CARD_WIDTH),
+                                    scaled(CARD_HEIGHT), scaled(LAYOUT_HEIGHT_INC));
+        setGlassPane(animator);
+
         pack();
-        getContentPane().add(panel);
         getRootPane().setDefaultButton(moveButton);
-        panel.setVisible(true);
+        panel.revalidate();
+        panel.repaint();
     }
 
     /**
@@ -385,10 +683,31 @@ public class CardGameGUI extends JFrame implements ActionListener {
 
     /**
      * Respond to a button click (on either the "Replace" button
-     * or the "Restart" button).
+     * or the "Restart" button), or to a replay control or its timer.
      * @param e the button click action event
      */
     public void actionPerformed(ActionEvent e) {
+        animator.finish();
+        if (replay != null) {
+            if (e.getSource().equals(replayTimer) || e.getSource().equals(stepButton)) {
+                seekReplay(replay.position() + 1);
+            } else if (e.getSource().equals(backButton)) {
+                seekReplay(replay.position() - 1);
+            } else if (e.getSource().equals(playButton)) {
+                if (replayTimer.isRunning()) {
+                    replayTimer.stop();
+                    playButton.setText("Play");
+                } else if (!replay.atEnd()) {
+                    replayTimer.start();
+                    playButton.setText("Pause");
+                }
+            } else if (e.getSource().equals(doneButton)) {
+                endReplay();
+            } else {
+                signalError();
+            }
+            return;
+        }
         if (e.getSource().equals(moveButton)) {
             // Gather all the selected cards.
             List<Point> selection = new ArrayList<Point>();
@@ -415,56 +734,178 @@ public class CardGameGUI extends JFrame implements ActionListener {
                 }
             }
             // Do the replace.
-            if (I_AM_DEBUGGING) {
-                //System.out.println(board);
-                System.out.println(selection);
+            int rMove = (int) selection.get(0).getX();
+            int cMove = (int) selection.get(0).getY();
+            int rTarget = (int) selection.get(1).getX();
+            int cTarget = (int) selection.get(1).getY();
+            int count = 0;
+            while (rMove - count >= 0 && board.tabHasCard(rMove - count, cMove)) {
+                count++;
             }
             board.moveSelectedTabCard(selection);
-            if (I_AM_DEBUGGING) {
-                //System.out.println(board);
-            }
             if (board.isEmpty()) {
                 signalWin();
-            } else if (!board.anotherPlayIsPossible()) {
+            } else if (isLost()) {
                 signalLoss();
             }
             repaint();
+            slideToTableau(tCardCoords[rMove][cMove], rTarget - 1, cTarget, count);
         } else if (e.getSource().equals(restartButton)) {
+            endGame(GameOutcome.STUCK);
             board.newGame();
+            gameEnded = false;
             getRootPane().setDefaultButton(moveButton);
             winMsg.setVisible(false);
             lossMsg.setVisible(false);
-            if (!board.anotherPlayIsPossible()) {
+            if (isLost()) {
                 signalLoss();
                 lossMsg.setVisible(true);
             }
-            for (int r = 0; r < selections.length; r++) {
-                for (int c = 0; c < selections[r].length; c++) {
-                    selections[r][c] = 0;
-                }
-            }
-            for (int fPileIndex = 0; fPileIndex < 4; fPileIndex++) {
-                board.fPileReset(fPileIndex);
-            }
-            board.deckReset();
+            clearSelections();
             repaint();
         } else if (e.getSource().equals(dealButton)) {
             board.deal();
             repaint();
+        } else if (e.getSource().equals(finishButton)) {
+            // All the moves first, then one repaint for the lot.
+            if (!board.finishingMoves(finishingMoves)) {
+                signalError();
+                return;
+            }
+            for (Move move : finishingMoves) {
+                board.apply(move);
+            }
+            clearSelections();
+            signalWin();
+            repaint();
         } else {
             signalError();
             return;
         }
     }
 
+    /**
+     * The "you've won n out of m games" message, counting the player's
+     * games in earlier runs too.  Games given up with the Restart button
+     * are not counted.
+     * @return the message text
+     */
+    private String totalsText() {
+        PlayerStats record = stats.player(player);
+        long wins = record == null ? 0 : record.wins();
+        long games = record == null ? 0 : record.games();
+        return "You've won " + wins + " out of " + games + " games.";
+    }
+
+    /**
+     * Opens the statistics file, in the home directory unless the
+     * <code>solitaire.stats</code> property names another, and saves it
+     * when the program exits.  If it cannot be opened the games of this
+     * run are counted without being saved.  The whole log of games since
+     * the last snapshot is read, so this is best done off the event
+     * dispatch thread.
+     * @return the store of statistics.
+     */
+    public static StatsStore openStats() {
+        String setting = System.getProperty(STATS_PROPERTY);
+        Path file = setting != null ? Paths.get(setting)
+            : Paths.get(System.getProperty("user.home"), ".solitaire-stats");
+        final StatsStore store;
+        try {
+            store = StatsStore.open(file);
+        } catch (IOException e) {
+            return new StatsStore();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    // The games since the last write are lost.
+                }
+            }
+        }, "stats-saver"));
+        return store;
+    }
+
+    /**
+     * Opens the directory of game records the <code>solitaire.records</code>
+     * property names, if it names one, and closes it when the program exits.
+     * @param gameBoard the board the games are played on
+     * @return the writer, or null if there is none or it cannot be opened.
+     */
+    private static GameRecordWriter openRecords(Board gameBoard) {
+        String setting = System.getProperty(RECORDS_PROPERTY);
+        if (setting == null) {
+            return null;
+        }
+        final GameRecordWriter writer;
+        try {
+            writer = new GameRecordWriter(Paths.get(setting), gameBoard.geometry(),
+                                          gameBoard.ruleSet());
+        } catch (IOException e) {
+            return null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // The games since the last write are lost.
+                }
+            }
+        }, "records-closer"));
+        return writer;
+    }
+
+    /**
+     * Opens the endgame table the <code>solitaire.endgames</code> property
+     * names, if it names one.
+     * @param rules the rules of the game played
+     * @return the table, or null if there is none or it cannot be read.
+     */
+    private static EndgameTable openEndgames(RuleSet rules) {
+        String setting = System.getProperty(ENDGAMES_PROPERTY);
+        if (setting == null) {
+            return null;
+        }
+        try {
+            return EndgameTable.open(Paths.get(setting), rules);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks the position up in the endgame table.
+     * @return the number of moves to win at best, <code>EndgameTable.LOST</code>,
+     *         or <code>EndgameTable.UNKNOWN</code> if the table does not
+     *         know the position or there is no table.
+     */
+    private int endgameOutcome() {
+        if (replay != null || endgames == null || !EndgameTable.isEndgame(board)) {
+            return EndgameTable.UNKNOWN;
+        }
+        return endgames.lookup(endgamePosition.hash());
+    }
+
+    /**
+     * Determines if the game can no longer be won: no play is left, the
+     * position is a dead end, or the endgame table knows it is lost.
+     * @return true if the game is lost.
+     */
+    private boolean isLost() {
+        return !board.anotherPlayIsPossible() || board.isDeadEnd()
+            || endgameOutcome() == EndgameTable.LOST;
+    }
+
     /**
      * Display a win.
      */
     private void signalWin() {
         getRootPane().setDefaultButton(restartButton);
         winMsg.setVisible(true);
-        totalWins++;
-        totalGames++;
+        endGame(GameOutcome.WON);
     }
 
     /**
@@ -473,7 +914,20 @@ public class CardGameGUI extends JFrame implements ActionListener {
     private void signalLoss() {
         getRootPane().setDefaultButton(restartButton);
         lossMsg.setVisible(true);
-        totalGames++;
+        endGame(GameOutcome.LOST);
+    }
+
+    /**
+     * Reports the end of the game being played, unless it has already
+     * been reported.  A game known to be lost may still have moves left,
+     * and each of them would otherwise count the loss again.
+     * @param outcome how the game ended
+     */
+    private void endGame(GameOutcome outcome) {
+        if (!gameEnded) {
+            gameEnded = true;
+            board.endGame(outcome);
+        }
     }
 
     /**
@@ -487,16 +941,16 @@ public class CardGameGUI extends JFrame implements ActionListener {
          * @param e the mouse event.
          */
         public void mouseClicked(MouseEvent e) {
+            animator.finish();
+            if (replay != null) {
+                signalError();
+                return;
+            }
             for (int r = 0; r < board.tabRowSize(); r++) {
                 for (int c = 0; c < board.tabColSize(); c++) {
-                    for (int fPileIndex = 0; fPileIndex < 4; fPileIndex++) {
+                    for (int fPileIndex = 0; fPileIndex < board.foundationCount(); fPileIndex++) {
                         if (e.getSource().equals(dDisplayCards) 
                         && board.tabCardAt(r,c) != null) {
-                            if (I_AM_DEBUGGING) {
-                                //System.out.println(board.tabCardAt(r,c));
-                                //System.out.println(selections[r][c]);
-                                //System.out.println(r + " " + c);
-                            }
                             if (!has2(selections) && board.dealMoveIsPossibleAt(r,c)) {
                                 /**
                                  * Following boolean moves card from deal to tableau given:
@@ -505,26 +959,16 @@ public class CardGameGUI extends JFrame implements ActionListener {
                                  * - if a move from deal to tableau pile is possible
                                  */
                                 if (selections[r][c] == 1) {
-                                    //if (I_AM_DEBUGGING) {
-                                        //System.out.println(board.tabCardAt(r,c));
-                                        //System.out.println(selections[r][c]);
-                                    //}
                                     board.moveDeckCardToTableau(r-1,c);
                                     selections[r][c] = 0;
                                     repaint();
+                                    slideToTableau(dCardCoords, r-1, c, 1);
                                     return;
                                 }
                             }
                         } else if (e.getSource().equals(fDisplayCards[fPileIndex])
                         && board.tabCardAt(r,c) != null) {
                             if (!has2(selections)) {
-                                if (I_AM_DEBUGGING) {
-                                    //System.out.println("fPileIndex: " + fPileIndex);
-                                    //System.out.println(selections[r][c] != 0);
-                                    //System.out.println(has1(selections));
-                                    //System.out.println(!has2(selections));
-                                    //System.out.println(board.canMoveToFoundation(r,c,fPileIndex));
-                                }
                                 /**
                                  * Following boolean moves card from tableau to
                                  * foundation given:
@@ -534,11 +978,10 @@ public class CardGameGUI extends JFrame implements ActionListener {
                                  */
                                 if (selections[r][c] == 1
                                 && board.canMoveToFoundation(r,c,fPileIndex)) {
-                                    if (I_AM_DEBUGGING)
-                                        System.out.println("fPileIndex: " + fPileIndex);
                                     board.moveCardToFoundation(r, c, fPileIndex);
                                     selections[r][c] = 0;
                                     repaint();
+                                    slideToFoundation(tCardCoords[r][c], fPileIndex);
                                     return;
                                 }
                                 /**
@@ -548,55 +991,36 @@ public class CardGameGUI extends JFrame implements ActionListener {
                                  * - if selections only has one selected card
                                  * - if a move from tableau to foundation is possible
                                  */
-                                else if (board.dCardAt() != null
-                                && ((board.dCardAt().pointValue() == 1
-                                && board.fCardAt(fPileIndex) == null)
-                                || (board.fCardAt(fPileIndex).pointValue()
-                                - board.dCardAt().pointValue() == 1))) {
+                                else if (board.canMoveDeckCardToFoundation(fPileIndex)) {
                                     board.moveDeckCardToFoundation(fPileIndex);
                                     repaint();
+                                    slideToFoundation(dCardCoords, fPileIndex);
                                     return;
                                 }
-                            } else if (board.dCardAt() != null) {
+                            } else if (board.canMoveDeckCardToFoundation(fPileIndex)) {
                                 /**
                                  * Following boolean moves card from deck to foundation
-                                 * given either:
-                                 * -deck card is an Ace and foundation pile is blank
-                                 * OR
-                                 * -foundation card is one less than deck card and deck
-                                 * card suit matches the foundation pile suit
+                                 * given that the rules let the deck card go on the
+                                 * foundation pile
                                  */
-                                if(board.dCardAt().pointValue() == 1
-                                && board.fCardAt(fPileIndex) == null) {
-                                    board.moveDeckCardToFoundation(fPileIndex);
-                                    repaint();
-                                    return;
-                                } else if (board.fCardAt(fPileIndex).pointValue()
-                                - board.dCardAt().pointValue() == 1
-                                && board.fCardAt(fPileIndex).suit()
-                                == board.dCardAt().suit()
-                                && board.fCardAt(fPileIndex) != null) {
-                                    board.moveDeckCardToFoundation(fPileIndex);
-                                    repaint();
-                                    return;
-                                }
+                                board.moveDeckCardToFoundation(fPileIndex);
+                                repaint();
+                                slideToFoundation(dCardCoords, fPileIndex);
+                                return;
                             }
                         } else if (e.getSource().equals(tDisplayCards[r][c])) {
                             boolean selectionHas2 = has2(selections);
                             boolean selectionHas1 = has1(selections);
-                            if(r == 11
+                            if(r == board.tabRowSize() - 1
                             && board.tabCardAt(r,c) == null
-                            && board.dCardAt().pointValue() == 13) {
-                                board.tabSetCard(board.dCardAt(),r,c);
-                                board.rmvDeckTopCard();
+                            && board.canMoveDeckCardToTableau(c)) {
+                                board.moveDeckCardToTableau(r,c);
                                 repaint();
+                                slideToTableau(dCardCoords, r, c, 1);
                                 return;
                             } else if(selections[r][c] == 0
                             && board.tabCardAt(r,c) != null) {
                                 if (!selectionHas1) {
-                                    if (I_AM_DEBUGGING) {
-                                        System.out.println(selections[r][c]);
-                                    }
                                     selections[r][c] = 1;
                                     repaint();
                                     return;
@@ -623,9 +1047,6 @@ public class CardGameGUI extends JFrame implements ActionListener {
                                 repaint();
                                 return;
                             }
-                            if (I_AM_DEBUGGING) {
-                                System.out.println(board.tabCardAt(r,c));
-                            }
                         }
                     }
                 }
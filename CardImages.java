@@ -0,0 +1,191 @@
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * This class holds the card images for one display scale.
+ * Each image is decoded and rescaled (with bicubic interpolation) the
+ * first time it is asked for, and the scaled copy is reused afterwards,
+ * so painting never has to scale an image.
+ */
+public class CardImages {
+
+    /** The system property that overrides the display scale. */
+    public static final String SCALE_PROPERTY = "solitaire.scale";
+
+    /** Screen resolution at which the card images are drawn 1:1. */
+    private static final int BASE_DPI = 96;
+
+    /** One set of images per scale that has been used. */
+    private static final Map<Double, CardImages> BY_SCALE =
+        new ConcurrentHashMap<Double, CardImages>();
+
+    /** The factor every image and layout size is multiplied by. */
+    private double scale;
+
+    /** The scaled images made so far, by image file name. */
+    private Map<String, ImageIcon> icons;
+
+    /**
+     * Creates a new <code>CardImages</code> instance.
+     * @param scale the factor to scale the images by
+     */
+    private CardImages(double scale) {
+        this.scale = scale;
+        icons = new ConcurrentHashMap<String, ImageIcon>();
+    }
+
+    /**
+     * Accesses the card images for a scale, creating the cache the first
+     * time the scale is used.
+     * @param scale the factor to scale the images by
+     * @return the card images for the scale.
+     */
+    public static CardImages forScale(double scale) {
+        CardImages images = BY_SCALE.get(scale);
+        if (images == null) {
+            images = new CardImages(scale);
+            CardImages other = BY_SCALE.putIfAbsent(scale, images);
+            if (other != null) {
+                images = other;
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Works out the scale to draw the game at.  The <code>solitaire.scale</code>
+     * property wins if it is set.  If the screen's default transform already
+     * scales, the toolkit does the work and the game is drawn at 1:1;
+     * otherwise the scale follows the screen resolution, in steps of 1/4.
+     * @return the display scale, never less than 1.
+     */
+    public static double defaultScale() {
+        String setting = System.getProperty(SCALE_PROPERTY);
+        if (setting != null) {
+            try {
+                double scale = Double.parseDouble(setting);
+                if (scale > 0) {
+                    return scale;
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to the screen's scale.
+            }
+        }
+        if (GraphicsEnvironment.isHeadless()) {
+            return 1.0;
+        }
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice().getDefaultConfiguration();
+        if (gc.getDefaultTransform().getScaleX() > 1.0) {
+            return 1.0;
+        }
+        double scale = Toolkit.getDefaultToolkit().getScreenResolution() / (double) BASE_DPI;
+        return Math.max(1.0, Math.round(scale * 4) / 4.0);
+    }
+
+    /**
+     * Accesses the scale of these images.
+     * @return the scale of these images.
+     */
+    public double scale() {
+        return scale;
+    }
+
+    /**
+     * Scales a layout size.
+     * @param size the size at a scale of 1
+     * @return the size at this scale.
+     */
+    public int scaled(int size) {
+        return (int) Math.round(size * scale);
+    }
+
+    /**
+     * Returns the scaled icon for an image file.
+     * @param fileName the name of the image, such as "cards/aceclubs.GIF"
+     * @return the shared, scaled icon.
+     */
+    public ImageIcon icon(String fileName) {
+        ImageIcon icon = icons.get(fileName);
+        if (icon == null) {
+            icon = new ImageIcon(load(fileName));
+            ImageIcon other = icons.putIfAbsent(fileName, icon);
+            if (other != null) {
+                icon = other;
+            }
+        }
+        return icon;
+    }
+
+    /**
+     * Decodes and scales, in parallel, every image a deck of the given
+     * ranks and suits can show, so the first paint finds them all ready.
+     * Images that are missing are skipped here; asking for one of them with
+     * <code>icon</code> still fails.
+     * @param ranks the names of the card ranks
+     * @param suits the names of the card suits
+     */
+    public void preload(String[] ranks, String[] suits) {
+        List<String> fileNames = new ArrayList<String>();
+        fileNames.add("cards/back1.GIF");
+        for (String rank : ranks) {
+            for (String suit : suits) {
+                fileNames.add("cards/" + rank + suit + ".GIF");
+                fileNames.add("cards/" + rank + suit + "S.GIF");
+            }
+        }
+        fileNames.parallelStream().forEach(fileName -> {
+            if (CardImages.class.getResource(fileName) != null) {
+                icon(fileName);
+            }
+        });
+    }
+
+    /**
+     * Decodes an image and scales it.
+     * @param fileName the name of the image
+     * @return the scaled image.
+     */
+    private BufferedImage load(String fileName) {
+        URL imageURL = CardImages.class.getResource(fileName);
+        if (imageURL == null) {
+            throw new RuntimeException(
+                "Card image not found: \"" + fileName + "\"");
+        }
+        BufferedImage original;
+        try {
+            original = ImageIO.read(imageURL);
+        } catch (IOException e) {
+            throw new RuntimeException(
+                "Card image could not be read: \"" + fileName + "\"", e);
+        }
+        if (scale == 1.0) {
+            return original;
+        }
+        int width = scaled(original.getWidth());
+        int height = scaled(original.getHeight());
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                           RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                           RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                           RenderingHints.VALUE_ANTIALIAS_ON);
+        g.drawImage(original, 0, 0, width, height, null);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/**
+ * CardStack.java
+ *
+ * <code>CardStack</code> is a compact, growable stack of cards, used for
+ * tableau columns and foundation piles.  Index 0 is the bottom card.
+ * It only takes as much room as the cards it holds, growing when needed.
+ */
+public class CardStack {
+
+    /** The room a new stack starts with. */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The cards, bottom first.  Entries at size and above are null.
+     */
+    private Card[] cards;
+
+    /**
+     * The number of cards in the stack.
+     */
+    private int size;
+
+    /**
+     * Creates a new, empty <code>CardStack</code> instance.
+     */
+    public CardStack() {
+        cards = new Card[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Creates a copy of a <code>CardStack</code>, for a board that is
+     * about to write to a pile it shares with a fork.
+     * @param original the stack to copy
+     */
+    CardStack(CardStack original) {
+        cards = Arrays.copyOf(original.cards, Math.max(INITIAL_CAPACITY, original.size));
+        size = original.size;
+    }
+
+    /**
+     * Accesses the number of cards in this stack.
+     * @return the number of cards in this stack.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determines if this stack is empty.
+     * @return true if this stack has no cards, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Accesses a card in this stack.
+     * @param k the index of the card, 0 being the bottom card
+     * @return the card at index k, or null if there is none.
+     */
+    public Card get(int k) {
+        if (k < 0 || k >= size) {
+            return null;
+        }
+        return cards[k];
+    }
+
+    /**
+     * Accesses the top card of this stack.
+     * @return the top card, or null if this stack is empty.
+     */
+    public Card peek() {
+        return size == 0 ? null : cards[size - 1];
+    }
+
+    /**
+     * Replaces a card in this stack.
+     * @param k the index of the card, 0 being the bottom card
+     * @param card the new card
+     */
+    public void set(int k, Card card) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("No card at " + k + " of " + size);
+        }
+        cards[k] = card;
+    }
+
+    /**
+     * Puts a card on top of this stack.
+     * @param card the card to add
+     */
+    public void push(Card card) {
+        if (size == cards.length) {
+            Card[] bigger = new Card[cards.length * 2];
+            System.arraycopy(cards, 0, bigger, 0, size);
+            cards = bigger;
+        }
+        cards[size] = card;
+        size++;
+    }
+
+    /**
+     * Takes the top card off this stack.
+     * @return the card taken, or null if this stack is empty.
+     */
+    public Card pop() {
+        if (size == 0) {
+            return null;
+        }
+        size--;
+        Card card = cards[size];
+        cards[size] = null;
+        return card;
+    }
+
+    /**
+     * Takes a card out of the middle of this stack; the cards above it
+     * move down one place.
+     * @param k the index of the card, 0 being the bottom card
+     * @return the card taken out.
+     */
+    public Card remove(int k) {
+        Card card = get(k);
+        if (card != null) {
+            System.arraycopy(cards, k + 1, cards, k, size - k - 1);
+            size--;
+            cards[size] = null;
+        }
+        return card;
+    }
+
+    /**
+     * Moves the cards from an index to the top of this stack onto the top
+     * of another stack, keeping their order.
+     * @param k the index of the lowest card to move
+     * @param other the stack to move the cards to
+     * @return the number of cards moved.
+     */
+    public int moveTo(int k, CardStack other) {
+        int count = size - k;
+        for (int n = k; n < size; n++) {
+            other.push(cards[n]);
+        }
+        truncate(k);
+        return count;
+    }
+
+    /**
+     * Removes every card from an index to the top of this stack.
+     * @param newSize the number of cards to keep
+     */
+    public void truncate(int newSize) {
+        for (int k = newSize; k < size; k++) {
+            cards[k] = null;
+        }
+        if (newSize < size) {
+            size = newSize;
+        }
+    }
+
+    /**
+     * Removes every card from this stack, keeping its room.
+     */
+    public void clear() {
+        truncate(0);
+    }
+
+    /**
+     * Generates and returns a string representation of this stack.
+     * @return the cards, bottom first.
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("[");
+        for (int k = 0; k < size; k++) {
+            if (k > 0) {
+                s.append(", ");
+            }
+            s.append(cards[k]);
+        }
+        return s.append("]").toString();
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * DailyChallenge.java
+ *
+ * <code>DailyChallenge</code> is the deal of one day, read from a file
+ * written by <code>DailyChallengeBuilder</code>.  Every deal in the file
+ * has been won by the <code>Solver</code>, so it is certainly winnable.
+ * <p>
+ * The file has a 32-byte header naming the rules and the first day,
+ * followed by one 32-byte record per day, so the deal of a day is read
+ * with a single positioned read.  A record is
+ * <pre>
+ * byte  0      1 if the day has a deal, 0 if it has none yet
+ * byte  1      the difficulty (Difficulty.ordinal)
+ * bytes 2-3    the length of the solver's winning line
+ * bytes 4-7    the number of deals tried before this one
+ * bytes 8-15   the seed of the deal
+ * bytes 16-23  the number of positions the solver expanded
+ * bytes 24-31  a check on bytes 0-23, so a record cut short is ignored
+ * </pre>
+ */
+public class DailyChallenge {
+
+    /** How hard a deal was for the solver. */
+    public enum Difficulty {
+        /** Won with fewer than 1000 positions expanded. */
+        EASY,
+        /** Won with fewer than 50000 positions expanded. */
+        MEDIUM,
+        /** Won, but only after a long search. */
+        HARD
+    }
+
+    /** The size of the header and of every record. */
+    static final int RECORD_SIZE = 32;
+
+    /** The first eight bytes of the file. */
+    static final long MAGIC = 0x534f4c4441494c59L; // "SOLDAILY"
+
+    /** The version of the file format. */
+    static final int VERSION = 1;
+
+    /** The day. */
+    private LocalDate day;
+
+    /** The seed of the deal. */
+    private long seed;
+
+    /** How hard the deal was for the solver. */
+    private Difficulty difficulty;
+
+    /** The length of the solver's winning line. */
+    private int solutionMoves;
+
+    /** The number of positions the solver expanded. */
+    private long nodes;
+
+    /**
+     * Creates a new <code>DailyChallenge</code> instance.
+     * @param challengeDay the day
+     * @param dealSeed the seed of the deal
+     * @param rating how hard the deal was for the solver
+     * @param moves the length of the solver's winning line
+     * @param nodesExpanded the number of positions the solver expanded
+     */
+    public DailyChallenge(LocalDate challengeDay, long dealSeed, Difficulty rating,
+                          int moves, long nodesExpanded) {
+        day = challengeDay;
+        seed = dealSeed;
+        difficulty = rating;
+        solutionMoves = moves;
+        nodes = nodesExpanded;
+    }
+
+    /**
+     * Reads the deal of a day.
+     * @param file the file written by <code>DailyChallengeBuilder</code>
+     * @param day the day
+     * @param rules the rules the deal will be played by
+     * @return the deal, or null if the file has none for the day.
+     * @throws IOException if the file cannot be read, or was made for
+     *         other draw rules
+     */
+    public static DailyChallenge load(Path file, LocalDate day, RuleSet rules) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long firstDay = readHeader(channel, rules);
+            return read(channel, firstDay, day);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Rates a deal by how many positions the solver expanded to win it.
+     * @param nodesExpanded the number of positions expanded
+     * @return the difficulty.
+     */
+    public static Difficulty rate(long nodesExpanded) {
+        if (nodesExpanded < 1000) {
+            return Difficulty.EASY;
+        } else if (nodesExpanded < 50000) {
+            return Difficulty.MEDIUM;
+        }
+        return Difficulty.HARD;
+    }
+
+    /**
+     * Accesses the day.
+     * @return the day.
+     */
+    public LocalDate day() {
+        return day;
+    }
+
+    /**
+     * Accesses the seed of the deal; <code>Board.newGame(seed)</code>
+     * deals it.
+     * @return the seed.
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * Accesses how hard the deal was for the solver.
+     * @return the difficulty.
+     */
+    public Difficulty difficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Accesses the length of the solver's winning line.
+     * @return the number of moves.
+     */
+    public int solutionMoves() {
+        return solutionMoves;
+    }
+
+    /**
+     * Accesses the number of positions the solver expanded.
+     * @return the number of nodes.
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns a one-line description of the deal.
+     * @return the description.
+     */
+    @Override
+    public String toString() {
+        return day + " seed=" + seed + " " + difficulty + " moves=" + solutionMoves
+            + " nodes=" + nodes;
+    }
+
+    /**
+     * Writes the header of a new file.
+     */
+    static void writeHeader(FileChannel channel, RuleSet rules, long firstDay) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+        header.putLong(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(rules.drawCount());
+        header.putInt(rules.recycleLimit());
+        header.putLong(firstDay);
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    /**
+     * Reads the header of a file and checks it was made for the rules.
+     * @return the first day of the file, as an epoch day.
+     */
+    static long readHeader(FileChannel channel, RuleSet rules) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < RECORD_SIZE || header.getLong() != MAGIC
+            || header.getInt() != VERSION) {
+            throw new IOException("Not a daily challenge file");
+        }
+        int draw = header.getInt();
+        int recycles = header.getInt();
+        if (draw != rules.drawCount() || recycles != rules.recycleLimit()) {
+            throw new IOException("Daily challenges were made for draw=" + draw
+                                  + " recycles=" + recycles);
+        }
+        return header.getLong();
+    }
+
+    /**
+     * Reads the record of a day.
+     * @return the deal, or null if the day has none.
+     */
+    static DailyChallenge read(FileChannel channel, long firstDay, LocalDate day) throws IOException {
+        long index = day.toEpochDay() - firstDay;
+        if (index < 0) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        channel.read(record, RECORD_SIZE * (index + 1));
+        record.flip();
+        if (record.remaining() < RECORD_SIZE || record.get(0) != 1
+            || record.getLong(24) != check(record)) {
+            return null;
+        }
+        return new DailyChallenge(day, record.getLong(8), Difficulty.values()[record.get(1)],
+                                  record.getShort(2) & 0xffff, record.getLong(16));
+    }
+
+    /**
+     * Writes the record of a day.
+     */
+    static void write(FileChannel channel, long firstDay, DailyChallenge challenge,
+                      int dealsTried) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(0, (byte) 1);
+        record.put(1, (byte) challenge.difficulty.ordinal());
+        record.putShort(2, (short) challenge.solutionMoves);
+        record.putInt(4, dealsTried);
+        record.putLong(8, challenge.seed);
+        record.putLong(16, challenge.nodes);
+        record.putLong(24, check(record));
+        channel.write(record, RECORD_SIZE * (challenge.day.toEpochDay() - firstDay + 1));
+    }
+
+    /**
+     * Works out the check of bytes 0-23 of a record.
+     */
+    private static long check(ByteBuffer record) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int k = 0; k < 24; k += 8) {
+            h = (h ^ record.getLong(k)) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+}
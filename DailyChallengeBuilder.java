@@ -0,0 +1,181 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DailyChallengeBuilder.java
+ *
+ * <code>DailyChallengeBuilder</code> is the offline job that fills a
+ * daily challenge file (see <code>DailyChallenge</code>).  For each day it
+ * deals candidates from seeds derived from the date and gives each to the
+ * <code>Solver</code> with a budget of nodes and time; the first candidate
+ * the solver wins becomes the day's deal, rated by how long the search
+ * took.
+ * <p>
+ * The days are shared out among one worker per core, each with a board
+ * and a solver of its own.  A day's record is written as soon as it is
+ * found, and days that already have one are skipped, so the job can be
+ * stopped at any time and run again to carry on, or run for a longer
+ * range to add days.
+ */
+public class DailyChallengeBuilder {
+
+    /** The number of candidates tried for a day before the day is left empty. */
+    private static final int MAX_CANDIDATES = 1000;
+
+    /**
+     * Fills in the days of a range that have no deal yet.
+     * @param args "--file=NAME" (default daily-challenges.dat), "--from=YYYY-MM-DD"
+     *             (default today), "--days=N" (default 30), "--threads=N"
+     *             (default one per core), "--budget-ms=N" and "--nodes=N" to
+     *             limit each search, "--draw=N" and "--recycles=N" for the
+     *             rules, or "--list" to print the deals of the range instead
+     * @throws IOException if the file cannot be read or written
+     * @throws InterruptedException if interrupted while the deals are found
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path file = Paths.get("daily-challenges.dat");
+        LocalDate from = LocalDate.now();
+        int days = 30;
+        int threads = Runtime.getRuntime().availableProcessors();
+        ToolOptions options = new ToolOptions(2000000, 2000);
+        boolean list = false;
+        for (String arg : args) {
+            if (options.read(arg)) {
+                continue;
+            }
+            if (arg.startsWith("--file=")) {
+                file = Paths.get(arg.substring("--file=".length()));
+            } else if (arg.startsWith("--from=")) {
+                from = LocalDate.parse(arg.substring("--from=".length()));
+            } else if (arg.startsWith("--days=")) {
+                days = Integer.parseInt(arg.substring("--days=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--list")) {
+                list = true;
+            }
+        }
+        RuleSet rules = options.rules();
+        if (list) {
+            for (int d = 0; d < days; d++) {
+                DailyChallenge challenge = DailyChallenge.load(file, from.plusDays(d), rules);
+                System.out.println(challenge != null ? challenge : from.plusDays(d) + " none");
+            }
+            return;
+        }
+        build(file, rules, from, days, threads, options.maxNodes(), options.maxNanos());
+    }
+
+    /**
+     * Fills in the days of a range that have no deal yet, creating the
+     * file if there is none.
+     * @param file the daily challenge file
+     * @param rules the rules the deals are played by
+     * @param from the first day of the range
+     * @param days the number of days in the range
+     * @param threads the number of deals searched at once
+     * @param maxNodes the largest number of positions a search may expand
+     * @param maxNanos the longest a search may take
+     * @return the number of days filled in.
+     * @throws IOException if the file cannot be read or written, or was
+     *         made for other rules or a later first day
+     * @throws InterruptedException if interrupted while the deals are found
+     */
+    public static int build(Path file, final RuleSet rules, LocalDate from, int days, int threads,
+                            final long maxNodes, final long maxNanos)
+        throws IOException, InterruptedException {
+        final FileChannel channel;
+        final long firstDay;
+        if (Files.exists(file)) {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            firstDay = DailyChallenge.readHeader(channel, rules);
+            if (from.toEpochDay() < firstDay) {
+                channel.close();
+                throw new IOException(file + " starts on " + LocalDate.ofEpochDay(firstDay));
+            }
+        } else {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+            firstDay = from.toEpochDay();
+            DailyChallenge.writeHeader(channel, rules, firstDay);
+        }
+
+        final List<LocalDate> missing = new ArrayList<LocalDate>();
+        for (int d = 0; d < days; d++) {
+            if (DailyChallenge.read(channel, firstDay, from.plusDays(d)) == null) {
+                missing.add(from.plusDays(d));
+            }
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger filled = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+        for (int t = 0; t < Math.max(1, threads); t++) {
+            workers.execute(new Runnable() {
+                public void run() {
+                    SolitaireBoard board = new SolitaireBoard(BoardGeometry.STANDARD, rules, 1);
+                    Solver solver = new Solver(board);
+                    int k;
+                    while ((k = next.getAndIncrement()) < missing.size()) {
+                        LocalDate day = missing.get(k);
+                        try {
+                            if (findDeal(board, solver, day, channel, firstDay, maxNodes, maxNanos)) {
+                                filled.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            System.err.println(day + ": " + e.getMessage());
+                        }
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        channel.force(true);
+        channel.close();
+        return filled.get();
+    }
+
+    /**
+     * Tries the candidates of a day until the solver wins one, and writes
+     * it down.
+     * @return true if a deal was found.
+     */
+    private static boolean findDeal(SolitaireBoard board, Solver solver, LocalDate day,
+                                    FileChannel channel, long firstDay,
+                                    long maxNodes, long maxNanos) throws IOException {
+        for (int k = 0; k < MAX_CANDIDATES; k++) {
+            long seed = candidateSeed(day, k);
+            board.newGame(seed);
+            if (solver.solve(maxNodes, maxNanos) == Solver.Result.SOLVED) {
+                DailyChallenge challenge = new DailyChallenge(day, seed,
+                    DailyChallenge.rate(solver.nodes()), solver.solution().size(), solver.nodes());
+                DailyChallenge.write(channel, firstDay, challenge, k);
+                System.out.println(challenge);
+                return true;
+            }
+        }
+        System.out.println(day + " none found");
+        return false;
+    }
+
+    /**
+     * Derives the seed of a day's candidate deal.
+     * @param day the day
+     * @param k the number of the candidate
+     * @return the seed.
+     */
+    public static long candidateSeed(LocalDate day, int k) {
+        return Deck.mix(day.toEpochDay() * 0x9E3779B97F4A7C15L + k);
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.Arrays;
+
+/**
+ * DeadEndDetector.java
+ *
+ * <code>DeadEndDetector</code> spots positions that can no longer be won
+ * although moves may be left.  It looks at the face-down cards too, so it
+ * knows more than the player; it is meant for simulations, solvers and
+ * the end-of-game check.
+ * <p>
+ * A card lying above a card of its suit that must reach the foundations
+ * first (a 7 of hearts on the 3 of hearts) can only leave its column for
+ * another column: on a card it stacks on, or, carried by a run that
+ * starts under it, wherever that run can go.  Such a card is
+ * <em>doomed</em> if none of those places can ever take it: the card is
+ * already on a foundation, lies under it in its own column, or lies under
+ * another doomed card, and an empty column will not take it.  Doomed cards
+ * are found as a greatest fixed point, so two cards that each wait for the
+ * other to move, in the same column or in two, are both doomed.  A doomed
+ * card never moves, so the card it covers never reaches the foundations.
+ * <p>
+ * The check is sound but not complete: when it says a position is lost,
+ * it is.  It only applies to one deck with foundations built in suit.
+ */
+public class DeadEndDetector {
+
+    /** The board checked. */
+    private Board board;
+
+    /** For each card by id, the ids of the cards it stacks on. */
+    private int[][] parents;
+
+    /**
+     * For each card by id, a bit set of the ids of the cards that must
+     * reach the foundations before it, in words of 64 bits.
+     */
+    private long[][] mustGoFirst;
+
+    /** Scratch bit set of the ids of the cards below a place in a column. */
+    private long[] below;
+
+    /** The column of each card by id, or -1 if it is not on the tableau. */
+    private int[] columnOf;
+
+    /** The place of each card in its column, from the bottom. */
+    private int[] placeOf;
+
+    /** Whether each card is on a foundation. */
+    private boolean[] founded;
+
+    /** Whether each card is doomed, as far as is known so far. */
+    private boolean[] doomed;
+
+    /** The ids of the cards that lie above a card that must go first. */
+    private int[] blockers;
+
+    /**
+     * Creates a new <code>DeadEndDetector</code> instance.
+     * @param gameBoard the board to check
+     */
+    public DeadEndDetector(Board gameBoard) {
+        board = gameBoard;
+        int cards = gameBoard.cardCount();
+        columnOf = new int[cards];
+        placeOf = new int[cards];
+        founded = new boolean[cards];
+        doomed = new boolean[cards];
+        blockers = new int[cards];
+        int words = (cards + 63) >>> 6;
+        below = new long[words];
+        parents = new int[cards][];
+        mustGoFirst = new long[cards][words];
+        Deck deck = gameBoard.deck();
+        RuleSet rules = gameBoard.ruleSet();
+        int[] found = new int[cards];
+        for (int id = 0; id < cards; id++) {
+            Card card = deck.card(id);
+            int n = 0;
+            for (int other = 0; other < cards; other++) {
+                if (gameBoard.canStack(card, deck.card(other))) {
+                    found[n++] = other;
+                }
+                if (rules.mustFoundBefore(deck.card(other), card)) {
+                    mustGoFirst[id][other >>> 6] |= 1L << other;
+                }
+            }
+            parents[id] = Arrays.copyOf(found, n);
+        }
+    }
+
+    /**
+     * Creates a new <code>DeadEndDetector</code> instance for a fork of
+     * a board.  The tables worked out from the rules are shared with the
+     * detector of the board forked, which took O(cards<sup>2</sup>) to
+     * build; only the scratch room is new.
+     * @param original the detector of the board forked
+     * @param gameBoard the fork to check
+     */
+    DeadEndDetector(DeadEndDetector original, Board gameBoard) {
+        board = gameBoard;
+        parents = original.parents;
+        mustGoFirst = original.mustGoFirst;
+        int cards = parents.length;
+        columnOf = new int[cards];
+        placeOf = new int[cards];
+        founded = new boolean[cards];
+        doomed = new boolean[cards];
+        blockers = new int[cards];
+        below = new long[original.below.length];
+    }
+
+    /**
+     * Determines if this detector checks a board.
+     * @param gameBoard the board
+     * @return true if the board is the one checked; false otherwise.
+     */
+    boolean checks(Board gameBoard) {
+        return board == gameBoard;
+    }
+
+    /**
+     * Determines if the position on the board can no longer be won.
+     * @return true if the game is certainly lost; false if it may still
+     *         be won or the rules are ones the check does not cover.
+     */
+    public boolean isDeadEnd() {
+        if (board.deckCount() != 1) {
+            return false;
+        }
+        int blockerCount = locateCards();
+        if (blockerCount == 0) {
+            return false;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = 0; k < blockerCount; k++) {
+                int id = blockers[k];
+                if (doomed[id] && canEscape(id)) {
+                    doomed[id] = false;
+                    changed = true;
+                }
+            }
+        }
+        for (int k = 0; k < blockerCount; k++) {
+            if (doomed[blockers[k]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records where every card is and lists the cards lying above a card
+     * that must reach the foundations before them, marking them doomed.
+     * @return the number of such cards.
+     */
+    private int locateCards() {
+        for (int id = 0; id < columnOf.length; id++) {
+            columnOf[id] = -1;
+            founded[id] = false;
+            doomed[id] = false;
+        }
+        for (int f = 0; f < board.foundationCount(); f++) {
+            CardStack pile = board.foundationPile(f);
+            for (int k = 0; k < pile.size(); k++) {
+                founded[pile.get(k).id()] = true;
+            }
+        }
+        int count = 0;
+        for (int c = 0; c < board.tabColSize(); c++) {
+            CardStack column = board.column(c);
+            Arrays.fill(below, 0);
+            for (int k = 0; k < column.size(); k++) {
+                int id = column.get(k).id();
+                columnOf[id] = c;
+                placeOf[id] = k;
+                long[] first = mustGoFirst[id];
+                for (int w = 0; w < below.length; w++) {
+                    if ((below[w] & first[w]) != 0) {
+                        doomed[id] = true;
+                        blockers[count++] = id;
+                        break;
+                    }
+                }
+                below[id >>> 6] |= 1L << id;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Determines if a blocking card might still leave its column, given
+     * the cards now thought doomed.
+     */
+    private boolean canEscape(int id) {
+        int c = columnOf[id];
+        CardStack column = board.column(c);
+        int faceDown = board.faceDownCount(c);
+        // The card leaves on top of a run starting at itself or at one of
+        // the face-up cards it is stacked on.
+        int base = placeOf[id];
+        while (true) {
+            if (canLeave(column.get(base), c, base)) {
+                return true;
+            }
+            if (base - 1 < faceDown || !board.canStack(column.get(base), column.get(base - 1))) {
+                return false;
+            }
+            base--;
+        }
+    }
+
+    /**
+     * Determines if the run starting at a card might be moved somewhere.
+     */
+    private boolean canLeave(Card base, int c, int place) {
+        if (board.canFillEmpty(base)) {
+            return true;
+        }
+        for (int id : parents[base.id()]) {
+            if (founded[id]) {
+                continue;
+            }
+            int tc = columnOf[id];
+            if (tc == c && placeOf[id] < place) {
+                continue;
+            }
+            if (tc < 0 || !coveredByDoomed(tc, placeOf[id])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a doomed card lies above a place in a column.
+     */
+    private boolean coveredByDoomed(int c, int place) {
+        CardStack column = board.column(c);
+        for (int k = place + 1; k < column.size(); k++) {
+            if (doomed[column.get(k).id()]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DealFeatureExtractor.java
+ *
+ * <code>DealFeatureExtractor</code> is the batch job that works out the
+ * <code>DealFeatures</code> of many deals and writes them to a columnar
+ * <code>DealFeatureTable</code>.  The deals are a range of seeds or a
+ * corpus file of seeds, one per line.  They are cut into chunks that the
+ * workers, one board each, take in turn, and every worker writes straight
+ * into the table's columns.  Deals can also be labelled by the solver,
+ * and a <code>DifficultyClassifier</code> trained on the labels.
+ */
+public class DealFeatureExtractor {
+
+    /** The number of deals a worker takes at a time. */
+    private static final int CHUNK_SIZE = 256;
+
+    /**
+     * Works out the features of a set of deals.
+     * @param args "--from=SEED" and "--count=N" for a range of seeds, or
+     *             "--corpus=FILE" for the seeds in a file; "--out=FILE"
+     *             (default deal-features.dat); "--threads=N"; "--label" to
+     *             add the solver's difficulty, with "--nodes=N" and
+     *             "--budget-ms=N" to limit each search; "--train=FILE" to
+     *             train a classifier on the labels and save it; "--draw=N"
+     *             and "--recycles=N" for the rules
+     * @throws IOException if a file cannot be read or written
+     * @throws InterruptedException if interrupted while the deals are worked on
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long from = 1;
+        int count = 10000;
+        Path corpus = null;
+        Path out = Paths.get("deal-features.dat");
+        Path train = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean label = false;
+        ToolOptions options = new ToolOptions(200000, 1000);
+        for (String arg : args) {
+            if (options.read(arg)) {
+                continue;
+            }
+            if (arg.startsWith("--from=")) {
+                from = Long.parseLong(arg.substring("--from=".length()));
+            } else if (arg.startsWith("--count=")) {
+                count = Integer.parseInt(arg.substring("--count=".length()));
+            } else if (arg.startsWith("--corpus=")) {
+                corpus = Paths.get(arg.substring("--corpus=".length()));
+            } else if (arg.startsWith("--out=")) {
+                out = Paths.get(arg.substring("--out=".length()));
+            } else if (arg.startsWith("--train=")) {
+                train = Paths.get(arg.substring("--train=".length()));
+                label = true;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--label")) {
+                label = true;
+            }
+        }
+        long[] seeds = corpus != null ? readCorpus(corpus) : range(from, count);
+        long start = System.nanoTime();
+        DealFeatureTable table = extract(seeds, options.rules(), threads, label,
+                                         options.maxNodes(), options.maxNanos());
+        table.write(out);
+        System.out.println(seeds.length + " deals in "
+            + (System.nanoTime() - start) / 1000000 + " ms, written to " + out);
+        if (train != null) {
+            DifficultyClassifier.train(table).save(train);
+            System.out.println("Classifier written to " + train);
+        }
+    }
+
+    /**
+     * Works out the features of deals in parallel.
+     * @param seeds the seeds of the deals
+     * @param rules the rules the deals are played by
+     * @param threads the number of workers
+     * @param label true to add a <code>difficulty</code> column from the solver
+     * @param maxNodes the largest number of positions a labelling search may expand
+     * @param maxNanos the longest a labelling search may take
+     * @return the table, one row per seed in the order given.
+     * @throws InterruptedException if interrupted while the deals are worked on
+     */
+    public static DealFeatureTable extract(long[] seeds, final RuleSet rules, int threads,
+                                           final boolean label, final long maxNodes,
+                                           final long maxNanos) throws InterruptedException {
+        String[] names = DealFeatures.NAMES;
+        if (label) {
+            names = Arrays.copyOf(names, names.length + 1);
+            names[names.length - 1] = DifficultyClassifier.LABEL_COLUMN;
+        }
+        final DealFeatureTable table = new DealFeatureTable(names, seeds.length);
+        System.arraycopy(seeds, 0, table.seeds(), 0, seeds.length);
+        final int chunks = (seeds.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+        for (int t = 0; t < Math.max(1, threads); t++) {
+            workers.execute(new Runnable() {
+                public void run() {
+                    SolitaireBoard board = new SolitaireBoard(BoardGeometry.STANDARD, rules, 1);
+                    DealFeatures features = new DealFeatures(board);
+                    Solver solver = label ? new Solver(board) : null;
+                    int[] vector = new int[DealFeatures.COUNT];
+                    int chunk;
+                    while ((chunk = next.getAndIncrement()) < chunks) {
+                        int end = Math.min(table.rows(), (chunk + 1) * CHUNK_SIZE);
+                        for (int row = chunk * CHUNK_SIZE; row < end; row++) {
+                            long seed = table.seeds()[row];
+                            features.extract(seed, vector);
+                            for (int j = 0; j < DealFeatures.COUNT; j++) {
+                                table.column(j)[row] = vector[j];
+                            }
+                            if (solver != null) {
+                                board.newGame(seed);
+                                DailyChallenge.Difficulty difficulty =
+                                    solver.solve(maxNodes, maxNanos) == Solver.Result.SOLVED
+                                    ? DailyChallenge.rate(solver.nodes())
+                                    : DailyChallenge.Difficulty.HARD;
+                                table.column(DealFeatures.COUNT)[row] = difficulty.ordinal();
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return table;
+    }
+
+    /**
+     * Lists a range of seeds.
+     */
+    private static long[] range(long from, int count) {
+        long[] seeds = new long[count];
+        for (int k = 0; k < count; k++) {
+            seeds[k] = from + k;
+        }
+        return seeds;
+    }
+
+    /**
+     * Reads the seeds of a corpus file: one per line, with blank lines and
+     * lines starting with '#' skipped.
+     */
+    private static long[] readCorpus(Path file) throws IOException {
+        long[] seeds = new long[1024];
+        int n = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (n == seeds.length) {
+                    seeds = Arrays.copyOf(seeds, n * 2);
+                }
+                try {
+                    seeds[n++] = Long.parseLong(line);
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ": not a seed: " + line);
+                }
+            }
+        }
+        return Arrays.copyOf(seeds, n);
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * DealFeatureTable.java
+ *
+ * <code>DealFeatureTable</code> holds the features of many deals column
+ * by column: one array of seeds and one array of ints per feature, so a
+ * job that reads one feature reads one contiguous block.  It is stored
+ * the same way, in a columnar binary file:
+ * <pre>
+ * long   magic "DEALFEAT"
+ * int    version
+ * int    rows
+ * int    columns
+ * UTF    the name of each column
+ * long[] the seeds (rows of them)
+ * int[]  each column in turn (rows of each)
+ * </pre>
+ * Numbers are big-endian, as written by <code>DataOutputStream</code>.
+ */
+public class DealFeatureTable {
+
+    /** The first eight bytes of the file. */
+    private static final long MAGIC = 0x4445414c46454154L; // "DEALFEAT"
+
+    /** The version of the file format. */
+    private static final int VERSION = 1;
+
+    /** The names of the columns. */
+    private String[] names;
+
+    /** The seed of each deal. */
+    private long[] seeds;
+
+    /** The columns; columns[j][row]. */
+    private int[][] columns;
+
+    /**
+     * Creates a new <code>DealFeatureTable</code> instance filled with zeros.
+     * @param columnNames the names of the columns
+     * @param rows the number of deals
+     */
+    public DealFeatureTable(String[] columnNames, int rows) {
+        names = columnNames.clone();
+        seeds = new long[rows];
+        columns = new int[names.length][rows];
+    }
+
+    /**
+     * Reads a table from a file.
+     * @param file the file
+     * @return the table.
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    public static DealFeatureTable read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a deal feature table");
+            }
+            int rows = in.readInt();
+            String[] columnNames = new String[in.readInt()];
+            for (int j = 0; j < columnNames.length; j++) {
+                columnNames[j] = in.readUTF();
+            }
+            DealFeatureTable table = new DealFeatureTable(columnNames, rows);
+            for (int row = 0; row < rows; row++) {
+                table.seeds[row] = in.readLong();
+            }
+            for (int[] column : table.columns) {
+                for (int row = 0; row < rows; row++) {
+                    column[row] = in.readInt();
+                }
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Writes this table to a file.
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(seeds.length);
+            out.writeInt(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            for (long seed : seeds) {
+                out.writeLong(seed);
+            }
+            for (int[] column : columns) {
+                for (int value : column) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accesses the number of deals.
+     * @return the number of rows.
+     */
+    public int rows() {
+        return seeds.length;
+    }
+
+    /**
+     * Accesses the names of the columns.
+     * @return a copy of the names.
+     */
+    public String[] names() {
+        return names.clone();
+    }
+
+    /**
+     * Finds a column by name.
+     * @param name the name of the column
+     * @return the index of the column, or -1 if there is none.
+     */
+    public int columnIndex(String name) {
+        return Arrays.asList(names).indexOf(name);
+    }
+
+    /**
+     * Accesses a column.  The array is the table's own; writing to it
+     * changes the table.
+     * @param j the index of the column
+     * @return the values, one per deal.
+     */
+    public int[] column(int j) {
+        return columns[j];
+    }
+
+    /**
+     * Accesses the seeds.  The array is the table's own.
+     * @return the seed of each deal.
+     */
+    public long[] seeds() {
+        return seeds;
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DealFeatures.java
+ *
+ * <code>DealFeatures</code> works out a vector of features of a deal that
+ * hint at how hard it is, without solving it:
+ * <ol>
+ * <li>how deep the aces are buried: the cards covering each ace in the
+ *     columns, plus the draws needed to reach each ace in the stock;</li>
+ * <li>the cards in the columns lying on a card of the same color;</li>
+ * <li>the legal moves at the deal;</li>
+ * <li>the stock and waste cards that could be played at the deal;</li>
+ * <li>the cards a greedy playout gets to the foundations;</li>
+ * <li>whether the greedy playout wins (1) or not (0).</li>
+ * </ol>
+ * The greedy playout only makes moves that make progress: to a
+ * foundation, turning a card over, or from the waste to a column, in
+ * that order, drawing when there is none.  It stops when a full pass
+ * through the stock finds nothing to do.
+ * The deal is made on a board of the caller's, which is left in the
+ * position the greedy playout ends in.
+ */
+public class DealFeatures {
+
+    /** The names of the features, in the order of the vector. */
+    public static final String[] NAMES = {
+        "buried-aces", "same-color-adjacent", "legal-moves",
+        "playable-stock", "greedy-foundation", "greedy-won"
+    };
+
+    /** The number of features. */
+    public static final int COUNT = NAMES.length;
+
+    /** The board the deals are made on. */
+    private SolitaireBoard board;
+
+    /** The legal moves, reused between deals. */
+    private List<Move> moves;
+
+    /**
+     * Creates a new <code>DealFeatures</code> instance.
+     * @param gameBoard the board to make the deals on; it should have no
+     *                  listeners, or they hear every playout move
+     */
+    public DealFeatures(SolitaireBoard gameBoard) {
+        board = gameBoard;
+        moves = new ArrayList<Move>();
+    }
+
+    /**
+     * Deals a game and works out its features.
+     * @param seed the seed of the deal
+     * @param into room for <code>COUNT</code> features
+     * @return <code>into</code>, filled in.
+     */
+    public int[] extract(long seed, int[] into) {
+        board.newGame(seed);
+        into[0] = buriedAces();
+        into[1] = sameColorAdjacent();
+        into[2] = board.legalMoves(moves).size();
+        into[3] = board.playableWasteCards();
+        playGreedily();
+        int founded = 0;
+        for (int f = 0; f < board.foundationCount(); f++) {
+            founded += board.fPileSize(f);
+        }
+        into[4] = founded;
+        into[5] = board.gameIsWon() ? 1 : 0;
+        return into;
+    }
+
+    /**
+     * Plays the moves that make progress until there are none, drawing
+     * when nothing else can be done.
+     */
+    private void playGreedily() {
+        int idleDraws = 0;
+        while (idleDraws <= board.deckSize() + board.wasteSize()) {
+            Move best = null;
+            int bestRank = Integer.MAX_VALUE;
+            for (Move move : board.legalMoves(moves)) {
+                int rank = rank(move);
+                if (rank < bestRank) {
+                    best = move;
+                    bestRank = rank;
+                }
+            }
+            if (best == null) {
+                return;
+            }
+            board.apply(best);
+            idleDraws = bestRank == DRAW_RANK ? idleDraws + 1 : 0;
+        }
+    }
+
+    /** The rank of drawing and turning the waste over. */
+    private static final int DRAW_RANK = 3;
+
+    /**
+     * Ranks a move for the greedy playout, lower first, or
+     * Integer.MAX_VALUE for a move that makes no progress.
+     */
+    private int rank(Move move) {
+        switch (move.kind()) {
+            case TABLEAU_TO_FOUNDATION:
+            case WASTE_TO_FOUNDATION:
+                return 0;
+            case TABLEAU_TO_TABLEAU: {
+                int k = board.column(move.from()).size() - move.count();
+                return k > 0 && k == board.faceDownCount(move.from()) ? 1 : Integer.MAX_VALUE;
+            }
+            case WASTE_TO_TABLEAU:
+                return 2;
+            default:
+                return DRAW_RANK;
+        }
+    }
+
+    /**
+     * Adds up the cards covering each ace in the columns and the draws
+     * needed to bring each ace in the stock to the top of the waste.
+     */
+    private int buriedAces() {
+        int depth = 0;
+        for (int c = 0; c < board.tabColSize(); c++) {
+            CardStack column = board.column(c);
+            for (int k = 0; k < column.size(); k++) {
+                if (startsFoundation(column.get(k))) {
+                    depth += column.size() - 1 - k;
+                }
+            }
+        }
+        StockPile stock = board.stockPile();
+        for (int k = 0; k < stock.stockSize(); k++) {
+            if (startsFoundation(stock.at(stock.wasteSize() + k))) {
+                depth += k / stock.drawCount() + 1;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Determines if a card can start a foundation.
+     */
+    private boolean startsFoundation(Card card) {
+        for (int f = 0; f < board.foundationCount(); f++) {
+            if (board.fCardAt(f) == null && board.canFound(card, f)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the cards in the columns lying on a card of the same color.
+     */
+    private int sameColorAdjacent() {
+        int count = 0;
+        for (int c = 0; c < board.tabColSize(); c++) {
+            CardStack column = board.column(c);
+            for (int k = 1; k < column.size(); k++) {
+                if (RuleSet.isRed(column.get(k).suit()) == RuleSet.isRed(column.get(k - 1).suit())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -1,5 +1,6 @@
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * The Deck class represents a shuffled deck of cards.
@@ -13,6 +14,16 @@ public class Deck {
      */
     private List<Card> cards;
 
+    /**
+     * The cards by id, which does not change when the deck is shuffled.
+     */
+    private Card[] byId;
+
+    /**
+     * The number of decks shuffled together.
+     */
+    private int decks;
+
     /**
      * size is the number of not-yet-dealt cards.
      * Cards are dealt from the top (highest index) down.
@@ -20,6 +31,12 @@ public class Deck {
      */
     private int size;
 
+    /**
+     * The seed of the last shuffle.  Shuffling with the same seed always
+     * puts the cards in the same order.
+     */
+    private long seed;
+
 
     /**
      * Creates a new <code>Deck</code> instance.<BR>
@@ -30,16 +47,54 @@ public class Deck {
      * @param values is an array containing all of the card point values.
      */
     public Deck(String[] ranks, String[] suits, int[] values) {
-        cards = new ArrayList<Card>();
-        for (int j = 0; j < ranks.length; j++) {
-            for (String suitString : suits) {
-                cards.add(new Card(ranks[j], suitString, values[j]));
+        this(ranks, suits, values, 1);
+    }
+
+    /**
+     * Creates a new <code>Deck</code> instance made of several decks
+     * shuffled together.  Each card knows which deck it comes from and has
+     * an id of its own, so copies can be told apart.
+     * @param ranks is an array containing all of the card ranks.
+     * @param suits is an array containing all of the card suits.
+     * @param values is an array containing all of the card point values.
+     * @param deckCount is the number of decks, at least 1.
+     */
+    public Deck(String[] ranks, String[] suits, int[] values, int deckCount) {
+        if (deckCount < 1) {
+            throw new IllegalArgumentException("At least one deck is needed: " + deckCount);
+        }
+        decks = deckCount;
+        int faces = ranks.length * suits.length;
+        byId = new Card[faces * deckCount];
+        cards = new ArrayList<Card>(byId.length);
+        for (int copy = 0; copy < deckCount; copy++) {
+            for (int j = 0; j < ranks.length; j++) {
+                for (int s = 0; s < suits.length; s++) {
+                    int face = j * suits.length + s;
+                    int id = copy * faces + face;
+                    byId[id] = new Card(ranks[j], suits[s], values[j], id, face, copy);
+                    cards.add(byId[id]);
+                }
             }
         }
         size = cards.size();
         shuffle();
     }
 
+    /**
+     * Creates a copy of a <code>Deck</code>, for a board that is about to
+     * shuffle or deal a deck it shares with a fork.  The cards themselves
+     * are shared; only their order is copied.
+     * @param original the deck to copy
+     */
+    Deck(Deck original) {
+        cards = new ArrayList<Card>(original.cards);
+        byId = original.byId;
+        decks = original.decks;
+        size = original.size;
+        seed = original.seed;
+    }
+
 
     /**
      * Determines if this deck is empty (no undealt cards).
@@ -49,6 +104,31 @@ public class Deck {
         return size == 0;
     }
 
+    /**
+     * Accesses the number of cards in this deck, dealt or not.
+     * @return the number of cards in this deck.
+     */
+    public int cardCount() {
+        return byId.length;
+    }
+
+    /**
+     * Accesses the number of decks shuffled together in this deck.
+     * @return the number of decks.
+     */
+    public int deckCount() {
+        return decks;
+    }
+
+    /**
+     * Accesses a card of this deck by its id.
+     * @param id the id of the card
+     * @return the card with the id.
+     */
+    public Card card(int id) {
+        return byId[id];
+    }
+
     /**
      * Accesses the number of undealt cards in this deck.
      * @return the number of undealt cards in this deck.
@@ -62,10 +142,26 @@ public class Deck {
      * and reset the size to represent the entire deck.
      */
     public void shuffle() {
+        shuffle(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Permute the cards in the order given by a seed
+     * and reset the size to represent the entire deck.
+     * The cards are put back in id order first, so the order depends
+     * only on the seed and not on earlier shuffles.
+     * @param shuffleSeed the seed; equal seeds give equal orders.
+     */
+    public void shuffle(long shuffleSeed) {
+        seed = shuffleSeed;
+        for (int id = 0; id < byId.length; id++) {
+            cards.set(id, byId[id]);
+        }
+        long state = shuffleSeed;
         for (int k = cards.size() - 1; k > 0; k--) {
             int howMany = k + 1;
-            int start = 0;
-            int randPos = (int) (Math.random() * howMany) + start;
+            state += 0x9E3779B97F4A7C15L;
+            int randPos = (int) ((mix(state) >>> 1) % howMany);
             Card temp = cards.get(k);
             cards.set(k, cards.get(randPos));
             cards.set(randPos, temp);
@@ -73,6 +169,36 @@ public class Deck {
         size = cards.size();
     }
 
+    /**
+     * Accesses the seed of the last shuffle.
+     * @return the seed the cards were last shuffled with.
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * Records that every card of a game dealt from a seed is out of the
+     * deck, for a game restored from a snapshot.
+     * @param shuffleSeed the seed the game was dealt from
+     */
+    void markDealt(long shuffleSeed) {
+        seed = shuffleSeed;
+        size = 0;
+    }
+
+    /**
+     * Scrambles the bits of a number (the SplitMix64 finalizer).  The
+     * position hashes and the daily challenge seeds use it too.
+     * @param z the number to scramble
+     * @return the scrambled number.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Deals a card from this deck.
      * @return the card just dealt, or null if all the cards have been
@@ -0,0 +1,210 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * DifficultyClassifier.java
+ *
+ * <code>DifficultyClassifier</code> guesses how hard a deal is from its
+ * <code>DealFeatures</code>, without solving it.  It is a nearest-centroid
+ * model: every feature is scaled to zero mean and unit spread over the
+ * training deals, and a deal is given the difficulty whose average deal
+ * is nearest.  A guess is a few dozen arithmetic operations and allocates
+ * nothing, so it is cheap enough to make while a player waits.
+ * <p>
+ * A model is trained from a <code>DealFeatureTable</code> labelled by the
+ * solver and saved as a few lines of text.
+ */
+public class DifficultyClassifier {
+
+    /** The name of the label column of a training table. */
+    public static final String LABEL_COLUMN = "difficulty";
+
+    /** The first word of a saved model. */
+    private static final String HEADER = "difficulty-classifier";
+
+    /** The mean of each feature over the training deals. */
+    private double[] mean;
+
+    /** One over the spread of each feature. */
+    private double[] scale;
+
+    /** The scaled average deal of each difficulty, or null if none was seen. */
+    private double[][] centroids;
+
+    /**
+     * Creates a new <code>DifficultyClassifier</code> instance.
+     */
+    private DifficultyClassifier(double[] featureMean, double[] featureScale,
+                                 double[][] classCentroids) {
+        mean = featureMean;
+        scale = featureScale;
+        centroids = classCentroids;
+    }
+
+    /**
+     * Trains a model on deals the solver has labelled.
+     * @param table the deals; it must have every <code>DealFeatures</code>
+     *              column and the <code>difficulty</code> column, holding a
+     *              <code>Difficulty</code> ordinal
+     * @return the model.
+     * @throws IllegalArgumentException if a column is missing
+     */
+    public static DifficultyClassifier train(DealFeatureTable table) {
+        int[][] features = new int[DealFeatures.COUNT][];
+        for (int j = 0; j < DealFeatures.COUNT; j++) {
+            int column = table.columnIndex(DealFeatures.NAMES[j]);
+            if (column < 0) {
+                throw new IllegalArgumentException("missing column " + DealFeatures.NAMES[j]);
+            }
+            features[j] = table.column(column);
+        }
+        int labelColumn = table.columnIndex(LABEL_COLUMN);
+        if (labelColumn < 0) {
+            throw new IllegalArgumentException("missing column " + LABEL_COLUMN);
+        }
+        int[] labels = table.column(labelColumn);
+        int rows = table.rows();
+
+        double[] mean = new double[DealFeatures.COUNT];
+        double[] scale = new double[DealFeatures.COUNT];
+        for (int j = 0; j < DealFeatures.COUNT; j++) {
+            double sum = 0;
+            double squares = 0;
+            for (int row = 0; row < rows; row++) {
+                sum += features[j][row];
+                squares += (double) features[j][row] * features[j][row];
+            }
+            mean[j] = rows == 0 ? 0 : sum / rows;
+            double variance = rows == 0 ? 0 : squares / rows - mean[j] * mean[j];
+            scale[j] = variance > 1e-9 ? 1 / Math.sqrt(variance) : 0;
+        }
+
+        int classes = DailyChallenge.Difficulty.values().length;
+        double[][] centroids = new double[classes][DealFeatures.COUNT];
+        int[] counts = new int[classes];
+        for (int row = 0; row < rows; row++) {
+            int label = labels[row];
+            counts[label]++;
+            for (int j = 0; j < DealFeatures.COUNT; j++) {
+                centroids[label][j] += (features[j][row] - mean[j]) * scale[j];
+            }
+        }
+        for (int label = 0; label < classes; label++) {
+            if (counts[label] == 0) {
+                centroids[label] = null;
+                continue;
+            }
+            for (int j = 0; j < DealFeatures.COUNT; j++) {
+                centroids[label][j] /= counts[label];
+            }
+        }
+        return new DifficultyClassifier(mean, scale, centroids);
+    }
+
+    /**
+     * Guesses the difficulty of a deal.
+     * @param features the deal's features, as worked out by <code>DealFeatures</code>
+     * @return the difficulty whose average deal is nearest.
+     */
+    public DailyChallenge.Difficulty predict(int[] features) {
+        int best = DailyChallenge.Difficulty.HARD.ordinal();
+        double bestDistance = Double.MAX_VALUE;
+        for (int label = 0; label < centroids.length; label++) {
+            double[] centroid = centroids[label];
+            if (centroid == null) {
+                continue;
+            }
+            double distance = 0;
+            for (int j = 0; j < DealFeatures.COUNT; j++) {
+                double d = (features[j] - mean[j]) * scale[j] - centroid[j];
+                distance += d * d;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = label;
+            }
+        }
+        return DailyChallenge.Difficulty.values()[best];
+    }
+
+    /**
+     * Saves this model as text.
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER + " features=" + String.join(",", DealFeatures.NAMES));
+            out.newLine();
+            out.write("mean" + numbers(mean));
+            out.newLine();
+            out.write("scale" + numbers(scale));
+            out.newLine();
+            for (int label = 0; label < centroids.length; label++) {
+                if (centroids[label] != null) {
+                    out.write(DailyChallenge.Difficulty.values()[label] + numbers(centroids[label]));
+                    out.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a model saved by <code>save</code>.
+     * @param file the file
+     * @return the model.
+     * @throws IOException if the file cannot be read, is not a model, or
+     *         was trained on other features
+     */
+    public static DifficultyClassifier load(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null
+                || !header.equals(HEADER + " features=" + String.join(",", DealFeatures.NAMES))) {
+                throw new IOException(file + " is not a model for these features");
+            }
+            double[] mean = null;
+            double[] scale = null;
+            double[][] centroids = new double[DailyChallenge.Difficulty.values().length][];
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+");
+                if (words.length != DealFeatures.COUNT + 1) {
+                    throw new IOException(file + " is damaged");
+                }
+                double[] values = new double[DealFeatures.COUNT];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = Double.parseDouble(words[j + 1]);
+                }
+                if (words[0].equals("mean")) {
+                    mean = values;
+                } else if (words[0].equals("scale")) {
+                    scale = values;
+                } else {
+                    centroids[DailyChallenge.Difficulty.valueOf(words[0]).ordinal()] = values;
+                }
+            }
+            if (mean == null || scale == null) {
+                throw new IOException(file + " is damaged");
+            }
+            return new DifficultyClassifier(mean, scale, centroids);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + " is damaged", e);
+        }
+    }
+
+    /**
+     * Writes numbers for a line of a saved model, each after a space.
+     */
+    private static String numbers(double[] values) {
+        StringBuilder s = new StringBuilder();
+        for (double value : values) {
+            s.append(' ').append(value);
+        }
+        return s.toString();
+    }
+}
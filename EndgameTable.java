@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * EndgameTable.java
+ *
+ * <code>EndgameTable</code> is a file of endgame positions whose outcome
+ * is known exactly: lost, or won in so many moves at best.  An endgame
+ * is a position with every tableau card face up, few cards off the
+ * foundations and a small stock; nothing is hidden in it, so the outcome
+ * is settled and <code>EndgameTableBuilder</code> works it out once,
+ * offline, for every position it can reach.
+ * <p>
+ * The file is mapped into memory, so a lookup is a few reads of the page
+ * cache and tables larger than the heap can be used.  It is an
+ * open-addressing hash table keyed by the hash of
+ * <code>CanonicalPosition</code>, so positions that differ only by the
+ * order of the piles or by swapped suits share an entry.  A 64-byte
+ * header names the rules, followed by 16-byte slots:
+ * <pre>
+ * bytes 0-7    the position's key
+ * bytes 8-11   the number of moves to win, or LOST
+ * bytes 12-15  1 if the slot is used, 0 if it is empty
+ * </pre>
+ * Lookups may be made from any number of threads; only the builder adds
+ * entries.
+ */
+public class EndgameTable {
+
+    /** What <code>lookup</code> returns for a position not in the table. */
+    public static final int UNKNOWN = -2;
+
+    /** What <code>lookup</code> returns for a position that cannot be won. */
+    public static final int LOST = -1;
+
+    /** The most cards off the foundations in an endgame. */
+    public static final int MAX_CARDS = 28;
+
+    /** The most cards in the stock and waste together in an endgame. */
+    public static final int MAX_STOCK = 8;
+
+    /** The size of the header. */
+    static final int HEADER_SIZE = 64;
+
+    /** The size of a slot. */
+    static final int SLOT_SIZE = 16;
+
+    /** The first eight bytes of the file. */
+    static final long MAGIC = 0x534f4c454e44474dL; // "SOLENDGM"
+
+    /** The version of the file format. */
+    static final int VERSION = 1;
+
+    /** The most slots a table may have, so that it maps as one buffer. */
+    static final int MAX_SLOTS = 1 << 26;
+
+    /** The file, mapped. */
+    private MappedByteBuffer slots;
+
+    /** The channel the file was mapped from. */
+    private FileChannel channel;
+
+    /** The number of slots less one; the number of slots is a power of two. */
+    private int mask;
+
+    /** The number of slots used. */
+    private int entries;
+
+    /**
+     * Creates a new <code>EndgameTable</code> instance over a mapped file.
+     */
+    private EndgameTable(FileChannel file, MappedByteBuffer mapped, int slotCount, int used) {
+        channel = file;
+        slots = mapped;
+        mask = slotCount - 1;
+        entries = used;
+    }
+
+    /**
+     * Opens a table for lookups.
+     * @param file the file written by <code>EndgameTableBuilder</code>
+     * @param rules the rules the positions will be played by
+     * @return the table.
+     * @throws IOException if the file cannot be read, or was made for
+     *         other draw rules
+     */
+    public static EndgameTable open(Path file, RuleSet rules) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            int slotCount = readHeader(channel, rules);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                                  HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+            return new EndgameTable(channel, mapped, slotCount, mapped.getInt(20));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a table to add entries to, creating the file if there is none.
+     * @param file the file
+     * @param rules the rules the positions are played by
+     * @param slotCount the number of slots of a new file, a power of two
+     * @return the table.
+     * @throws IOException if the file cannot be read or written, or was
+     *         made for other draw rules
+     */
+    static EndgameTable openForWriting(Path file, RuleSet rules, int slotCount)
+        throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                if (Integer.bitCount(slotCount) != 1 || slotCount > MAX_SLOTS) {
+                    throw new IllegalArgumentException("Not a power of two up to "
+                                                       + MAX_SLOTS + ": " + slotCount);
+                }
+                writeHeader(channel, rules, slotCount);
+            } else {
+                slotCount = readHeader(channel, rules);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                                  HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+            return new EndgameTable(channel, mapped, slotCount, mapped.getInt(20));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Determines if the position on a board is an endgame: every tableau
+     * card face up, at most <code>MAX_CARDS</code> cards off the
+     * foundations and at most <code>MAX_STOCK</code> in the stock and
+     * waste.  Every position reached from an endgame is one too.
+     * @param board the board
+     * @return true if the position is an endgame.
+     */
+    public static boolean isEndgame(Board board) {
+        StockPile stock = board.stockPile();
+        if (stock.stockSize() + stock.wasteSize() > MAX_STOCK) {
+            return false;
+        }
+        if (board.faceDownCount() > 0) {
+            return false;
+        }
+        int left = board.cardCount();
+        for (int f = 0; f < board.foundationCount(); f++) {
+            left -= board.fPileSize(f);
+        }
+        return left <= MAX_CARDS;
+    }
+
+    /**
+     * Looks a position up.
+     * @param key the position's <code>CanonicalPosition</code> hash
+     * @return the number of moves to win at best, <code>LOST</code>, or
+     *         <code>UNKNOWN</code> if the position is not in the table.
+     */
+    public int lookup(long key) {
+        int k = (int) key & mask;
+        while (true) {
+            long at = HEADER_SIZE + (long) k * SLOT_SIZE;
+            if (slots.getInt((int) at + 12) == 0) {
+                return UNKNOWN;
+            }
+            if (slots.getLong((int) at) == key) {
+                return slots.getInt((int) at + 8);
+            }
+            k = (k + 1) & mask;
+        }
+    }
+
+    /**
+     * Finds a move that wins the position on a board in the fewest
+     * moves, by looking up the position each legal move leads to.  The
+     * board is put back as it was.
+     * @param board the board; its listeners are told of every move
+     *              tried, so it should have none
+     * @param position the canonical position of the same board
+     * @return the move, or null if the position is not known to be won
+     *         or is won already.
+     */
+    public Move finishingMove(Board board, CanonicalPosition position) {
+        int distance = lookup(position.hash());
+        if (distance <= 0) {
+            return null;
+        }
+        byte[] start = BoardSnapshot.encode(board);
+        List<Move> moves = board.legalMoves(new ArrayList<Move>());
+        for (Move move : moves) {
+            board.apply(move);
+            boolean closer = board.gameIsWon() || lookup(position.hash()) == distance - 1;
+            BoardSnapshot.decode(start, board);
+            if (closer) {
+                return move;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Accesses the number of positions in the table.
+     * @return the number of entries.
+     */
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * Accesses the number of slots in the table.
+     * @return the number of slots.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds a position, or changes its outcome if it is there already.
+     * @param key the position's <code>CanonicalPosition</code> hash
+     * @param outcome the number of moves to win, or <code>LOST</code>
+     * @return false if the table is too full to take it.
+     */
+    boolean put(long key, int outcome) {
+        int k = (int) key & mask;
+        while (true) {
+            int at = HEADER_SIZE + k * SLOT_SIZE;
+            if (slots.getInt(at + 12) == 0) {
+                // Keep a quarter of the slots empty so probes stay short.
+                if (entries + 1 > capacity() / 4 * 3) {
+                    return false;
+                }
+                slots.putLong(at, key);
+                slots.putInt(at + 8, outcome);
+                slots.putInt(at + 12, 1);
+                entries++;
+                slots.putInt(20, entries);
+                return true;
+            }
+            if (slots.getLong(at) == key) {
+                slots.putInt(at + 8, outcome);
+                return true;
+            }
+            k = (k + 1) & mask;
+        }
+    }
+
+    /**
+     * Writes the table's changes out and closes the file.
+     * @throws IOException if the file cannot be written
+     */
+    public void close() throws IOException {
+        if (!slots.isReadOnly()) {
+            slots.force();
+        }
+        channel.close();
+    }
+
+    /**
+     * Writes the header of a new file.
+     */
+    private static void writeHeader(FileChannel channel, RuleSet rules, int slotCount)
+        throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(rules.drawCount());
+        header.putInt(rules.recycleLimit());
+        header.putInt(0);
+        header.putInt(slotCount);
+        header.rewind();
+        channel.write(header, 0);
+        // Grow the file to its full size; the slots start empty.
+        channel.write(ByteBuffer.allocate(1), HEADER_SIZE + (long) slotCount * SLOT_SIZE - 1);
+    }
+
+    /**
+     * Reads the header of a file and checks it was made for the rules.
+     * @return the number of slots.
+     */
+    private static int readHeader(FileChannel channel, RuleSet rules) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getLong() != MAGIC
+            || header.getInt() != VERSION) {
+            throw new IOException("Not an endgame table");
+        }
+        int draw = header.getInt();
+        int recycles = header.getInt();
+        if (draw != rules.drawCount() || recycles != rules.recycleLimit()) {
+            throw new IOException("Endgame table was made for draw=" + draw
+                                  + " recycles=" + recycles);
+        }
+        header.getInt();
+        int slotCount = header.getInt();
+        if (Integer.bitCount(slotCount) != 1 || slotCount > MAX_SLOTS
+            || channel.size() < HEADER_SIZE + (long) slotCount * SLOT_SIZE) {
+            throw new IOException("Endgame table is cut short");
+        }
+        return slotCount;
+    }
+}
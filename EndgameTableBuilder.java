@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EndgameTableBuilder.java
+ *
+ * <code>EndgameTableBuilder</code> is the offline job that fills an
+ * <code>EndgameTable</code>.  It deals games and gives each to the
+ * <code>Solver</code>; the endgames the search comes to, and the first
+ * one on a winning line, are the starting points.  From each it lists
+ * every position that can be reached, making every legal move, and then
+ * works back from the won positions to find how many moves each position
+ * is from a win at best.  Positions already in the table are not listed
+ * again but count with their known outcome, so the job can be run again,
+ * on more deals, to add to a table.
+ */
+public class EndgameTableBuilder {
+
+    /** The most endgames taken from one deal. */
+    private static final int ROOTS_PER_DEAL = 32;
+
+    /** A distance larger than any line. */
+    private static final int FAR = Integer.MAX_VALUE;
+
+    /** The board the positions are listed on. */
+    private Board board;
+
+    /** The canonical position of the board. */
+    private CanonicalPosition position;
+
+    /** The table filled in. */
+    private EndgameTable table;
+
+    /** The most positions listed from one starting point. */
+    private int maxStates;
+
+    /** The board the deals are searched on. */
+    private SolitaireBoard game;
+
+    /** The solver that searches the deals. */
+    private Solver solver;
+
+    /** The endgames of the deal being searched, not yet in the table. */
+    private List<byte[]> roots;
+
+    /**
+     * Creates a new <code>EndgameTableBuilder</code> instance.
+     * @param workBoard the board to list positions on; it should have no
+     *                  listeners
+     * @param endgames the table to fill in
+     * @param statesPerEndgame the most positions to list from one
+     *                         starting point; one that leads to more is
+     *                         left out
+     */
+    public EndgameTableBuilder(Board workBoard, EndgameTable endgames, int statesPerEndgame) {
+        board = workBoard;
+        position = new CanonicalPosition(workBoard);
+        table = endgames;
+        maxStates = statesPerEndgame;
+        game = new SolitaireBoard(workBoard.geometry(), workBoard.ruleSet(), 1);
+        solver = new Solver(game);
+        roots = new ArrayList<byte[]>();
+        final CanonicalPosition searched = new CanonicalPosition(game);
+        game.addGameListener(new GameListener() {
+            public void nodeExpanded(Board searchBoard, int depth) {
+                if (roots.size() < ROOTS_PER_DEAL && EndgameTable.isEndgame(searchBoard)
+                    && table.lookup(searched.hash()) == EndgameTable.UNKNOWN) {
+                    roots.add(BoardSnapshot.encode(searchBoard));
+                }
+            }
+        });
+    }
+
+    /**
+     * Fills in a table from a range of deals.
+     * @param args "--file=NAME" (default endgames.dat), "--from=SEED"
+     *             (default 1) and "--games=N" (default 1000) for the
+     *             deals, "--nodes=N" and "--budget-ms=N" to limit each
+     *             search, "--states=N" for the most positions listed from
+     *             one endgame, "--slots=N" for the size of a new table (a
+     *             power of two), "--draw=N" and "--recycles=N" for the rules
+     * @throws IOException if the file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get("endgames.dat");
+        long from = 1;
+        int games = 1000;
+        ToolOptions options = new ToolOptions(200000, 1000);
+        int states = 1 << 18;
+        int slotCount = 1 << 22;
+        for (String arg : args) {
+            if (options.read(arg)) {
+                continue;
+            }
+            if (arg.startsWith("--file=")) {
+                file = Paths.get(arg.substring("--file=".length()));
+            } else if (arg.startsWith("--from=")) {
+                from = Long.parseLong(arg.substring("--from=".length()));
+            } else if (arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            } else if (arg.startsWith("--states=")) {
+                states = Integer.parseInt(arg.substring("--states=".length()));
+            } else if (arg.startsWith("--slots=")) {
+                slotCount = Integer.parseInt(arg.substring("--slots=".length()));
+            }
+        }
+        RuleSet rules = options.rules();
+        EndgameTable table = EndgameTable.openForWriting(file, rules, slotCount);
+        long start = System.nanoTime();
+        try {
+            EndgameTableBuilder builder = new EndgameTableBuilder(
+                new SolitaireBoard(BoardGeometry.STANDARD, rules, 1), table, states);
+            int before = table.size();
+            for (int g = 0; g < games; g++) {
+                if (!builder.addDeal(from + g, options.maxNodes(), options.maxNanos())) {
+                    System.out.println("Table full after " + g + " deals");
+                    break;
+                }
+            }
+            System.out.println((table.size() - before) + " positions added in "
+                + (System.nanoTime() - start) / 1000000 + " ms; " + table.size()
+                + " of " + table.capacity() + " slots used in " + file);
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Adds the endgames of a deal: those the solver's search comes to,
+     * and the first one on its winning line if it finds one.
+     * @param seed the seed of the deal
+     * @param maxNodes the largest number of positions the search may expand
+     * @param maxNanos the longest the search may take
+     * @return false if the table filled up.
+     */
+    public boolean addDeal(long seed, long maxNodes, long maxNanos) {
+        roots.clear();
+        game.newGame(seed);
+        if (solver.solve(maxNodes, maxNanos) == Solver.Result.SOLVED) {
+            for (Move move : solver.solution()) {
+                game.apply(move);
+                if (EndgameTable.isEndgame(game)) {
+                    roots.add(0, BoardSnapshot.encode(game));
+                    break;
+                }
+            }
+        }
+        for (byte[] root : roots) {
+            BoardSnapshot.decode(root, board);
+            if (table.lookup(position.hash()) == EndgameTable.UNKNOWN && add() < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lists every position that can be reached from the one on the board,
+     * works out their outcomes, and puts them in the table.
+     * @return the number of positions added, 0 if there were too many to
+     *         list, or -1 if the table filled up.
+     */
+    public int add() {
+        List<byte[]> states = new ArrayList<byte[]>();
+        Map<Long, Integer> index = new HashMap<Long, Integer>();
+        List<int[]> children = new ArrayList<int[]>();
+        int[] known = new int[16];
+        long[] keys = new long[16];
+
+        states.add(BoardSnapshot.encode(board));
+        index.put(position.hash(), 0);
+        List<Move> moves = new ArrayList<Move>();
+        int[] found = new int[64];
+        for (int s = 0; s < states.size(); s++) {
+            if (s == keys.length) {
+                keys = Arrays.copyOf(keys, s * 2);
+                known = Arrays.copyOf(known, s * 2);
+            }
+            byte[] state = states.get(s);
+            BoardSnapshot.decode(state, board);
+            keys[s] = position.hash();
+            known[s] = board.gameIsWon() ? 0 : s == 0 ? EndgameTable.UNKNOWN
+                : table.lookup(keys[s]);
+            if (known[s] != EndgameTable.UNKNOWN) {
+                children.add(new int[0]);
+                continue;
+            }
+            board.legalMoves(moves);
+            if (found.length < moves.size()) {
+                found = new int[moves.size()];
+            }
+            int n = 0;
+            for (Move move : moves) {
+                board.apply(move);
+                long key = position.hash();
+                Integer child = index.get(key);
+                if (child == null) {
+                    if (states.size() == maxStates) {
+                        return 0;
+                    }
+                    child = states.size();
+                    index.put(key, child);
+                    states.add(BoardSnapshot.encode(board));
+                }
+                found[n++] = child;
+                BoardSnapshot.decode(state, board);
+            }
+            children.add(Arrays.copyOf(found, n));
+        }
+
+        int[] distance = distances(children, known, states.size());
+        int added = 0;
+        for (int s = 0; s < states.size(); s++) {
+            if (known[s] == EndgameTable.UNKNOWN || known[s] == 0) {
+                int outcome = distance[s] == FAR ? EndgameTable.LOST : distance[s];
+                if (!table.put(keys[s], outcome)) {
+                    return -1;
+                }
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Works out how many moves each position is from a win at best,
+     * starting from the won positions and those whose outcome is known,
+     * and working back along the moves in order of distance.
+     * @return the distances, <code>FAR</code> for positions that cannot
+     *         be won.
+     */
+    private static int[] distances(List<int[]> children, int[] known, int count) {
+        int[] parentCount = new int[count + 1];
+        for (int[] list : children) {
+            for (int child : list) {
+                parentCount[child + 1]++;
+            }
+        }
+        for (int s = 0; s < count; s++) {
+            parentCount[s + 1] += parentCount[s];
+        }
+        int[] parents = new int[parentCount[count]];
+        int[] fill = Arrays.copyOf(parentCount, count);
+        for (int s = 0; s < count; s++) {
+            for (int child : children.get(s)) {
+                parents[fill[child]++] = s;
+            }
+        }
+
+        int[] distance = new int[count];
+        Arrays.fill(distance, FAR);
+        List<List<Integer>> byDistance = new ArrayList<List<Integer>>();
+        for (int s = 0; s < count; s++) {
+            if (known[s] >= 0) {
+                distance[s] = known[s];
+                bucket(byDistance, known[s]).add(s);
+            }
+        }
+        for (int d = 0; d < byDistance.size(); d++) {
+            for (int s : byDistance.get(d)) {
+                if (distance[s] != d) {
+                    continue;
+                }
+                for (int p = parentCount[s]; p < parentCount[s + 1]; p++) {
+                    int parent = parents[p];
+                    if (known[parent] == EndgameTable.UNKNOWN && distance[parent] > d + 1) {
+                        distance[parent] = d + 1;
+                        bucket(byDistance, d + 1).add(parent);
+                    }
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Gets the list of positions at a distance, adding lists as needed.
+     */
+    private static List<Integer> bucket(List<List<Integer>> byDistance, int d) {
+        while (byDistance.size() <= d) {
+            byDistance.add(new ArrayList<Integer>());
+        }
+        return byDistance.get(d);
+    }
+}
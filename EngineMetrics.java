@@ -0,0 +1,270 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class counts what the engine does: games, moves, scans for legal
+ * moves and the memory allocated per game.  It is a <code>GameListener</code>,
+ * so it is attached to every <code>Board</code> it should watch, and it can
+ * be published as a JMX MBean to be read while games are being played.
+ * The counters are striped <code>LongAdder</code>s, so boards played on
+ * many threads can share one instance without contending.
+ */
+public class EngineMetrics implements GameListener, EngineMetricsMBean {
+
+    /** The JMX domain the metrics are registered under. */
+    public static final String JMX_DOMAIN = "Solitaire";
+
+    /** The number of buckets in the scan latency histogram. */
+    private static final int HISTOGRAM_BUCKETS = 40;
+
+    /** The shortest time the per-second rates are computed over. */
+    private static final long RATE_INTERVAL_NANOS = 1000000000L;
+
+    private LongAdder gamesWon;
+    private LongAdder gamesLost;
+    private LongAdder gamesStuck;
+    private LongAdder movesMade;
+    /** The number of moves in all the games that have ended. */
+    private LongAdder gameMoves;
+    private LongAdder moveScans;
+    private LongAdder moveScanNanos;
+    private LongAdder[] moveScanHistogram;
+    /** Bytes allocated in the games whose allocation was measured. */
+    private LongAdder allocatedBytes;
+    /** The number of games whose allocation was measured. */
+    private LongAdder measuredGames;
+
+    /** Bytes the current thread had allocated when its game started. */
+    private ThreadLocal<long[]> allocationAtStart;
+    /** Measures allocation per thread, or null if the JVM cannot. */
+    private com.sun.management.ThreadMXBean threads;
+
+    /** Time (System.nanoTime) of the last rate sample. */
+    private long sampleTime;
+    private long sampleGames;
+    private long sampleMoves;
+    private double gamesPerSecond;
+    private double movesPerSecond;
+
+    /**
+     * Creates a new <code>EngineMetrics</code> instance with every counter at zero.
+     */
+    public EngineMetrics() {
+        gamesWon = new LongAdder();
+        gamesLost = new LongAdder();
+        gamesStuck = new LongAdder();
+        movesMade = new LongAdder();
+        gameMoves = new LongAdder();
+        moveScans = new LongAdder();
+        moveScanNanos = new LongAdder();
+        moveScanHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+        for (int k = 0; k < HISTOGRAM_BUCKETS; k++) {
+            moveScanHistogram[k] = new LongAdder();
+        }
+        allocatedBytes = new LongAdder();
+        measuredGames = new LongAdder();
+        allocationAtStart = new ThreadLocal<long[]>() {
+            protected long[] initialValue() {
+                return new long[] {-1};
+            }
+        };
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        sampleTime = System.nanoTime();
+    }
+
+    /**
+     * Publishes these metrics in the platform MBean server under
+     * <code>Solitaire:type=EngineMetrics,name=</code><i>name</i>.
+     * @param name the name that tells this instance apart, such as "gui"
+     * @return true if the metrics were published; false if the name is
+     *         already taken or JMX is not available.
+     */
+    public boolean register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName(JMX_DOMAIN
+                + ":type=EngineMetrics,name=" + ObjectName.quote(name)));
+            return true;
+        } catch (JMException e) {
+            return false;
+        }
+    }
+
+    public void gameStarted(Board board) {
+        if (threads != null) {
+            allocationAtStart.get()[0] =
+                threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+    public void moveApplied(Board board, Move move) {
+        movesMade.increment();
+    }
+
+    public void gameEnded(Board board, GameOutcome outcome) {
+        if (outcome == GameOutcome.WON) {
+            gamesWon.increment();
+        } else if (outcome == GameOutcome.LOST) {
+            gamesLost.increment();
+        } else {
+            gamesStuck.increment();
+        }
+        gameMoves.add(board.movesMade());
+        if (threads != null) {
+            long[] start = allocationAtStart.get();
+            if (start[0] >= 0) {
+                long now = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                allocatedBytes.add(now - start[0]);
+                measuredGames.increment();
+                start[0] = -1;
+            }
+        }
+    }
+
+    public void movesScanned(Board board, long nanos) {
+        moveScans.increment();
+        moveScanNanos.add(nanos);
+        int bucket = 63 - Long.numberOfLeadingZeros(Math.max(nanos, 1));
+        moveScanHistogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)].increment();
+    }
+
+    public long getGamesPlayed() {
+        return gamesWon.sum() + gamesLost.sum() + gamesStuck.sum();
+    }
+
+    public long getGamesWon() {
+        return gamesWon.sum();
+    }
+
+    public long getGamesLost() {
+        return gamesLost.sum();
+    }
+
+    public long getGamesStuck() {
+        return gamesStuck.sum();
+    }
+
+    public long getMovesMade() {
+        return movesMade.sum();
+    }
+
+    public double getGamesPerSecond() {
+        sampleRates();
+        return gamesPerSecond;
+    }
+
+    public double getMovesPerSecond() {
+        sampleRates();
+        return movesPerSecond;
+    }
+
+    public double getAverageGameLength() {
+        long games = getGamesPlayed();
+        return games == 0 ? 0 : (double) gameMoves.sum() / games;
+    }
+
+    public long getMoveScans() {
+        return moveScans.sum();
+    }
+
+    public double getMoveScanMeanMicros() {
+        long scans = moveScans.sum();
+        return scans == 0 ? 0 : moveScanNanos.sum() / 1000.0 / scans;
+    }
+
+    public double getMoveScanP99Micros() {
+        long[] histogram = getMoveScanHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long seen = 0;
+        for (int k = 0; k < histogram.length; k++) {
+            seen += histogram[k];
+            if (seen * 100 >= total * 99 && total > 0) {
+                return (1L << (k + 1)) / 1000.0;
+            }
+        }
+        return 0;
+    }
+
+    public long[] getMoveScanHistogram() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int k = 0; k < HISTOGRAM_BUCKETS; k++) {
+            histogram[k] = moveScanHistogram[k].sum();
+        }
+        return histogram;
+    }
+
+    public double getAllocatedBytesPerGame() {
+        long games = measuredGames.sum();
+        if (threads == null) {
+            return -1;
+        }
+        return games == 0 ? 0 : (double) allocatedBytes.sum() / games;
+    }
+
+    public void reset() {
+        gamesWon.reset();
+        gamesLost.reset();
+        gamesStuck.reset();
+        movesMade.reset();
+        gameMoves.reset();
+        moveScans.reset();
+        moveScanNanos.reset();
+        for (LongAdder bucket : moveScanHistogram) {
+            bucket.reset();
+        }
+        allocatedBytes.reset();
+        measuredGames.reset();
+        synchronized (this) {
+            sampleTime = System.nanoTime();
+            sampleGames = 0;
+            sampleMoves = 0;
+            gamesPerSecond = 0;
+            movesPerSecond = 0;
+        }
+    }
+
+    /**
+     * Generates and returns a summary of these metrics.
+     * @return the summary.
+     */
+    @Override
+    public String toString() {
+        return "Games: " + getGamesPlayed() + " (won " + getGamesWon()
+            + ", lost " + getGamesLost() + ", stuck " + getGamesStuck() + ")\n"
+            + "Moves: " + getMovesMade() + " (" + String.format("%.1f", getAverageGameLength())
+            + " per game)\n"
+            + "Move scans: " + getMoveScans() + String.format(" (mean %.2f us, p99 %.2f us)",
+                getMoveScanMeanMicros(), getMoveScanP99Micros()) + "\n"
+            + "Allocated per game: " + String.format("%.0f", getAllocatedBytesPerGame()) + " bytes";
+    }
+
+    /**
+     * Recomputes the per-second rates if the last sample is old enough.
+     */
+    private synchronized void sampleRates() {
+        long now = System.nanoTime();
+        long elapsed = now - sampleTime;
+        if (elapsed < RATE_INTERVAL_NANOS) {
+            return;
+        }
+        long games = getGamesPlayed();
+        long moves = getMovesMade();
+        gamesPerSecond = (games - sampleGames) * 1e9 / elapsed;
+        movesPerSecond = (moves - sampleMoves) * 1e9 / elapsed;
+        sampleTime = now;
+        sampleGames = games;
+        sampleMoves = moves;
+    }
+}
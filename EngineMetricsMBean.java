@@ -0,0 +1,79 @@
+/**
+ * The management interface of <code>EngineMetrics</code>, as seen
+ * through JMX (for example in JConsole or VisualVM).
+ */
+public interface EngineMetricsMBean {
+
+    /**
+     * @return the number of games that have ended.
+     */
+    long getGamesPlayed();
+
+    /**
+     * @return the number of games won.
+     */
+    long getGamesWon();
+
+    /**
+     * @return the number of games lost with no legal play left.
+     */
+    long getGamesLost();
+
+    /**
+     * @return the number of games given up while plays may have been left.
+     */
+    long getGamesStuck();
+
+    /**
+     * @return the number of moves made.
+     */
+    long getMovesMade();
+
+    /**
+     * @return games ended per second over the last sampling interval.
+     */
+    double getGamesPerSecond();
+
+    /**
+     * @return moves made per second over the last sampling interval.
+     */
+    double getMovesPerSecond();
+
+    /**
+     * @return the average number of moves in a game that has ended.
+     */
+    double getAverageGameLength();
+
+    /**
+     * @return the number of times a board was scanned for legal moves.
+     */
+    long getMoveScans();
+
+    /**
+     * @return the average time of a scan for legal moves, in microseconds.
+     */
+    double getMoveScanMeanMicros();
+
+    /**
+     * @return the time 99% of scans for legal moves finished within,
+     *         in microseconds (to the histogram's power-of-two resolution).
+     */
+    double getMoveScanP99Micros();
+
+    /**
+     * @return the scan latency histogram: entry k counts the scans
+     *         that took from 2^k up to 2^(k+1) nanoseconds.
+     */
+    long[] getMoveScanHistogram();
+
+    /**
+     * @return the average number of bytes allocated by the playing thread
+     *         per game, or -1 if the JVM cannot measure it.
+     */
+    double getAllocatedBytesPerGame();
+
+    /**
+     * Sets every counter back to zero.
+     */
+    void reset();
+}
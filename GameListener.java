@@ -0,0 +1,59 @@
+/**
+ * The listener interface for receiving what happens on a <code>Board</code>.
+ * Every method does nothing by default, so a listener only implements the
+ * events it cares about.  A board with no listener attached does not build
+ * or deliver any event.
+ */
+public interface GameListener {
+
+    /**
+     * Invoked when a new game has been dealt.
+     * @param board the board the game is played on
+     */
+    default void gameStarted(Board board) {
+    }
+
+    /**
+     * Invoked when a card is dealt face up: the top card of each column
+     * at the start of a game, a face-down card turned over, or a card
+     * drawn from the deck.
+     * @param board the board the card was dealt to
+     * @param card the card dealt
+     * @param column the tableau column the card was turned up in,
+     *               or -1 if it was dealt to the waste
+     */
+    default void cardDealt(Board board, Card card, int column) {
+    }
+
+    /**
+     * Invoked after a move has been made on the board.
+     * @param board the board the move was made on
+     * @param move the move
+     */
+    default void moveApplied(Board board, Move move) {
+    }
+
+    /**
+     * Invoked after the board has been scanned for legal moves.
+     * @param board the board scanned
+     * @param nanos how long the scan took, in nanoseconds
+     */
+    default void movesScanned(Board board, long nanos) {
+    }
+
+    /**
+     * Invoked when a game ends.
+     * @param board the board the game was played on
+     * @param outcome how the game ended
+     */
+    default void gameEnded(Board board, GameOutcome outcome) {
+    }
+
+    /**
+     * Invoked when a search over the moves of a board expands a position.
+     * @param board the board being searched
+     * @param depth the number of moves from the root of the search
+     */
+    default void nodeExpanded(Board board, int depth) {
+    }
+}
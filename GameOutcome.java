@@ -0,0 +1,11 @@
+/**
+ * The ways a game of solitaire can end.
+ */
+public enum GameOutcome {
+    /** Every card reached the foundations. */
+    WON,
+    /** No legal play was left on the board, or the game could no longer be won. */
+    LOST,
+    /** The game was given up while plays may still have been possible. */
+    STUCK
+}
@@ -0,0 +1,231 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GameRecord.java
+ *
+ * <code>GameRecord</code> is one game as it was played: the seed it was
+ * dealt from, the moves made and how it ended.  Dealing the seed and
+ * making the moves again gives back every position of the game.
+ * <p>
+ * In a segment file a record is written as
+ * <pre>
+ * varint       the length of the rest of the record
+ * 8 bytes      the seed
+ * 1 byte       the outcome (GameOutcome.ordinal)
+ * varint       the number of moves
+ * varints      the moves, one code each
+ * </pre>
+ * A varint keeps 7 bits in each byte, low bits first, with the top bit
+ * set on every byte but the last.  A move's code is its kind and the
+ * piles and cards it involves packed into one number, which for a
+ * Klondike game takes one byte for draws and waste moves and two for the
+ * others.
+ */
+public class GameRecord {
+
+    /** The number of kinds of move. */
+    private static final int KINDS = Move.Kind.values().length;
+
+    /** The seed the game was dealt from. */
+    private long seed;
+
+    /** How the game ended. */
+    private GameOutcome outcome;
+
+    /** The moves made. */
+    private List<Move> moves;
+
+    /**
+     * Creates a new <code>GameRecord</code> instance.
+     * @param dealSeed the seed the game was dealt from
+     * @param result how the game ended
+     * @param movesMade the moves made, in order
+     */
+    public GameRecord(long dealSeed, GameOutcome result, List<Move> movesMade) {
+        seed = dealSeed;
+        outcome = result;
+        moves = movesMade;
+    }
+
+    /**
+     * Accesses the seed the game was dealt from.
+     * @return the seed.
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * Accesses how the game ended.
+     * @return the outcome.
+     */
+    public GameOutcome outcome() {
+        return outcome;
+    }
+
+    /**
+     * Accesses the moves made.
+     * @return the moves, in order.
+     */
+    public List<Move> moves() {
+        return moves;
+    }
+
+    /**
+     * Plays the game again on a board: deals the seed and makes the moves.
+     * @param board a board with the layout and rules the game was played by
+     */
+    public void replay(Board board) {
+        board.newGame(seed);
+        for (Move move : moves) {
+            board.apply(move);
+        }
+    }
+
+    /**
+     * Returns a one-line description of the game.
+     * @return the description.
+     */
+    @Override
+    public String toString() {
+        return "seed=" + seed + " " + outcome + " moves=" + moves.size();
+    }
+
+    /**
+     * Writes the record, its length first, at the position of a buffer.
+     * @param out the buffer; it must have room for <code>maxSize</code> bytes
+     * @param columns the number of tableau columns of the board
+     * @param foundations the number of foundations of the board
+     */
+    void writeTo(ByteBuffer out, int columns, int foundations) {
+        int body = 8 + 1 + varintSize(moves.size());
+        for (Move move : moves) {
+            body += varintSize(code(move, columns, foundations));
+        }
+        putVarint(out, body);
+        out.putLong(seed);
+        out.put((byte) outcome.ordinal());
+        putVarint(out, moves.size());
+        for (Move move : moves) {
+            putVarint(out, code(move, columns, foundations));
+        }
+    }
+
+    /**
+     * Works out the most bytes <code>writeTo</code> can take.
+     */
+    int maxSize() {
+        return 5 + 8 + 1 + 5 + 5 * moves.size();
+    }
+
+    /**
+     * Reads the body of a record, whose length has been read already.
+     * @param in the buffer, at the seed
+     * @param columns the number of tableau columns of the board
+     * @param foundations the number of foundations of the board
+     * @return the record.
+     */
+    static GameRecord readFrom(ByteBuffer in, int columns, int foundations) {
+        long seed = in.getLong();
+        GameOutcome outcome = GameOutcome.values()[in.get()];
+        int count = getVarint(in);
+        List<Move> moves = new ArrayList<Move>(count);
+        for (int k = 0; k < count; k++) {
+            moves.add(move(getVarint(in), columns, foundations));
+        }
+        return new GameRecord(seed, outcome, moves);
+    }
+
+    /**
+     * Packs a move into a number: the kind, plus six times what else is
+     * needed to make it again.
+     * @param move the move
+     * @param columns the number of tableau columns of the board
+     * @param foundations the number of foundations of the board
+     * @return the code, 0 or more.
+     */
+    static int code(Move move, int columns, int foundations) {
+        int detail;
+        switch (move.kind()) {
+            case TABLEAU_TO_TABLEAU:
+                detail = ((move.count() - 1) * columns + move.from()) * columns + move.to();
+                break;
+            case TABLEAU_TO_FOUNDATION:
+                detail = move.from() * foundations + move.to();
+                break;
+            case WASTE_TO_TABLEAU:
+            case WASTE_TO_FOUNDATION:
+                detail = move.to();
+                break;
+            default:
+                detail = move.count();
+                break;
+        }
+        return detail * KINDS + move.kind().ordinal();
+    }
+
+    /**
+     * Unpacks a move from its code.
+     * @param code the code made by <code>code</code>
+     * @param columns the number of tableau columns of the board
+     * @param foundations the number of foundations of the board
+     * @return the move.
+     */
+    static Move move(int code, int columns, int foundations) {
+        Move.Kind kind = Move.Kind.values()[code % KINDS];
+        int detail = code / KINDS;
+        switch (kind) {
+            case TABLEAU_TO_TABLEAU:
+                return new Move(kind, detail / columns % columns, detail % columns,
+                                detail / columns / columns + 1);
+            case TABLEAU_TO_FOUNDATION:
+                return new Move(kind, detail / foundations, detail % foundations, 1);
+            case WASTE_TO_TABLEAU:
+            case WASTE_TO_FOUNDATION:
+                return new Move(kind, -1, detail, 1);
+            default:
+                return new Move(kind, -1, -1, detail);
+        }
+    }
+
+    /**
+     * Writes a number of 0 or more as a varint.
+     */
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads a varint.
+     * @throws IllegalArgumentException if it is longer than an int
+     */
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    /**
+     * Works out the number of bytes of a varint.
+     */
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
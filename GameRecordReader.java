@@ -0,0 +1,274 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * GameRecordReader.java
+ *
+ * <code>GameRecordReader</code> reads back the <code>GameRecord</code>s
+ * a <code>GameRecordWriter</code> wrote to a directory, segment by
+ * segment in the order they were written.  Only a buffer's worth of a
+ * segment is in memory at a time, so any number of records can be read.
+ * A record cut short at the end of a segment, by a crash while it was
+ * written, is skipped.
+ */
+public class GameRecordReader implements Closeable {
+
+    /** The size of the buffer the segments are read through. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The segments, in order. */
+    private List<Path> segments;
+
+    /** The number of segments opened so far. */
+    private int opened;
+
+    /** The segment being read, or null between segments. */
+    private FileChannel channel;
+
+    /** Whether the whole segment has been read into the buffer. */
+    private boolean atEnd;
+
+    /** The bytes read from the segment and not yet used. */
+    private ByteBuffer buffer;
+
+    /** The number of tableau columns of the segment's boards. */
+    private int columns;
+
+    /** The number of foundations of the segment's boards. */
+    private int foundations;
+
+    /** The number of cards a draw turns over in the segment's games. */
+    private int drawCount;
+
+    /** The number of recycles allowed in the segment's games. */
+    private int recycleLimit;
+
+    /**
+     * Creates a new <code>GameRecordReader</code> instance.
+     * @param dir the directory of the segments
+     * @throws IOException if the directory cannot be listed
+     */
+    public GameRecordReader(Path dir) throws IOException {
+        segments = new ArrayList<Path>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "games-*.seg")) {
+            for (Path file : files) {
+                if (GameRecordWriter.segmentNumber(file) > 0) {
+                    segments.add(file);
+                }
+            }
+        }
+        Collections.sort(segments, new Comparator<Path>() {
+            public int compare(Path a, Path b) {
+                return Integer.compare(GameRecordWriter.segmentNumber(a),
+                                       GameRecordWriter.segmentNumber(b));
+            }
+        });
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.limit(0);
+    }
+
+    /**
+     * Counts the games of a directory of records.
+     * @param args "--dir=NAME" (default games) for the directory
+     * @throws IOException if the records cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get("games");
+        for (String arg : args) {
+            if (arg.startsWith("--dir=")) {
+                dir = Paths.get(arg.substring("--dir=".length()));
+            }
+        }
+        long games = 0;
+        long moves = 0;
+        long[] outcomes = new long[GameOutcome.values().length];
+        long start = System.nanoTime();
+        try (GameRecordReader in = new GameRecordReader(dir)) {
+            GameRecord record;
+            while ((record = in.read()) != null) {
+                games++;
+                moves += record.moves().size();
+                outcomes[record.outcome().ordinal()]++;
+            }
+        }
+        long bytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "games-*.seg")) {
+            for (Path file : files) {
+                bytes += Files.size(file);
+            }
+        }
+        System.out.println(games + " games, " + moves + " moves, " + bytes + " bytes, read in "
+            + (System.nanoTime() - start) / 1000000 + " ms");
+        for (GameOutcome outcome : GameOutcome.values()) {
+            System.out.println(outcome + ": " + outcomes[outcome.ordinal()]);
+        }
+    }
+
+    /**
+     * Reads the next record.
+     * @return the record, or null once every record has been read.
+     * @throws IOException if a segment cannot be read or is not one
+     */
+    public GameRecord read() throws IOException {
+        while (true) {
+            if (channel == null) {
+                if (opened == segments.size()) {
+                    return null;
+                }
+                openSegment(segments.get(opened++));
+                continue;
+            }
+            if (!fill(1)) {
+                closeSegment();
+                continue;
+            }
+            int length;
+            try {
+                fill(5);
+                length = GameRecord.getVarint(buffer);
+            } catch (BufferUnderflowException e) {
+                closeSegment();
+                continue;
+            }
+            if (!fill(length)) {
+                closeSegment();
+                continue;
+            }
+            int end = buffer.position() + length;
+            GameRecord record = GameRecord.readFrom(buffer, columns, foundations);
+            buffer.position(end);
+            return record;
+        }
+    }
+
+    /**
+     * Accesses the number of tableau columns of the boards of the last
+     * record read.
+     * @return the number of columns.
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Accesses the number of foundations of the boards of the last
+     * record read.
+     * @return the number of foundations.
+     */
+    public int foundations() {
+        return foundations;
+    }
+
+    /**
+     * Accesses the number of cards a draw turned over in the game of the
+     * last record read.
+     * @return the number of cards per draw.
+     */
+    public int drawCount() {
+        return drawCount;
+    }
+
+    /**
+     * Accesses the number of recycles allowed in the game of the last
+     * record read.
+     * @return the number of recycles, or <code>StockPile.UNLIMITED</code>.
+     */
+    public int recycleLimit() {
+        return recycleLimit;
+    }
+
+    /**
+     * Builds a board the game of the last record read can be replayed on:
+     * its layout and draw rules, with the other rules of Klondike.
+     * @return a new board with no listeners.
+     * @throws IllegalStateException if no record has been read
+     */
+    public SolitaireBoard newBoard() {
+        if (columns == 0) {
+            throw new IllegalStateException("No record has been read");
+        }
+        BoardGeometry layout = columns == BoardGeometry.STANDARD.columns()
+            && foundations == BoardGeometry.STANDARD.foundations()
+            ? BoardGeometry.STANDARD
+            : new BoardGeometry(columns, foundations, BoardGeometry.STANDARD.visibleRows());
+        return new SolitaireBoard(layout, RuleSet.KLONDIKE.withDrawRules(drawCount, recycleLimit),
+                                  foundations / SolitaireBoard.suits().length);
+    }
+
+    /**
+     * Closes the segment being read.
+     * @throws IOException if it cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            closeSegment();
+        }
+        opened = segments.size();
+    }
+
+    /**
+     * Opens a segment and reads its header.
+     */
+    private void openSegment(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        atEnd = false;
+        buffer.clear();
+        buffer.limit(0);
+        if (!fill(GameRecordWriter.HEADER_SIZE)) {
+            closeSegment();
+            return;
+        }
+        if (buffer.getLong() != GameRecordWriter.MAGIC
+            || buffer.getInt() != GameRecordWriter.VERSION) {
+            closeSegment();
+            throw new IOException(file + " is not a game record segment");
+        }
+        columns = buffer.getInt();
+        foundations = buffer.getInt();
+        drawCount = buffer.getInt();
+        recycleLimit = buffer.getInt();
+    }
+
+    /**
+     * Closes the segment being read.
+     */
+    private void closeSegment() throws IOException {
+        channel.close();
+        channel = null;
+    }
+
+    /**
+     * Reads more of the segment until the buffer holds a number of
+     * unused bytes, growing the buffer if it is too small.
+     * @return false if the segment ends first.
+     */
+    private boolean fill(int needed) throws IOException {
+        while (buffer.remaining() < needed && !atEnd) {
+            if (buffer.capacity() < needed) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            if (channel.read(buffer) < 0) {
+                atEnd = true;
+            }
+            buffer.flip();
+        }
+        return buffer.remaining() >= needed;
+    }
+}
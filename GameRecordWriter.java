@@ -0,0 +1,230 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * GameRecordWriter.java
+ *
+ * <code>GameRecordWriter</code> appends <code>GameRecord</code>s to the
+ * segment files of a directory.  Records are gathered in a buffer and
+ * written to the file when it fills, when <code>flush</code> is called
+ * and when the writer is closed.  Once a segment has grown past its size
+ * the next record goes to a new one, so old segments can be moved or
+ * deleted while the games go on.
+ * <p>
+ * Segments are named <code>games-000001.seg</code> and up, in the order
+ * they were written.  Each starts with a 28-byte header:
+ * <pre>
+ * bytes 0-7    the magic number "SOLGAMES"
+ * bytes 8-11   the version of the format
+ * bytes 12-15  the number of tableau columns
+ * bytes 16-19  the number of foundations
+ * bytes 20-23  the number of cards a draw turns over
+ * bytes 24-27  the number of recycles allowed
+ * </pre>
+ * followed by the records.  A writer never adds to a segment it did not
+ * start, so a record cut short by a crash is only ever at the end of a
+ * segment, where <code>GameRecordReader</code> skips it.
+ * <p>
+ * The methods are synchronized, so the boards of many threads can share
+ * a writer.
+ */
+public class GameRecordWriter implements Closeable {
+
+    /** The size a segment grows to before the next one is started. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    /** The size of the header of a segment. */
+    static final int HEADER_SIZE = 28;
+
+    /** The first eight bytes of a segment. */
+    static final long MAGIC = 0x534f4c47414d4553L; // "SOLGAMES"
+
+    /** The version of the format. */
+    static final int VERSION = 1;
+
+    /** The size of the buffer the records are gathered in. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The directory of the segments. */
+    private Path directory;
+
+    /** The number of tableau columns of the boards. */
+    private int columns;
+
+    /** The number of foundations of the boards. */
+    private int foundations;
+
+    /** The rules the games are played by. */
+    private RuleSet rules;
+
+    /** The size a segment grows to before the next one is started. */
+    private long segmentBytes;
+
+    /** The number of the segment being written. */
+    private int segment;
+
+    /** The segment being written. */
+    private FileChannel channel;
+
+    /** The size of the segment, buffered bytes included. */
+    private long size;
+
+    /** The records not yet written to the file. */
+    private ByteBuffer buffer;
+
+    /** The number of records written. */
+    private long records;
+
+    /**
+     * Creates a new <code>GameRecordWriter</code> instance, which starts
+     * a new segment after the last one in the directory.
+     * @param dir the directory of the segments; it is created if needed
+     * @param layout the layout of the boards the games are played on
+     * @param gameRules the rules the games are played by
+     * @param maxSegmentBytes the size a segment grows to before the next
+     *                        one is started
+     * @throws IOException if the directory or the segment cannot be written
+     */
+    public GameRecordWriter(Path dir, BoardGeometry layout, RuleSet gameRules,
+                            long maxSegmentBytes) throws IOException {
+        directory = dir;
+        columns = layout.columns();
+        foundations = layout.foundations();
+        rules = gameRules;
+        segmentBytes = maxSegmentBytes;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "games-*.seg")) {
+            for (Path file : files) {
+                segment = Math.max(segment, segmentNumber(file));
+            }
+        }
+        startSegment();
+    }
+
+    /**
+     * Creates a new <code>GameRecordWriter</code> instance with segments
+     * of <code>DEFAULT_SEGMENT_BYTES</code>.
+     * @param dir the directory of the segments; it is created if needed
+     * @param layout the layout of the boards the games are played on
+     * @param gameRules the rules the games are played by
+     * @throws IOException if the directory or the segment cannot be written
+     */
+    public GameRecordWriter(Path dir, BoardGeometry layout, RuleSet gameRules)
+        throws IOException {
+        this(dir, layout, gameRules, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Adds a record.
+     * @param record the game
+     * @throws IOException if the segment cannot be written
+     */
+    public synchronized void write(GameRecord record) throws IOException {
+        if (channel == null) {
+            throw new IOException("Game record writer is closed");
+        }
+        if (buffer.remaining() < record.maxSize()) {
+            writeBuffer();
+            if (buffer.capacity() < record.maxSize()) {
+                buffer = ByteBuffer.allocate(record.maxSize());
+            }
+        }
+        int start = buffer.position();
+        record.writeTo(buffer, columns, foundations);
+        size += buffer.position() - start;
+        records++;
+        if (size >= segmentBytes) {
+            writeBuffer();
+            channel.close();
+            startSegment();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     * @throws IOException if the segment cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (channel != null) {
+            writeBuffer();
+        }
+    }
+
+    /**
+     * Accesses the number of records added.
+     * @return the number of records.
+     */
+    public synchronized long records() {
+        return records;
+    }
+
+    /**
+     * Writes the buffered records and closes the segment.
+     * @throws IOException if the segment cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            writeBuffer();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Works out the name of a segment.
+     * @param number the number of the segment, from 1
+     * @return the file name.
+     */
+    static String segmentName(int number) {
+        return String.format("games-%06d.seg", number);
+    }
+
+    /**
+     * Reads the number of a segment from its name.
+     * @return the number, or 0 if the name is not that of a segment.
+     */
+    static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring("games-".length(),
+                                                   name.length() - ".seg".length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Starts the next segment and writes its header.
+     */
+    private void startSegment() throws IOException {
+        segment++;
+        channel = FileChannel.open(directory.resolve(segmentName(segment)),
+                                   StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        buffer.putLong(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(columns);
+        buffer.putInt(foundations);
+        buffer.putInt(rules.drawCount());
+        buffer.putInt(rules.recycleLimit());
+        size = HEADER_SIZE;
+    }
+
+    /**
+     * Writes the buffer out to the segment and empties it.
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
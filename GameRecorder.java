@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GameRecorder.java
+ *
+ * <code>GameRecorder</code> is a <code>GameListener</code> that keeps the
+ * moves of each game played on a board and, when the game ends, hands it
+ * to a <code>GameRecordWriter</code>.  A game the board was put back into
+ * from a snapshot is not recorded, since its first moves were not seen.
+ * A record that cannot be written is dropped; the game goes on.
+ */
+public class GameRecorder implements GameListener {
+
+    /** The writer the games are handed to. */
+    private GameRecordWriter writer;
+
+    /** The moves of the current game, or null if it is not recorded. */
+    private List<Move> moves;
+
+    /**
+     * Creates a new <code>GameRecorder</code> instance.  The game on the
+     * board is recorded if no move has been made in it yet.
+     * @param recordWriter the writer to hand the games to
+     * @param board the board the recorder is to be attached to
+     */
+    public GameRecorder(GameRecordWriter recordWriter, Board board) {
+        writer = recordWriter;
+        if (board.movesMade() == 0) {
+            moves = new ArrayList<Move>();
+        }
+    }
+
+    @Override
+    public void gameStarted(Board board) {
+        moves = new ArrayList<Move>();
+    }
+
+    @Override
+    public void moveApplied(Board board, Move move) {
+        if (moves == null) {
+            return;
+        }
+        if (board.movesMade() != moves.size() + 1) {
+            // The board was restored to another position.
+            moves = null;
+            return;
+        }
+        moves.add(move);
+    }
+
+    @Override
+    public void gameEnded(Board board, GameOutcome outcome) {
+        if (moves == null || board.movesMade() != moves.size()) {
+            return;
+        }
+        try {
+            writer.write(new GameRecord(board.seed(), outcome, moves));
+        } catch (IOException e) {
+            // Dropped; recording must not stop the game.
+        }
+        moves = null;
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GameReplay.java
+ *
+ * <code>GameReplay</code> steps a board through a recorded game.  It can
+ * go to any move of the game: while the game is opened a snapshot is
+ * taken every <code>SNAPSHOT_INTERVAL</code> moves, so going to a move
+ * restores the nearest snapshot before it and makes at most that many
+ * moves, however long the game.  Stepping forward makes one move.
+ */
+public class GameReplay {
+
+    /** The number of moves between snapshots. */
+    public static final int SNAPSHOT_INTERVAL = 16;
+
+    /** The board the game is replayed on. */
+    private Board board;
+
+    /** The game. */
+    private GameRecord record;
+
+    /** The snapshots; the k-th is taken after k * SNAPSHOT_INTERVAL moves. */
+    private List<byte[]> snapshots;
+
+    /** The number of moves of the game made on the board. */
+    private int position;
+
+    /**
+     * Creates a new <code>GameReplay</code> instance and puts the board at
+     * the start of the game.
+     * @param replayBoard the board to replay on, with the layout and rules
+     *                    the game was played by; its listeners are told of
+     *                    every move, so it should have none
+     * @param game the game
+     */
+    public GameReplay(Board replayBoard, GameRecord game) {
+        board = replayBoard;
+        record = game;
+        snapshots = new ArrayList<byte[]>();
+        board.newGame(game.seed());
+        List<Move> moves = game.moves();
+        for (int k = 0; k < moves.size(); k++) {
+            if (k % SNAPSHOT_INTERVAL == 0) {
+                snapshots.add(BoardSnapshot.encode(board));
+            }
+            board.apply(moves.get(k));
+        }
+        if (!snapshots.isEmpty()) {
+            BoardSnapshot.decode(snapshots.get(0), board);
+        }
+        position = 0;
+    }
+
+    /**
+     * Accesses the board the game is replayed on.
+     * @return the board.
+     */
+    public Board board() {
+        return board;
+    }
+
+    /**
+     * Accesses the game replayed.
+     * @return the record of the game.
+     */
+    public GameRecord record() {
+        return record;
+    }
+
+    /**
+     * Accesses the number of moves of the game made on the board.
+     * @return the position, from 0 to <code>length</code>.
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Accesses the number of moves of the game.
+     * @return the length of the game.
+     */
+    public int length() {
+        return record.moves().size();
+    }
+
+    /**
+     * Determines if every move of the game has been made.
+     * @return true at the end of the game; false otherwise.
+     */
+    public boolean atEnd() {
+        return position == length();
+    }
+
+    /**
+     * Makes the next move of the game.
+     * @return the move, or null at the end of the game.
+     */
+    public Move step() {
+        if (atEnd()) {
+            return null;
+        }
+        Move move = record.moves().get(position++);
+        board.apply(move);
+        return move;
+    }
+
+    /**
+     * Puts the board in the position after a number of moves of the game.
+     * @param moveNumber the number of moves; it is kept between 0 and
+     *                   <code>length</code>
+     */
+    public void seek(int moveNumber) {
+        int target = Math.max(0, Math.min(moveNumber, length()));
+        if (target < position || target - position > SNAPSHOT_INTERVAL) {
+            int k = Math.min(target / SNAPSHOT_INTERVAL, snapshots.size() - 1);
+            BoardSnapshot.decode(snapshots.get(k), board);
+            position = k * SNAPSHOT_INTERVAL;
+        }
+        while (position < target) {
+            step();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GameSession.java
+ *
+ * <code>GameSession</code> is one game hosted by a
+ * <code>SolitaireServer</code>: a board, the player's id for it, and the
+ * time it was last used.  Commands on a session are serialized by
+ * synchronizing on the session.  Once a session is closed its board
+ * belongs to someone else, and every command fails.
+ */
+public class GameSession {
+
+    /** The id of this session. */
+    private long id;
+
+    /** The board the game is played on; null once the session is closed. */
+    private SolitaireBoard board;
+
+    /** Counts the session's games for a player; null if no one is named. */
+    private StatsRecorder recorder;
+
+    /** The legal moves, reused between commands. */
+    private List<Move> moves;
+
+    /** When this session was last used (System.nanoTime). */
+    private volatile long lastUsed;
+
+    /**
+     * Whether the end of the current game has been reported.  A session
+     * starts out ended, so the deal made with the board is never counted;
+     * the first <code>newGame</code> starts the real game.
+     */
+    private boolean ended;
+
+    /**
+     * Creates a new <code>GameSession</code> instance.
+     * @param sessionId the id of the session
+     * @param gameBoard the board to play on
+     */
+    public GameSession(long sessionId, SolitaireBoard gameBoard) {
+        id = sessionId;
+        board = gameBoard;
+        moves = new ArrayList<Move>();
+        ended = true;
+        touch();
+    }
+
+    /**
+     * Accesses the id of this session.
+     * @return the session id.
+     */
+    public long id() {
+        return id;
+    }
+
+    /**
+     * Accesses the board of this session.  Callers must hold the lock of
+     * the session while they use it.
+     * @return the board, or null if the session is closed.
+     */
+    public SolitaireBoard board() {
+        return board;
+    }
+
+    /**
+     * Accesses the time this session was last used.
+     * @return the System.nanoTime of the last command.
+     */
+    public long lastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Marks this session as used now.
+     */
+    public void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * Deals a new game in this session.
+     * @param seed the seed to shuffle with, or null for a random deal
+     */
+    public synchronized void newGame(Long seed) {
+        checkOpen();
+        touch();
+        if (!ended) {
+            board.endGame(GameOutcome.STUCK);
+        }
+        if (seed == null) {
+            board.newGame();
+        } else {
+            board.newGame(seed);
+        }
+        ended = false;
+    }
+
+    /**
+     * Saves the current game.
+     * @return the snapshot, as written by <code>BoardSnapshot.encode</code>.
+     */
+    public synchronized byte[] snapshot() {
+        checkOpen();
+        touch();
+        return BoardSnapshot.encode(board);
+    }
+
+    /**
+     * Replaces the current game with a saved one.
+     * @param snapshot the snapshot, as written by <code>BoardSnapshot.encode</code>
+     * @throws IllegalArgumentException if the snapshot cannot be restored
+     */
+    public synchronized void restore(byte[] snapshot) {
+        checkOpen();
+        touch();
+        BoardSnapshot.decode(snapshot, board);
+        ended = false;
+    }
+
+    /**
+     * Lists the legal moves of the current position.
+     * @return the codes of the moves, separated by spaces.
+     */
+    public synchronized String legalMoves() {
+        checkOpen();
+        touch();
+        board.legalMoves(moves);
+        StringBuilder s = new StringBuilder();
+        for (Move move : moves) {
+            if (s.length() > 0) {
+                s.append(' ');
+            }
+            s.append(move.code());
+        }
+        return s.toString();
+    }
+
+    /**
+     * Makes a move if it is legal.
+     * @param wanted the move, as read by <code>Move.parse</code>
+     * @return true if the move was legal (and made); false otherwise.
+     */
+    public synchronized boolean play(Move wanted) {
+        checkOpen();
+        touch();
+        if (ended) {
+            return false;
+        }
+        board.legalMoves(moves);
+        for (Move move : moves) {
+            if (move.kind() == wanted.kind() && move.from() == wanted.from()
+                && move.to() == wanted.to()
+                && (wanted.count() == 0 || move.count() == wanted.count())) {
+                board.apply(move);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Works out how the current game stands, ending it if it is over.
+     * A game is lost when no move is left or it can no longer be won.
+     * @return "WON", "LOST" or "PLAYING".
+     */
+    public synchronized String status() {
+        checkOpen();
+        if (board.gameIsWon()) {
+            end(GameOutcome.WON);
+            return GameOutcome.WON.name();
+        }
+        board.legalMoves(moves);
+        if (moves.isEmpty() || board.isDeadEnd()) {
+            end(GameOutcome.LOST);
+            return GameOutcome.LOST.name();
+        }
+        return "PLAYING";
+    }
+
+    /**
+     * Counts the games of this session, from the current one on, in a
+     * player's record instead of the record counted so far.
+     * @param playerRecorder counts the games for the player
+     */
+    public synchronized void countFor(StatsRecorder playerRecorder) {
+        checkOpen();
+        if (recorder != null) {
+            board.removeGameListener(recorder);
+        }
+        recorder = playerRecorder;
+        board.addGameListener(recorder);
+    }
+
+    /**
+     * Accesses the number of moves made in the current game.
+     * @return the number of moves made.
+     */
+    public synchronized int movesMade() {
+        checkOpen();
+        return board.movesMade();
+    }
+
+    /**
+     * Ends the current game, unless it has already ended or the session
+     * is closed.
+     * @param outcome how the game ended
+     */
+    public synchronized void end(GameOutcome outcome) {
+        if (!ended && board != null) {
+            ended = true;
+            board.endGame(outcome);
+        }
+    }
+
+    /**
+     * Describes the position for a client on one line: the stock size,
+     * the waste top, the foundation tops and the columns, with face-down
+     * cards shown as "#".
+     * @return the description.
+     */
+    public synchronized String describe() {
+        checkOpen();
+        touch();
+        StringBuilder s = new StringBuilder();
+        s.append("stock=").append(board.deckSize());
+        s.append(" waste=").append(code(board.dCardAt()));
+        s.append(" foundations=");
+        for (int f = 0; f < board.foundationCount(); f++) {
+            if (f > 0) {
+                s.append(',');
+            }
+            s.append(code(board.fCardAt(f)));
+        }
+        for (int c = 0; c < board.tabColSize(); c++) {
+            s.append(" t").append(c).append('=');
+            for (int k = 0; k < board.faceDownCount(c); k++) {
+                s.append('#');
+            }
+            int bottom = board.tabRowSize() - 1;
+            for (int r = bottom; r >= board.topRow(c); r--) {
+                if (r < bottom) {
+                    s.append(',');
+                }
+                s.append(board.tabCardAt(r, c).code());
+            }
+        }
+        return s.toString();
+    }
+
+    /**
+     * Closes this session, ending its game, and hands back its board.
+     * @return the board, now owned by the caller; null if the session
+     *         was already closed.
+     */
+    public synchronized SolitaireBoard close() {
+        end(GameOutcome.STUCK);
+        SolitaireBoard gameBoard = board;
+        board = null;
+        return gameBoard;
+    }
+
+    /**
+     * Fails if this session has been closed.
+     */
+    private void checkOpen() {
+        if (board == null) {
+            throw new IllegalArgumentException("session " + id + " is closed");
+        }
+    }
+
+    /**
+     * Accesses the code of a card, or "-" for no card.
+     */
+    private static String code(Card card) {
+        return card == null ? "-" : card.code();
+    }
+}
@@ -0,0 +1,47 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event covering one game, from the deal to its end.
+ * Only games longer than the threshold are recorded; it can be changed in
+ * the recording settings like that of any JFR event.
+ */
+@Name("solitaire.Game")
+@Label("Game")
+@Category("Solitaire")
+@Description("A game of solitaire, from the deal to its end")
+@StackTrace(false)
+@Threshold("10 ms")
+public class JfrGameEvent extends Event {
+
+    @Label("Seed")
+    @Description("The seed the deck was shuffled with")
+    long seed;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Moves")
+    int moves;
+
+    /**
+     * Ends the event and records it if it is enabled and slow enough.
+     * @param deckSeed the seed the deck was shuffled with
+     * @param gameOutcome how the game ended
+     * @param movesMade the number of moves made in the game
+     */
+    public void finish(long deckSeed, GameOutcome gameOutcome, int movesMade) {
+        end();
+        if (shouldCommit()) {
+            seed = deckSeed;
+            outcome = gameOutcome.name();
+            moves = movesMade;
+            commit();
+        }
+    }
+}
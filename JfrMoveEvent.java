@@ -0,0 +1,48 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for one move applied to a board.
+ * Only moves slower than the threshold are recorded.
+ */
+@Name("solitaire.Move")
+@Label("Move")
+@Category("Solitaire")
+@StackTrace(false)
+@Threshold("1 ms")
+public class JfrMoveEvent extends Event {
+
+    @Label("Kind")
+    String kind;
+
+    @Label("From")
+    int from;
+
+    @Label("To")
+    int to;
+
+    @Label("Cards")
+    int count;
+
+    /**
+     * Ends the event and records it if it is enabled and slow enough.
+     * @param moveKind the kind of move
+     * @param fromIndex the column the cards came from, or -1
+     * @param toIndex the column or foundation pile the cards went to, or -1
+     * @param cardCount the number of cards moved
+     */
+    public void finish(Move.Kind moveKind, int fromIndex, int toIndex, int cardCount) {
+        end();
+        if (shouldCommit()) {
+            kind = moveKind.name();
+            from = fromIndex;
+            to = toIndex;
+            count = cardCount;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for one scan of a board for legal moves, such as
+ * <code>anotherPlayIsPossible</code> or <code>findStackingMove</code>.
+ * Only scans slower than the threshold are recorded.
+ */
+@Name("solitaire.MoveScan")
+@Label("Legal Move Scan")
+@Category("Solitaire")
+@StackTrace(false)
+@Threshold("100 us")
+public class JfrScanEvent extends Event {
+
+    @Label("Scan")
+    String scan;
+
+    @Label("Cards Scanned")
+    int cards;
+
+    @Label("Move Found")
+    boolean found;
+
+    /**
+     * Ends the event and records it if it is enabled and slow enough.
+     * @param scanName the name of the scan
+     * @param cardsScanned the number of cards looked at
+     * @param moveFound whether a legal move was found
+     */
+    public void finish(String scanName, int cardsScanned, boolean moveFound) {
+        end();
+        if (shouldCommit()) {
+            scan = scanName;
+            cards = cardsScanned;
+            found = moveFound;
+            commit();
+        }
+    }
+}
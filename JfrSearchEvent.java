@@ -0,0 +1,47 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for one search over the moves of a board, such
+ * as a solver deciding whether a deal can be won.
+ * Only searches slower than the threshold are recorded.
+ */
+@Name("solitaire.Search")
+@Label("Solver Search")
+@Category("Solitaire")
+@Threshold("10 ms")
+public class JfrSearchEvent extends Event {
+
+    @Label("Seed")
+    long seed;
+
+    @Label("Nodes Expanded")
+    long nodes;
+
+    @Label("Deepest Line")
+    int depth;
+
+    @Label("Result")
+    String result;
+
+    /**
+     * Ends the event and records it if it is enabled and slow enough.
+     * @param deckSeed the seed of the deal searched
+     * @param nodesExpanded the number of positions expanded
+     * @param maxDepth the length of the longest line searched
+     * @param searchResult what the search found
+     */
+    public void finish(long deckSeed, long nodesExpanded, int maxDepth, String searchResult) {
+        end();
+        if (shouldCommit()) {
+            seed = deckSeed;
+            nodes = nodesExpanded;
+            depth = maxDepth;
+            result = searchResult;
+            commit();
+        }
+    }
+}
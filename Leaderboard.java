@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leaderboard.java
+ *
+ * <code>Leaderboard</code> keeps the players in rank order as their
+ * records change: most wins first, then fewest games, then by name.
+ * Each change moves one entry in a concurrent skip list, so reading the
+ * top N never sorts and neither reading nor updating takes a lock.
+ */
+public class Leaderboard {
+
+    /** The players' entries in rank order. */
+    private ConcurrentSkipListSet<Entry> ranking;
+
+    /** Numbers the entries, so two entries are never equal. */
+    private AtomicLong nextEntry;
+
+    /**
+     * Creates a new, empty <code>Leaderboard</code> instance.
+     */
+    public Leaderboard() {
+        ranking = new ConcurrentSkipListSet<Entry>();
+        nextEntry = new AtomicLong();
+    }
+
+    /**
+     * Moves a player to the place the player's record now earns.
+     * @param player the player whose record has changed
+     */
+    public void update(PlayerStats player) {
+        while (true) {
+            Entry old = player.standing.get();
+            Entry entry = new Entry(player, nextEntry.getAndIncrement());
+            if (player.standing.compareAndSet(old, entry)) {
+                ranking.add(entry);
+                if (old != null) {
+                    ranking.remove(old);
+                }
+                // A later update may have tried to remove this entry before
+                // it was added; it is stale, so take it out again.
+                if (player.standing.get() != entry) {
+                    ranking.remove(entry);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lists the best players.
+     * @param n the largest number of players to list
+     * @return the players, best first.
+     */
+    public List<PlayerStats> top(int n) {
+        List<PlayerStats> players = new ArrayList<PlayerStats>(Math.max(0, Math.min(n, 64)));
+        Iterator<Entry> entries = ranking.iterator();
+        while (players.size() < n && entries.hasNext()) {
+            players.add(entries.next().player);
+        }
+        return players;
+    }
+
+    /**
+     * A player's place: the record it was ranked by when it was made.
+     */
+    static class Entry implements Comparable<Entry> {
+
+        /** The player. */
+        final PlayerStats player;
+
+        /** The player's wins when the entry was made. */
+        final long wins;
+
+        /** The player's games when the entry was made. */
+        final long games;
+
+        /** Sets apart entries with the same record. */
+        final long serial;
+
+        Entry(PlayerStats stats, long serialNumber) {
+            player = stats;
+            wins = stats.wins();
+            games = stats.games();
+            serial = serialNumber;
+        }
+
+        public int compareTo(Entry other) {
+            if (wins != other.wins) {
+                return wins > other.wins ? -1 : 1;
+            }
+            if (games != other.games) {
+                return games < other.games ? -1 : 1;
+            }
+            int byName = player.name().compareTo(other.player.name());
+            if (byName != 0) {
+                return byName;
+            }
+            return Long.compare(serial, other.serial);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Move.java
+ *
+ * <code>Move</code> represents one play made on a <code>Board</code>.
+ * Tableau columns and foundation piles are identified by their index.
+ */
+public class Move {
+
+    /**
+     * The kinds of play.
+     */
+    public enum Kind {
+        /** Cards moved from one tableau column to another. */
+        TABLEAU_TO_TABLEAU,
+        /** The top card of a tableau column moved to a foundation pile. */
+        TABLEAU_TO_FOUNDATION,
+        /** The top card of the waste moved to a tableau column. */
+        WASTE_TO_TABLEAU,
+        /** The top card of the waste moved to a foundation pile. */
+        WASTE_TO_FOUNDATION,
+        /** Cards dealt from the stock to the waste. */
+        DRAW,
+        /** The waste turned over to form a new stock. */
+        RECYCLE
+    }
+
+    /** The kind of play. */
+    private Kind kind;
+
+    /** The column the cards come from, or -1 if they do not come from the tableau. */
+    private int from;
+
+    /** The column or foundation pile the cards go to, or -1 for the waste. */
+    private int to;
+
+    /** The number of cards moved. */
+    private int count;
+
+    /**
+     * Creates a new <code>Move</code> instance.
+     *
+     * @param moveKind the kind of play
+     * @param fromIndex the column the cards come from, or -1
+     * @param toIndex the column or foundation pile the cards go to, or -1
+     * @param cardCount the number of cards moved
+     */
+    public Move(Kind moveKind, int fromIndex, int toIndex, int cardCount) {
+        kind = moveKind;
+        from = fromIndex;
+        to = toIndex;
+        count = cardCount;
+    }
+
+    /**
+     * Accesses this <code>Move's</code> kind.
+     * @return this <code>Move's</code> kind.
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Accesses the column the cards come from.
+     * @return the source column, or -1 if the cards do not come from the tableau.
+     */
+    public int from() {
+        return from;
+    }
+
+    /**
+     * Accesses the column or foundation pile the cards go to.
+     * @return the destination index, or -1 for the waste.
+     */
+    public int to() {
+        return to;
+    }
+
+    /**
+     * Accesses the number of cards moved.
+     * @return the number of cards moved.
+     */
+    public int count() {
+        return count;
+    }
+
+    /** Compare this move with the argument.
+     * @param otherMove the other move to compare to this
+     * @return true if the kind, source, destination and card count
+     *              of this move are equal to those of the argument;
+     *         false otherwise.
+     */
+    public boolean matches(Move otherMove) {
+        return otherMove.kind() == kind
+            && otherMove.from() == from
+            && otherMove.to() == to
+            && otherMove.count() == count;
+    }
+
+    /**
+     * Converts the move into a short code that <code>parse</code> reads
+     * back: "t2>t5*3" for 3 cards from column 2 to column 5, "t2>f0",
+     * "w>t3", "w>f1", "draw" and "recycle".
+     *
+     * @return the code of this move.
+     */
+    public String code() {
+        switch (kind) {
+            case TABLEAU_TO_TABLEAU:
+                return "t" + from + ">t" + to + "*" + count;
+            case TABLEAU_TO_FOUNDATION:
+                return "t" + from + ">f" + to;
+            case WASTE_TO_TABLEAU:
+                return "w>t" + to;
+            case WASTE_TO_FOUNDATION:
+                return "w>f" + to;
+            case RECYCLE:
+                return "recycle";
+            default:
+                return "draw";
+        }
+    }
+
+    /**
+     * Reads a move written by <code>code</code>.  Draws and recycles read
+     * back with a card count of 0, since the board decides how many cards
+     * they move; a count of 0 on a tableau move also means "unknown".
+     *
+     * @param text the code of the move
+     * @return the move.
+     * @throws IllegalArgumentException if the text is not a move code
+     */
+    public static Move parse(String text) {
+        String code = text.trim();
+        try {
+            if (code.equals("draw")) {
+                return new Move(Kind.DRAW, -1, -1, 0);
+            } else if (code.equals("recycle")) {
+                return new Move(Kind.RECYCLE, -1, -1, 0);
+            }
+            int arrow = code.indexOf('>');
+            String source = code.substring(0, arrow);
+            String target = code.substring(arrow + 1);
+            int star = target.indexOf('*');
+            int count = 1;
+            if (star >= 0) {
+                count = Integer.parseInt(target.substring(star + 1));
+                target = target.substring(0, star);
+            }
+            int to = Integer.parseInt(target.substring(1));
+            boolean toTableau = target.charAt(0) == 't';
+            if (!toTableau && target.charAt(0) != 'f') {
+                throw new IllegalArgumentException("Not a move: " + text);
+            }
+            if (source.equals("w")) {
+                return new Move(toTableau ? Kind.WASTE_TO_TABLEAU : Kind.WASTE_TO_FOUNDATION,
+                                -1, to, 1);
+            } else if (source.charAt(0) == 't') {
+                int from = Integer.parseInt(source.substring(1));
+                return toTableau
+                    ? new Move(Kind.TABLEAU_TO_TABLEAU, from, to, star >= 0 ? count : 0)
+                    : new Move(Kind.TABLEAU_TO_FOUNDATION, from, to, 1);
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Not a move: " + text, e);
+        }
+        throw new IllegalArgumentException("Not a move: " + text);
+    }
+
+    /**
+     * Converts the move into a string such as "tableau 2 -> tableau 5 (3 cards)".
+     *
+     * @return a <code>String</code> describing the move.
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case TABLEAU_TO_TABLEAU:
+                return "tableau " + from + " -> tableau " + to + " (" + count
+                    + (count == 1 ? " card)" : " cards)");
+            case TABLEAU_TO_FOUNDATION:
+                return "tableau " + from + " -> foundation " + to;
+            case WASTE_TO_TABLEAU:
+                return "waste -> tableau " + to;
+            case WASTE_TO_FOUNDATION:
+                return "waste -> foundation " + to;
+            case RECYCLE:
+                return "waste -> stock (" + count + " cards)";
+            default:
+                return "stock -> waste" + (count == 1 ? "" : " (" + count + " cards)");
+        }
+    }
+}
@@ -0,0 +1,330 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MoveOrdering.java
+ *
+ * <code>MoveOrdering</code> decides the order in which a search tries the
+ * moves at a position.  Each move gets a score; the higher the score, the
+ * sooner it is tried.  The score has two parts.
+ * <p>
+ * The static part comes from the kind of move: a card to a foundation
+ * (low cards first), a run that turns a face-down card over (more
+ * face-down cards below first), a king to an empty column, a column
+ * emptied, a waste card to the tableau, then drawing and turning the
+ * waste over.  A run moved from one face-up card to another is given
+ * <code>SKIP</code> unless it uncovers a card that can go to a
+ * foundation, since it changes nothing else.
+ * <p>
+ * The learned part comes from the search.  When a move leads to the
+ * most progress (cards to the foundations and cards turned over) of all
+ * the moves at a position, the search calls <code>reward</code>.  The
+ * move is then the killer move of its depth, tried early at the other
+ * positions of that depth, and its history count grows, so it is tried
+ * early wherever it is legal.  Moves are told apart by the card moved and
+ * the card or pile it goes to, so the same play is recognized in any
+ * position.  The learned part never lifts a move above one with a better
+ * static priority.
+ */
+public class MoveOrdering {
+
+    /** How the moves are ordered. */
+    public enum Mode {
+        /** In the order <code>Board.legalMoves</code> lists them. */
+        SCAN,
+        /** By the static priorities only. */
+        STATIC,
+        /** By the static priorities, then the killer moves and history. */
+        LEARNED
+    }
+
+    /** The score of a move not worth trying. */
+    public static final int SKIP = Integer.MIN_VALUE;
+
+    /** The static score of a card to a foundation. */
+    static final int FOUNDATION = 7000;
+
+    /** The static score of a run that turns a face-down card over. */
+    static final int REVEAL = 6000;
+
+    /** The static score of a king, or a run under one, to an empty column. */
+    static final int KING_TO_EMPTY = 5000;
+
+    /** The static score of a run that empties a column or frees a card for a foundation. */
+    static final int FREE = 4000;
+
+    /** The static score of a waste card to the tableau. */
+    static final int WASTE_TO_TABLEAU = 3000;
+
+    /** The static score of drawing. */
+    static final int DRAW = 2000;
+
+    /** The static score of turning the waste over. */
+    static final int RECYCLE = 1000;
+
+    /**
+     * The most the learned part adds: less than the gap between static
+     * scores, less what a static score adds within its kind.
+     */
+    static final int LEARNED_RANGE = 900;
+
+    /** What the killer move of a depth adds. */
+    private static final int KILLER = 500;
+
+    /** What the second killer move of a depth adds. */
+    private static final int SECOND_KILLER = 250;
+
+    /** The history count at which every count is halved. */
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    /** The board the moves are made on. */
+    private Board board;
+
+    /** How the moves are ordered. */
+    private Mode mode;
+
+    /** The number of targets a card can be moved to, for the move keys. */
+    private int targets;
+
+    /** How often each move has been rewarded, by move key. */
+    private int[] history;
+
+    /** The largest history count, which scales the others. */
+    private int maxHistory;
+
+    /** The two killer move keys of each depth, -1 for none. */
+    private int[] killers;
+
+    /** The scores of the moves being ordered. */
+    private int[] scores;
+
+    /**
+     * Creates a new <code>MoveOrdering</code> instance.
+     * @param gameBoard the board the moves are made on
+     * @param orderMode how the moves are ordered
+     */
+    public MoveOrdering(Board gameBoard, Mode orderMode) {
+        board = gameBoard;
+        mode = orderMode;
+        targets = board.cardCount() + 2;
+        history = new int[(board.cardCount() + 1) * targets];
+        killers = new int[64];
+        scores = new int[64];
+        clear();
+    }
+
+    /**
+     * Accesses how the moves are ordered.
+     * @return the mode.
+     */
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Forgets what was learned, for a search from a new position.
+     */
+    public void clear() {
+        Arrays.fill(history, 0);
+        Arrays.fill(killers, -1);
+        maxHistory = 0;
+    }
+
+    /**
+     * Scores a move at the position on the board.
+     * @param move a legal move
+     * @param depth the number of moves made since the search started
+     * @return the score, higher for moves to try sooner, or
+     *         <code>SKIP</code> for a move not worth trying.
+     */
+    public int score(Move move, int depth) {
+        int base = staticScore(move);
+        if (base == SKIP || mode == Mode.SCAN) {
+            return base == SKIP ? SKIP : 0;
+        }
+        if (mode == Mode.STATIC) {
+            return base;
+        }
+        return base + learnedScore(keyOf(move), depth);
+    }
+
+    /**
+     * Puts the moves worth trying in the order to try them, best first.
+     * Moves of the same score keep their order.  Of moves that put the
+     * same card on different empty foundations, only the first is kept.
+     * @param legal the legal moves at the position on the board
+     * @param depth the number of moves made since the search started
+     * @param into the list to put the moves in; it is cleared first
+     * @return the list.
+     */
+    public List<Move> order(List<Move> legal, int depth, List<Move> into) {
+        into.clear();
+        if (scores.length < legal.size()) {
+            scores = new int[legal.size() * 2];
+        }
+        int lastFoundationSource = Integer.MIN_VALUE;
+        for (Move move : legal) {
+            boolean toFoundation = move.kind() == Move.Kind.TABLEAU_TO_FOUNDATION
+                || move.kind() == Move.Kind.WASTE_TO_FOUNDATION;
+            if (toFoundation) {
+                // Every empty foundation takes the same ace; one will do.
+                if (move.from() == lastFoundationSource) {
+                    continue;
+                }
+                lastFoundationSource = move.from();
+            }
+            int score = score(move, depth);
+            if (score == SKIP) {
+                continue;
+            }
+            // Insertion sort: there are seldom more than a few dozen moves.
+            int k = into.size();
+            into.add(move);
+            while (k > 0 && scores[k - 1] < score) {
+                into.set(k, into.get(k - 1));
+                scores[k] = scores[k - 1];
+                k--;
+            }
+            into.set(k, move);
+            scores[k] = score;
+        }
+        return into;
+    }
+
+    /**
+     * Records that a move led to the most progress of the moves tried at
+     * a position.  The board must be in the position the move was made
+     * from.  Does nothing unless the mode is <code>LEARNED</code>.
+     * @param move the move
+     * @param depth the number of moves made since the search started
+     * @param gain how much progress the move led to
+     */
+    public void reward(Move move, int depth, int gain) {
+        if (mode != Mode.LEARNED || gain <= 0) {
+            return;
+        }
+        int key = keyOf(move);
+        history[key] += gain * gain;
+        maxHistory = Math.max(maxHistory, history[key]);
+        if (maxHistory > HISTORY_LIMIT) {
+            for (int k = 0; k < history.length; k++) {
+                history[k] >>= 1;
+            }
+            maxHistory >>= 1;
+        }
+        if (depth * 2 + 1 >= killers.length) {
+            int old = killers.length;
+            killers = Arrays.copyOf(killers, Math.max(old * 2, depth * 2 + 2));
+            Arrays.fill(killers, old, killers.length, -1);
+        }
+        if (killers[depth * 2] != key) {
+            killers[depth * 2 + 1] = killers[depth * 2];
+            killers[depth * 2] = key;
+        }
+    }
+
+    /**
+     * Scores a move by its kind alone.
+     */
+    private int staticScore(Move move) {
+        switch (move.kind()) {
+            case TABLEAU_TO_FOUNDATION:
+            case WASTE_TO_FOUNDATION:
+                return FOUNDATION - board.fPileSize(move.to());
+            case TABLEAU_TO_TABLEAU: {
+                int c = move.from();
+                CardStack column = board.column(c);
+                int k = column.size() - move.count();
+                int faceDown = board.faceDownCount(c);
+                if (k == faceDown) {
+                    if (k > 0) {
+                        return REVEAL + faceDown;
+                    }
+                    return board.column(move.to()).isEmpty() ? KING_TO_EMPTY : FREE;
+                }
+                Card under = column.get(k - 1);
+                for (int f = 0; f < board.foundationCount(); f++) {
+                    if (board.canFound(under, f)) {
+                        return FREE;
+                    }
+                }
+                return SKIP;
+            }
+            case WASTE_TO_TABLEAU:
+                return board.column(move.to()).isEmpty() ? KING_TO_EMPTY : WASTE_TO_TABLEAU;
+            case DRAW:
+                return DRAW;
+            default:
+                return RECYCLE;
+        }
+    }
+
+    /**
+     * Scores a move by what the search has learned, from 0 to
+     * <code>LEARNED_RANGE</code>.
+     */
+    private int learnedScore(int key, int depth) {
+        int score = 0;
+        if (depth * 2 + 1 < killers.length) {
+            if (killers[depth * 2] == key) {
+                score += KILLER;
+            } else if (killers[depth * 2 + 1] == key) {
+                score += SECOND_KILLER;
+            }
+        }
+        if (maxHistory > 0) {
+            score += (int) ((long) history[key] * (LEARNED_RANGE - KILLER) / maxHistory);
+        }
+        return score;
+    }
+
+    /**
+     * Works out the key of a move at the position on the board: the card
+     * moved and the card it goes on, an empty column or a foundation.
+     * Drawing and turning the waste over have keys of their own.
+     */
+    private int keyOf(Move move) {
+        int empty = targets - 2;
+        int foundation = targets - 1;
+        int moving;
+        int target;
+        switch (move.kind()) {
+            case TABLEAU_TO_TABLEAU: {
+                CardStack column = board.column(move.from());
+                moving = column.get(column.size() - move.count()).id();
+                target = topId(move.to(), empty);
+                break;
+            }
+            case TABLEAU_TO_FOUNDATION:
+                moving = board.column(move.from()).peek().id();
+                target = foundation;
+                break;
+            case WASTE_TO_TABLEAU:
+                moving = board.dCardAt().id();
+                target = topId(move.to(), empty);
+                break;
+            case WASTE_TO_FOUNDATION:
+                moving = board.dCardAt().id();
+                target = foundation;
+                break;
+            case DRAW:
+                moving = board.cardCount();
+                target = 0;
+                break;
+            default:
+                moving = board.cardCount();
+                target = 1;
+                break;
+        }
+        return moving * targets + target;
+    }
+
+    /**
+     * Gives the id of the top card of a column, or a stand-in for an
+     * empty column.
+     */
+    private int topId(int c, int empty) {
+        Card top = board.column(c).peek();
+        return top == null ? empty : top.id();
+    }
+}
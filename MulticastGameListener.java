@@ -0,0 +1,90 @@
+/**
+ * This class forwards every event to several <code>GameListener</code>s.
+ * A <code>Board</code> uses it once a second listener is attached.
+ */
+public class MulticastGameListener implements GameListener {
+
+    /** The listeners, in the order they were added. */
+    private GameListener[] listeners;
+
+    /**
+     * Creates a new <code>MulticastGameListener</code> instance.
+     * @param first the first listener
+     * @param second the second listener
+     */
+    public MulticastGameListener(GameListener first, GameListener second) {
+        listeners = new GameListener[] {first, second};
+    }
+
+    /**
+     * Adds a listener.
+     * @param listener the listener to add
+     */
+    public void add(GameListener listener) {
+        GameListener[] more = new GameListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, more, 0, listeners.length);
+        more[listeners.length] = listener;
+        listeners = more;
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener the listener to remove
+     * @return the listener that should replace this one: null if none is
+     *         left, the remaining listener if only one is left, or this.
+     */
+    public GameListener remove(GameListener listener) {
+        int n = 0;
+        GameListener[] fewer = new GameListener[listeners.length];
+        for (GameListener l : listeners) {
+            if (l != listener) {
+                fewer[n] = l;
+                n++;
+            }
+        }
+        if (n == 0) {
+            return null;
+        } else if (n == 1) {
+            return fewer[0];
+        }
+        listeners = new GameListener[n];
+        System.arraycopy(fewer, 0, listeners, 0, n);
+        return this;
+    }
+
+    public void gameStarted(Board board) {
+        for (GameListener l : listeners) {
+            l.gameStarted(board);
+        }
+    }
+
+    public void cardDealt(Board board, Card card, int column) {
+        for (GameListener l : listeners) {
+            l.cardDealt(board, card, column);
+        }
+    }
+
+    public void moveApplied(Board board, Move move) {
+        for (GameListener l : listeners) {
+            l.moveApplied(board, move);
+        }
+    }
+
+    public void movesScanned(Board board, long nanos) {
+        for (GameListener l : listeners) {
+            l.movesScanned(board, nanos);
+        }
+    }
+
+    public void gameEnded(Board board, GameOutcome outcome) {
+        for (GameListener l : listeners) {
+            l.gameEnded(board, outcome);
+        }
+    }
+
+    public void nodeExpanded(Board board, int depth) {
+        for (GameListener l : listeners) {
+            l.nodeExpanded(board, depth);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PlayerStats.java
+ *
+ * <code>PlayerStats</code> is the record of one player: games, wins,
+ * the current and the longest winning streak, and the quickest and the
+ * shortest won game.  Every figure is a lock-free accumulator, so games
+ * ending on several threads can update the same player without waiting.
+ * Only games that were won or lost are counted; a game given up is not.
+ */
+public class PlayerStats {
+
+    /** The name of the player. */
+    private String name;
+
+    /** The number of games won or lost. */
+    private LongAdder games;
+
+    /** The number of games won. */
+    private LongAdder wins;
+
+    /** The number of games won since the last loss. */
+    private AtomicInteger streak;
+
+    /** The longest winning streak. */
+    private AtomicInteger bestStreak;
+
+    /** The quickest win in milliseconds, or Long.MAX_VALUE before the first win. */
+    private AtomicLong bestMillis;
+
+    /** The fewest moves in a win, or Integer.MAX_VALUE before the first win. */
+    private AtomicInteger fewestMoves;
+
+    /** The player's place on the leaderboard; kept by <code>Leaderboard</code>. */
+    final AtomicReference<Leaderboard.Entry> standing;
+
+    /**
+     * Creates a new <code>PlayerStats</code> instance for a player with no
+     * games.
+     * @param playerName the name of the player
+     */
+    public PlayerStats(String playerName) {
+        name = playerName;
+        games = new LongAdder();
+        wins = new LongAdder();
+        streak = new AtomicInteger();
+        bestStreak = new AtomicInteger();
+        bestMillis = new AtomicLong(Long.MAX_VALUE);
+        fewestMoves = new AtomicInteger(Integer.MAX_VALUE);
+        standing = new AtomicReference<Leaderboard.Entry>();
+    }
+
+    /**
+     * Accesses the name of the player.
+     * @return the name.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Accesses the number of games won or lost.
+     * @return the number of games.
+     */
+    public long games() {
+        return games.sum();
+    }
+
+    /**
+     * Accesses the number of games won.
+     * @return the number of wins.
+     */
+    public long wins() {
+        return wins.sum();
+    }
+
+    /**
+     * Accesses the number of games won since the last loss.
+     * @return the current streak.
+     */
+    public int streak() {
+        return streak.get();
+    }
+
+    /**
+     * Accesses the longest winning streak.
+     * @return the longest streak.
+     */
+    public int bestStreak() {
+        return bestStreak.get();
+    }
+
+    /**
+     * Accesses the time of the quickest win.
+     * @return the time in milliseconds, or -1 if no game has been won.
+     */
+    public long bestMillis() {
+        long millis = bestMillis.get();
+        return millis == Long.MAX_VALUE ? -1 : millis;
+    }
+
+    /**
+     * Accesses the number of moves of the shortest win.
+     * @return the number of moves, or -1 if no game has been won.
+     */
+    public int fewestMoves() {
+        int moves = fewestMoves.get();
+        return moves == Integer.MAX_VALUE ? -1 : moves;
+    }
+
+    /**
+     * Counts a finished game.
+     * @param won true if the game was won; false if it was lost
+     * @param millis how long the game took
+     * @param moves the number of moves made
+     */
+    public void record(boolean won, long millis, int moves) {
+        games.increment();
+        if (!won) {
+            streak.set(0);
+            return;
+        }
+        wins.increment();
+        bestStreak.accumulateAndGet(streak.incrementAndGet(), Math::max);
+        bestMillis.accumulateAndGet(millis, Math::min);
+        fewestMoves.accumulateAndGet(moves, Math::min);
+    }
+
+    /**
+     * Sets every figure, for a record read back from a snapshot.  The
+     * player must not be in use yet.
+     */
+    void load(long gameCount, long winCount, int currentStreak, int longestStreak,
+              long quickestMillis, int shortestMoves) {
+        games.reset();
+        games.add(gameCount);
+        wins.reset();
+        wins.add(winCount);
+        streak.set(currentStreak);
+        bestStreak.set(longestStreak);
+        bestMillis.set(quickestMillis < 0 ? Long.MAX_VALUE : quickestMillis);
+        fewestMoves.set(shortestMoves < 0 ? Integer.MAX_VALUE : shortestMoves);
+    }
+
+    /**
+     * Returns a one-line summary of the record.
+     * @return the summary.
+     */
+    @Override
+    public String toString() {
+        return name + ": " + wins() + " of " + games() + " won, streak " + streak()
+            + " (best " + bestStreak() + "), quickest " + bestMillis()
+            + " ms, fewest moves " + fewestMoves();
+    }
+}
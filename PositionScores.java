@@ -0,0 +1,121 @@
+/**
+ * PositionScores.java
+ *
+ * <code>PositionScores</code> holds what <code>BatchEvaluator</code> works
+ * out for a batch of positions.  Each figure is kept in an array of its
+ * own, indexed by the position's place in the batch, so a job reading
+ * one figure for millions of positions walks a single flat array.
+ */
+public class PositionScores {
+
+    /** The legal move count recorded for a snapshot that could not be read. */
+    public static final int INVALID = -1;
+
+    /** The number of legal moves, or INVALID. */
+    private int[] legalMoves;
+
+    /** Whether another play is possible. */
+    private boolean[] playPossible;
+
+    /** The number of cards on the foundations. */
+    private int[] foundationCards;
+
+    /** The number of face-down cards on the tableau. */
+    private int[] faceDownCards;
+
+    /** The heuristic score. */
+    private int[] scores;
+
+    /**
+     * Creates a new <code>PositionScores</code> instance with room for
+     * a batch of positions.
+     * @param count the number of positions in the batch
+     */
+    public PositionScores(int count) {
+        legalMoves = new int[count];
+        playPossible = new boolean[count];
+        foundationCards = new int[count];
+        faceDownCards = new int[count];
+        scores = new int[count];
+    }
+
+    /**
+     * Accesses the number of positions in the batch.
+     * @return the number of positions.
+     */
+    public int size() {
+        return scores.length;
+    }
+
+    /**
+     * Determines if a position could be read.
+     * @param k the index of the position in the batch
+     * @return true if the other figures of the position are meaningful.
+     */
+    public boolean isValid(int k) {
+        return legalMoves[k] != INVALID;
+    }
+
+    /**
+     * Accesses the number of legal moves of a position.
+     * @param k the index of the position in the batch
+     * @return the number of legal moves, or INVALID.
+     */
+    public int legalMoves(int k) {
+        return legalMoves[k];
+    }
+
+    /**
+     * Determines if another play is possible in a position.
+     * @param k the index of the position in the batch
+     * @return true if <code>anotherPlayIsPossible</code> holds.
+     */
+    public boolean playPossible(int k) {
+        return playPossible[k];
+    }
+
+    /**
+     * Accesses the number of cards on the foundations of a position.
+     * @param k the index of the position in the batch
+     * @return the number of foundation cards.
+     */
+    public int foundationCards(int k) {
+        return foundationCards[k];
+    }
+
+    /**
+     * Accesses the number of face-down cards of a position.
+     * @param k the index of the position in the batch
+     * @return the number of face-down cards on the tableau.
+     */
+    public int faceDownCards(int k) {
+        return faceDownCards[k];
+    }
+
+    /**
+     * Accesses the heuristic score of a position.
+     * @param k the index of the position in the batch
+     * @return the score; see <code>BatchEvaluator.score</code>.
+     */
+    public int score(int k) {
+        return scores[k];
+    }
+
+    /**
+     * Records the figures of one position.
+     */
+    void set(int k, int moves, boolean possible, int foundation, int faceDown, int score) {
+        legalMoves[k] = moves;
+        playPossible[k] = possible;
+        foundationCards[k] = foundation;
+        faceDownCards[k] = faceDown;
+        scores[k] = score;
+    }
+
+    /**
+     * Records that a position could not be read.
+     */
+    void setInvalid(int k) {
+        set(k, INVALID, false, 0, 0, 0);
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * This class writes the events of a <code>Board</code> as lines of text,
+ * either to the console or to a file.  Search nodes are not written;
+ * there are far too many of them to be useful as text.
+ */
+public class PrintGameListener implements GameListener, Closeable {
+
+    /** Where the text goes. */
+    private PrintWriter out;
+
+    /** Whether the whole board is written after every move. */
+    private boolean showBoard;
+
+    /** Whether closing this listener closes out. */
+    private boolean ownsOut;
+
+    /**
+     * Creates a new <code>PrintGameListener</code> instance.
+     * @param writer where the text goes
+     * @param printBoard true to write the whole board after every move
+     * @param closeWriter true if closing this listener closes the writer
+     */
+    public PrintGameListener(PrintWriter writer, boolean printBoard, boolean closeWriter) {
+        out = writer;
+        showBoard = printBoard;
+        ownsOut = closeWriter;
+    }
+
+    /**
+     * Creates a listener that writes to the console.
+     * @param printBoard true to write the whole board after every move
+     * @return the new listener.
+     */
+    public static PrintGameListener console(boolean printBoard) {
+        return new PrintGameListener(
+            new PrintWriter(new OutputStreamWriter(System.out), true), printBoard, false);
+    }
+
+    /**
+     * Creates a listener that writes to a file, replacing its contents.
+     * The text is buffered until the listener is closed.
+     * @param fileName the name of the file
+     * @param printBoard true to write the whole board after every move
+     * @return the new listener.
+     * @throws IOException if the file cannot be opened
+     */
+    public static PrintGameListener file(String fileName, boolean printBoard)
+            throws IOException {
+        return new PrintGameListener(
+            new PrintWriter(new BufferedWriter(new FileWriter(fileName))), printBoard, true);
+    }
+
+    public void gameStarted(Board board) {
+        out.println("New game.");
+        if (showBoard) {
+            out.println(board);
+        }
+    }
+
+    public void cardDealt(Board board, Card card, int column) {
+        out.println(dealtText(card, column));
+    }
+
+    public void moveApplied(Board board, Move move) {
+        out.println("Moved " + move + ".");
+        if (showBoard) {
+            out.println(board);
+        }
+    }
+
+    public void gameEnded(Board board, GameOutcome outcome) {
+        out.println(endedText(outcome, board.movesMade()));
+    }
+
+    /**
+     * Writes out anything still buffered, and closes the file if this
+     * listener opened one.
+     */
+    public void close() {
+        out.flush();
+        if (ownsOut) {
+            out.close();
+        }
+    }
+
+    /**
+     * Describes a card being dealt.
+     * @param card the card dealt
+     * @param column the column it was dealt to, or -1 for the waste
+     * @return the description.
+     */
+    static String dealtText(Card card, int column) {
+        if (column < 0) {
+            return "Dealt " + card + " to the waste.";
+        }
+        return "Dealt " + card + " to tableau " + column + ".";
+    }
+
+    /**
+     * Describes the end of a game.
+     * @param outcome how the game ended
+     * @param moves the number of moves made
+     * @return the description.
+     */
+    static String endedText(GameOutcome outcome, int moves) {
+        return "Game over: " + outcome + " after " + moves + " moves.";
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReplayVerifier.java
+ *
+ * <code>ReplayVerifier</code> replays recorded games without a display to
+ * check that the engine still plays them as it did.  Every move is
+ * checked with <code>Board.isLegal</code> before it is made, and a game
+ * recorded as won must end won.  The records are read on one thread and
+ * handed out in batches to the others, each batch replayed on a board of
+ * its own; only a few batches are held at a time, so any number of
+ * records can be checked.
+ * <p>
+ * Run it over the recorded games before and after a change to the engine:
+ * a game that no longer replays is reported with its seed and the move
+ * where it went wrong.
+ */
+public class ReplayVerifier {
+
+    /** The number of records in a batch. */
+    private static final int BATCH_SIZE = 512;
+
+    /** The number of games replayed. */
+    private AtomicLong games;
+
+    /** The number of moves replayed. */
+    private AtomicLong moves;
+
+    /** The number of games that did not replay. */
+    private AtomicLong diverged;
+
+    /** The number of divergences still to print. */
+    private AtomicInteger toReport;
+
+    /**
+     * Creates a new <code>ReplayVerifier</code> instance.
+     * @param maxReports the most divergences to print
+     */
+    public ReplayVerifier(int maxReports) {
+        games = new AtomicLong();
+        moves = new AtomicLong();
+        diverged = new AtomicLong();
+        toReport = new AtomicInteger(maxReports);
+    }
+
+    /**
+     * Replays every game of a directory of records.
+     * @param args "--dir=NAME" (default games) for the directory,
+     *             "--threads=N" for the number of threads (default one per
+     *             processor) and "--max-reports=N" for the most
+     *             divergences to print (default 20)
+     * @throws IOException if the records cannot be read
+     * @throws InterruptedException if interrupted while the games are replayed
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path dir = Paths.get("games");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxReports = 20;
+        for (String arg : args) {
+            if (arg.startsWith("--dir=")) {
+                dir = Paths.get(arg.substring("--dir=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--max-reports=")) {
+                maxReports = Integer.parseInt(arg.substring("--max-reports=".length()));
+            }
+        }
+        ReplayVerifier verifier = new ReplayVerifier(maxReports);
+        long start = System.nanoTime();
+        verifier.verify(dir, threads);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        System.out.println(verifier.games() + " games, " + verifier.moves() + " moves replayed in "
+            + millis + " ms (" + verifier.moves() * 1000 / millis + " moves/s)");
+        System.out.println(verifier.diverged() + " games diverged");
+    }
+
+    /**
+     * Replays every game of a directory of records.
+     * @param dir the directory
+     * @param threads the number of threads to replay on
+     * @throws IOException if the records cannot be read
+     * @throws InterruptedException if interrupted while the games are replayed
+     */
+    public void verify(Path dir, int threads) throws IOException, InterruptedException {
+        // A full queue makes the reading thread replay a batch itself,
+        // which holds the reading back to the pace of the replays.
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads,
+            0, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threads * 2),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        try (GameRecordReader in = new GameRecordReader(dir)) {
+            List<GameRecord> batch = new ArrayList<GameRecord>(BATCH_SIZE);
+            Board board = null;
+            int[] rules = new int[0];
+            GameRecord record;
+            while ((record = in.read()) != null) {
+                int[] recordRules = {in.columns(), in.foundations(), in.drawCount(),
+                                     in.recycleLimit()};
+                if (!batch.isEmpty() && !Arrays.equals(recordRules, rules)) {
+                    submit(workers, board, batch);
+                    batch = new ArrayList<GameRecord>(BATCH_SIZE);
+                }
+                if (batch.isEmpty()) {
+                    board = in.newBoard();
+                    rules = recordRules;
+                }
+                batch.add(record);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(workers, board, batch);
+                    batch = new ArrayList<GameRecord>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(workers, board, batch);
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Replays a game, checking every move.
+     * @param board a board with the layout and rules the game was played by
+     * @param record the game
+     * @return null if the game replayed as recorded; otherwise what went wrong.
+     */
+    public static String check(Board board, GameRecord record) {
+        board.newGame(record.seed());
+        List<Move> played = record.moves();
+        for (int k = 0; k < played.size(); k++) {
+            Move move = played.get(k);
+            if (!board.isLegal(move)) {
+                return "move " + (k + 1) + " (" + move.code() + ") is not legal";
+            }
+            board.apply(move);
+        }
+        if ((record.outcome() == GameOutcome.WON) != board.gameIsWon()) {
+            return "recorded as " + record.outcome() + " but "
+                + (board.gameIsWon() ? "won" : "not won") + " after the moves";
+        }
+        return null;
+    }
+
+    /**
+     * Accesses the number of games replayed.
+     * @return the number of games.
+     */
+    public long games() {
+        return games.get();
+    }
+
+    /**
+     * Accesses the number of moves replayed.
+     * @return the number of moves.
+     */
+    public long moves() {
+        return moves.get();
+    }
+
+    /**
+     * Accesses the number of games that did not replay as recorded.
+     * @return the number of games.
+     */
+    public long diverged() {
+        return diverged.get();
+    }
+
+    /**
+     * Hands a batch to the workers, with a board made for its games.
+     */
+    private void submit(ThreadPoolExecutor workers, final Board board,
+                        final List<GameRecord> batch) {
+        workers.execute(new Runnable() {
+            public void run() {
+                replay(board, batch);
+            }
+        });
+    }
+
+    /**
+     * Replays a batch of games on a board and counts them.
+     */
+    private void replay(Board board, List<GameRecord> batch) {
+        long moveCount = 0;
+        for (GameRecord record : batch) {
+            String problem = check(board, record);
+            moveCount += record.moves().size();
+            if (problem != null) {
+                diverged.incrementAndGet();
+                if (toReport.getAndDecrement() > 0) {
+                    System.out.println("seed " + record.seed() + ": " + problem);
+                }
+            }
+        }
+        games.addAndGet(batch.size());
+        moves.addAndGet(moveCount);
+    }
+}
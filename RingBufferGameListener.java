@@ -0,0 +1,132 @@
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * This class keeps the most recent events of a <code>Board</code> in
+ * memory, overwriting the oldest once it is full.  Recording an event
+ * only stores references in preallocated arrays; the text is made when
+ * the events are read.
+ */
+public class RingBufferGameListener implements GameListener {
+
+    /** Event codes stored in kinds. */
+    private static final byte STARTED = 0;
+    private static final byte DEALT = 1;
+    private static final byte MOVED = 2;
+    private static final byte ENDED = 3;
+    private static final byte EXPANDED = 4;
+
+    /** The kind of each event. */
+    private byte[] kinds;
+    /** The time (System.nanoTime) of each event. */
+    private long[] times;
+    /** The card of each deal event. */
+    private Card[] cards;
+    /** The move of each move event. */
+    private Move[] moves;
+    /** The outcome of each end event. */
+    private GameOutcome[] outcomes;
+    /** The column of a deal, the depth of a node or the length of a game. */
+    private int[] values;
+    /** The index the next event is stored at. */
+    private int next;
+    /** The number of events held. */
+    private int size;
+
+    /**
+     * Creates a new <code>RingBufferGameListener</code> instance.
+     * @param capacity the number of events to keep
+     */
+    public RingBufferGameListener(int capacity) {
+        kinds = new byte[capacity];
+        times = new long[capacity];
+        cards = new Card[capacity];
+        moves = new Move[capacity];
+        outcomes = new GameOutcome[capacity];
+        values = new int[capacity];
+    }
+
+    public void gameStarted(Board board) {
+        record(STARTED, null, null, null, 0);
+    }
+
+    public void cardDealt(Board board, Card card, int column) {
+        record(DEALT, card, null, null, column);
+    }
+
+    public void moveApplied(Board board, Move move) {
+        record(MOVED, null, move, null, 0);
+    }
+
+    public void gameEnded(Board board, GameOutcome outcome) {
+        record(ENDED, null, null, outcome, board.movesMade());
+    }
+
+    public void nodeExpanded(Board board, int depth) {
+        record(EXPANDED, null, null, null, depth);
+    }
+
+    /**
+     * Accesses the number of events held.
+     * @return the number of events held.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets every event held.
+     */
+    public void clear() {
+        for (int k = 0; k < kinds.length; k++) {
+            cards[k] = null;
+            moves[k] = null;
+            outcomes[k] = null;
+        }
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Describes the events held, oldest first.  Each line starts with the
+     * time of the event in microseconds after the oldest one.
+     * @return one line per event.
+     */
+    public List<String> events() {
+        List<String> lines = new ArrayList<String>(size);
+        int first = (next - size + kinds.length) % kinds.length;
+        for (int n = 0; n < size; n++) {
+            int k = (first + n) % kinds.length;
+            String text;
+            if (kinds[k] == STARTED) {
+                text = "New game.";
+            } else if (kinds[k] == DEALT) {
+                text = PrintGameListener.dealtText(cards[k], values[k]);
+            } else if (kinds[k] == MOVED) {
+                text = "Moved " + moves[k] + ".";
+            } else if (kinds[k] == ENDED) {
+                text = PrintGameListener.endedText(outcomes[k], values[k]);
+            } else {
+                text = "Expanded a node at depth " + values[k] + ".";
+            }
+            lines.add((times[k] - times[first]) / 1000 + " us: " + text);
+        }
+        return lines;
+    }
+
+    /**
+     * Stores one event, overwriting the oldest if the buffer is full.
+     */
+    private void record(byte kind, Card card, Move move, GameOutcome outcome, int value) {
+        kinds[next] = kind;
+        times[next] = System.nanoTime();
+        cards[next] = card;
+        moves[next] = move;
+        outcomes[next] = outcome;
+        values[next] = value;
+        next = (next + 1) % kinds.length;
+        if (size < kinds.length) {
+            size++;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * RuleSet.java
+ *
+ * <code>RuleSet</code> describes the rules of a solitaire variant: how
+ * cards stack on the tableau, how foundations are built, what may go into
+ * an empty column, and how the stock is drawn.  A board compiles its rules
+ * into a <code>RuleTable</code> once, so checking a move never has to look
+ * at suit names or ranks.
+ */
+public class RuleSet {
+
+    /**
+     * How the suit of a card must relate to the suit of the card it goes on.
+     */
+    public enum Stacking {
+        /** A red card on a black card or a black card on a red card. */
+        ALTERNATE_COLORS,
+        /** A card on a card of the same suit. */
+        SAME_SUIT,
+        /** Any card on any card. */
+        ANY_SUIT
+    }
+
+    /** The emptyColumn value that lets any card into an empty column. */
+    public static final int ANY_CARD = 0;
+
+    /**
+     * Klondike: alternate colors, building down by one on the tableau, up
+     * by one in suit from the ace on the foundations, kings into empty
+     * columns, drawing one card with no recycles.
+     */
+    public static final RuleSet KLONDIKE = new RuleSet(
+        Stacking.ALTERNATE_COLORS, 1, Stacking.SAME_SUIT, 1, 1, 13, 1, 0);
+
+    /** How tableau cards stack. */
+    private Stacking tableauStacking;
+
+    /** The point value of a tableau card minus the value of the card put on it. */
+    private int tableauStep;
+
+    /** How foundation cards stack. */
+    private Stacking foundationStacking;
+
+    /** The point value of a foundation card minus the value of the card under it. */
+    private int foundationStep;
+
+    /** The point value of the card that starts a foundation. */
+    private int foundationBase;
+
+    /** The point value of the cards that may go into an empty column, or ANY_CARD. */
+    private int emptyColumnValue;
+
+    /** The number of cards turned over in one draw. */
+    private int drawCount;
+
+    /** The number of times the waste may be turned over, or StockPile.UNLIMITED. */
+    private int recycleLimit;
+
+    /**
+     * Creates a new <code>RuleSet</code> instance.
+     * @param tableauSuits how tableau cards stack
+     * @param tableauRankStep the value of a tableau card minus the value of
+     *                        the card put on it; 1 builds down, -1 builds up
+     * @param foundationSuits how foundation cards stack
+     * @param foundationRankStep the value of a foundation card minus the
+     *                           value of the card under it; 1 builds up
+     * @param foundationStart the value of the card that starts a foundation
+     * @param emptyColumn the value of the cards that may go into an empty
+     *                    column, or <code>ANY_CARD</code>
+     * @param cardsPerDraw the number of cards turned over in one draw
+     * @param maxRecycles the number of times the waste may be turned over,
+     *                    or <code>StockPile.UNLIMITED</code>
+     */
+    public RuleSet(Stacking tableauSuits, int tableauRankStep,
+                   Stacking foundationSuits, int foundationRankStep, int foundationStart,
+                   int emptyColumn, int cardsPerDraw, int maxRecycles) {
+        tableauStacking = tableauSuits;
+        tableauStep = tableauRankStep;
+        foundationStacking = foundationSuits;
+        foundationStep = foundationRankStep;
+        foundationBase = foundationStart;
+        emptyColumnValue = emptyColumn;
+        drawCount = cardsPerDraw;
+        recycleLimit = maxRecycles;
+    }
+
+    /**
+     * Makes a copy of these rules with other draw rules.
+     * @param cardsPerDraw the number of cards turned over in one draw
+     * @param maxRecycles the number of times the waste may be turned over,
+     *                    or <code>StockPile.UNLIMITED</code>
+     * @return the new rules.
+     */
+    public RuleSet withDrawRules(int cardsPerDraw, int maxRecycles) {
+        return new RuleSet(tableauStacking, tableauStep, foundationStacking,
+            foundationStep, foundationBase, emptyColumnValue, cardsPerDraw, maxRecycles);
+    }
+
+    /**
+     * Accesses the number of cards turned over in one draw.
+     * @return the draw count.
+     */
+    public int drawCount() {
+        return drawCount;
+    }
+
+    /**
+     * Accesses the number of times the waste may be turned over.
+     * @return the recycle limit, or <code>StockPile.UNLIMITED</code>.
+     */
+    public int recycleLimit() {
+        return recycleLimit;
+    }
+
+    /**
+     * Determines if one card has to reach the foundations before another
+     * can, which is known when foundations are built in suit: the first
+     * card is of the same suit and lies between the foundation start and
+     * the second card.  With more than one deck another copy of the first
+     * card may do instead, so callers should only rely on this for one.
+     * @param first the card that may have to go first
+     * @param later the card that may have to wait
+     * @return true if <code>later</code> cannot reach a foundation before
+     *         <code>first</code>; false if it can or it is not known.
+     */
+    public boolean mustFoundBefore(Card first, Card later) {
+        if (foundationStacking != Stacking.SAME_SUIT || foundationStep == 0
+            || !first.suit().equals(later.suit())) {
+            return false;
+        }
+        int gap = (later.pointValue() - first.pointValue()) * Integer.signum(foundationStep);
+        int fromBase = (first.pointValue() - foundationBase) * Integer.signum(foundationStep);
+        return gap > 0 && fromBase >= 0 && gap % foundationStep == 0
+            && fromBase % foundationStep == 0;
+    }
+
+    /**
+     * Compiles these rules for the cards of a deck.  Cards are looked up
+     * by their face, the rank's index times the number of suits plus the
+     * suit's index.
+     * @param ranks the names of the card ranks
+     * @param suits the names of the card suits
+     * @param pointValues the point values of the ranks
+     * @return the rule tables.
+     */
+    public RuleTable compile(String[] ranks, String[] suits, int[] pointValues) {
+        int faces = ranks.length * suits.length;
+        RuleTable table = new RuleTable(faces);
+        for (int m = 0; m < faces; m++) {
+            int mValue = pointValues[m / suits.length];
+            String mSuit = suits[m % suits.length];
+            if (mValue == foundationBase) {
+                table.allowFoundationStart(m);
+            }
+            if (emptyColumnValue == ANY_CARD || mValue == emptyColumnValue) {
+                table.allowEmptyColumn(m);
+            }
+            for (int t = 0; t < faces; t++) {
+                int tValue = pointValues[t / suits.length];
+                String tSuit = suits[t % suits.length];
+                if (tValue - mValue == tableauStep
+                    && suitsFit(tableauStacking, mSuit, tSuit)) {
+                    table.allowStack(m, t);
+                }
+                if (mValue - tValue == foundationStep
+                    && suitsFit(foundationStacking, mSuit, tSuit)) {
+                    table.allowFound(m, t);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Determines if a card of one suit may go on a card of another.
+     */
+    private static boolean suitsFit(Stacking stacking, String moving, String target) {
+        switch (stacking) {
+            case ALTERNATE_COLORS:
+                return isRed(moving) != isRed(target);
+            case SAME_SUIT:
+                return moving.equals(target);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Determines if a suit is red.
+     */
+    static boolean isRed(String suit) {
+        return suit.equals("hearts") || suit.equals("diamonds");
+    }
+
+    /**
+     * Generates and returns a string representation of these rules.
+     * @return the string version of these rules.
+     */
+    @Override
+    public String toString() {
+        return "tableau " + tableauStacking + " step " + tableauStep
+            + ", foundation " + foundationStacking + " step " + foundationStep
+            + " from " + foundationBase
+            + ", empty column " + (emptyColumnValue == ANY_CARD ? "any" : "" + emptyColumnValue)
+            + ", draw " + drawCount + ", recycles "
+            + (recycleLimit == StockPile.UNLIMITED ? "unlimited" : "" + recycleLimit);
+    }
+}
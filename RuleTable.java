@@ -0,0 +1,100 @@
+/**
+ * RuleTable.java
+ *
+ * <code>RuleTable</code> is a <code>RuleSet</code> compiled for one deck:
+ * bit tables saying which card may go on which, indexed by card face.
+ * Each check is one array read and one shift.
+ */
+public class RuleTable {
+
+    /** The number of card faces. */
+    private int faces;
+
+    /** The number of longs in one row of a table. */
+    private int words;
+
+    /** Bit t of row m is set if card m may go on tableau card t. */
+    private long[] stack;
+
+    /** Bit t of row m is set if card m may go on foundation card t. */
+    private long[] found;
+
+    /** Bit m is set if card m may start a foundation. */
+    private long[] foundationStart;
+
+    /** Bit m is set if card m may go into an empty column. */
+    private long[] emptyColumn;
+
+    /**
+     * Creates a new <code>RuleTable</code> instance that allows nothing.
+     * @param faceCount the number of card faces
+     */
+    RuleTable(int faceCount) {
+        faces = faceCount;
+        words = (faceCount + 63) >>> 6;
+        stack = new long[faces * words];
+        found = new long[faces * words];
+        foundationStart = new long[words];
+        emptyColumn = new long[words];
+    }
+
+    void allowStack(int moving, int target) {
+        stack[moving * words + (target >>> 6)] |= 1L << target;
+    }
+
+    void allowFound(int moving, int target) {
+        found[moving * words + (target >>> 6)] |= 1L << target;
+    }
+
+    void allowFoundationStart(int moving) {
+        foundationStart[moving >>> 6] |= 1L << moving;
+    }
+
+    void allowEmptyColumn(int moving) {
+        emptyColumn[moving >>> 6] |= 1L << moving;
+    }
+
+    /**
+     * Accesses the number of card faces the tables cover.
+     * @return the number of card faces.
+     */
+    public int faces() {
+        return faces;
+    }
+
+    /**
+     * Determines if a card may go on a tableau card.
+     * @param moving the card to move
+     * @param target the card to put it on
+     * @return true if the rules allow it; false otherwise.
+     */
+    public boolean canStack(Card moving, Card target) {
+        int t = target.face();
+        return (stack[moving.face() * words + (t >>> 6)] & (1L << t)) != 0;
+    }
+
+    /**
+     * Determines if a card may go on a foundation pile.
+     * @param moving the card to move
+     * @param top the top card of the pile, or null if the pile is empty
+     * @return true if the rules allow it; false otherwise.
+     */
+    public boolean canFound(Card moving, Card top) {
+        int m = moving.face();
+        if (top == null) {
+            return (foundationStart[m >>> 6] & (1L << m)) != 0;
+        }
+        int t = top.face();
+        return (found[m * words + (t >>> 6)] & (1L << t)) != 0;
+    }
+
+    /**
+     * Determines if a card may go into an empty tableau column.
+     * @param moving the card to move
+     * @return true if the rules allow it; false otherwise.
+     */
+    public boolean canFillEmpty(Card moving) {
+        int m = moving.face();
+        return (emptyColumn[m >>> 6] & (1L << m)) != 0;
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SessionStore.java
+ *
+ * <code>SessionStore</code> holds the live sessions of a server.  The
+ * sessions are spread over shards by id, each shard a plain map with a lock
+ * of its own, so threads working on different sessions rarely wait for
+ * each other.
+ */
+public class SessionStore {
+
+    /** The maps of sessions; a session lives in shard id & (shards.length - 1). */
+    private Map<Long, GameSession>[] shards;
+
+    /** The next session id. */
+    private AtomicLong nextId;
+
+    /** The number of live sessions. */
+    private AtomicLong size;
+
+    /**
+     * Creates a new, empty <code>SessionStore</code> instance.
+     * @param shardCount the number of shards, rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public SessionStore(int shardCount) {
+        int n = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        shards = (Map<Long, GameSession>[]) new Map<?, ?>[n];
+        for (int k = 0; k < n; k++) {
+            shards[k] = new HashMap<Long, GameSession>();
+        }
+        nextId = new AtomicLong(1);
+        size = new AtomicLong();
+    }
+
+    /**
+     * Adds a session for a board, giving it a new id.
+     * @param board the board of the session
+     * @return the new session.
+     */
+    public GameSession create(SolitaireBoard board) {
+        GameSession session = new GameSession(nextId.getAndIncrement(), board);
+        Map<Long, GameSession> shard = shard(session.id());
+        synchronized (shard) {
+            shard.put(session.id(), session);
+        }
+        size.incrementAndGet();
+        return session;
+    }
+
+    /**
+     * Finds a session.
+     * @param id the id of the session
+     * @return the session, or null if there is no such session.
+     */
+    public GameSession get(long id) {
+        Map<Long, GameSession> shard = shard(id);
+        synchronized (shard) {
+            return shard.get(id);
+        }
+    }
+
+    /**
+     * Removes a session.
+     * @param id the id of the session
+     * @return the session removed, or null if there was no such session.
+     */
+    public GameSession remove(long id) {
+        Map<Long, GameSession> shard = shard(id);
+        GameSession session;
+        synchronized (shard) {
+            session = shard.remove(id);
+        }
+        if (session != null) {
+            size.decrementAndGet();
+        }
+        return session;
+    }
+
+    /**
+     * Removes the sessions that have not been used for a while.  One shard
+     * is locked at a time.
+     * @param idleNanos how long a session may go unused
+     * @return the sessions removed.
+     */
+    public List<GameSession> evictIdle(long idleNanos) {
+        List<GameSession> evicted = new ArrayList<GameSession>();
+        long now = System.nanoTime();
+        for (Map<Long, GameSession> shard : shards) {
+            synchronized (shard) {
+                Iterator<GameSession> it = shard.values().iterator();
+                while (it.hasNext()) {
+                    GameSession session = it.next();
+                    if (now - session.lastUsed() > idleNanos) {
+                        it.remove();
+                        evicted.add(session);
+                    }
+                }
+            }
+        }
+        size.addAndGet(-evicted.size());
+        return evicted;
+    }
+
+    /**
+     * Accesses the number of live sessions.
+     * @return the number of sessions.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Finds the shard a session id belongs to.
+     */
+    private Map<Long, GameSession> shard(long id) {
+        return shards[(int) (id ^ (id >>> 32)) & (shards.length - 1)];
+    }
+}
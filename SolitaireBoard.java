@@ -26,9 +26,9 @@ public class SolitaireBoard extends Board {
         {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13};
 
     /**
-     * Flag used to control debugging print statements.
+     * Room for the cards the stock can bring to the top of the waste.
      */
-    private static final boolean I_AM_DEBUGGING = true;
+    private Card[] reachable;
 
 
     /**
@@ -36,8 +36,71 @@ public class SolitaireBoard extends Board {
      */
      public SolitaireBoard() {
         super(RANKS, SUITS, POINT_VALUES);
+        reachable = new Card[cardCount()];
      }
 
+    /**
+     * Creates a new <code>SolitaireBoard</code> instance with a given layout.
+     * @param layout the number of columns, foundations and visible rows
+     */
+    public SolitaireBoard(BoardGeometry layout) {
+        super(layout, RANKS, SUITS, POINT_VALUES);
+        reachable = new Card[cardCount()];
+    }
+
+    /**
+     * Creates a new <code>SolitaireBoard</code> instance played with
+     * several decks, such as 2 decks and 8 foundations.
+     * @param layout the number of columns, foundations and visible rows
+     * @param decks the number of decks
+     */
+    public SolitaireBoard(BoardGeometry layout, int decks) {
+        super(layout, decks, RANKS, SUITS, POINT_VALUES);
+        reachable = new Card[cardCount()];
+    }
+
+    /**
+     * Creates a new <code>SolitaireBoard</code> instance for a variant.
+     * @param layout the number of columns, foundations and visible rows
+     * @param rules the rules of the variant
+     * @param decks the number of decks
+     */
+    public SolitaireBoard(BoardGeometry layout, RuleSet rules, int decks) {
+        super(layout, rules, decks, RANKS, SUITS, POINT_VALUES);
+        reachable = new Card[cardCount()];
+    }
+
+    /**
+     * Creates a fork of a <code>SolitaireBoard</code>; see
+     * <code>Board.fork</code>.
+     * @param original the board to fork
+     */
+    private SolitaireBoard(SolitaireBoard original) {
+        super(original);
+        reachable = new Card[cardCount()];
+    }
+
+    @Override
+    public SolitaireBoard fork() {
+        return new SolitaireBoard(this);
+    }
+
+    /**
+     * Accesses the names of the card ranks used by this game.
+     * @return a copy of the rank names.
+     */
+    public static String[] ranks() {
+        return RANKS.clone();
+    }
+
+    /**
+     * Accesses the names of the card suits used by this game.
+     * @return a copy of the suit names.
+     */
+    public static String[] suits() {
+        return SUITS.clone();
+    }
+
     /**
      * Determines if the selected cards form a valid group for removal.
      * In Elevens, the legal groups are (1) a pair of non-face cards
@@ -66,23 +129,35 @@ public class SolitaireBoard extends Board {
      */
     @Override
     public boolean anotherPlayIsPossible() {
+        JfrScanEvent event = new JfrScanEvent();
+        event.begin();
+        GameListener listener = gameListener();
+        long start = listener == null ? 0 : System.nanoTime();
         List<Point> cIndexes = cardIndexes();
-        if (I_AM_DEBUGGING) {
-            System.out.println("intentCoords: " + findStackingMove(cIndexes));
-            //System.out.println("cIndexes: " + cIndexes);
+        boolean possible = playIsPossible(cIndexes);
+        if (listener != null) {
+            listener.movesScanned(this, System.nanoTime() - start);
         }
+        event.finish("anotherPlayIsPossible", cIndexes.size(), possible);
+        return possible;
+    }
+
+    /**
+     * Scans the board for a legal play.
+     * @param cIndexes the locations of the cards on the tableau
+     * @return true if there is a legal play left on the board;
+     *         false otherwise.
+     */
+    private boolean playIsPossible(List<Point> cIndexes) {
         return findStackingMove(cIndexes).size() > 0
         || findFoundationMove(cIndexes).getX() != -1
         || findDealMove(cIndexes).getX() != -1
-        || canDeal();
+        || wastePlayIsPossible();
              //|| findJQK(cIndexes).size() > 0;
     }
     
     public boolean dealMoveIsPossibleAt(int r, int c) {
-        if (OpSuit(r,c) && OneLess(r,c)) {
-            return true;
-        }
-        return false;
+        return r == topRow(c) && canMoveDeckCardToTableau(c);
     }
 
     public boolean dealMoveIsPossible() {
@@ -103,13 +178,8 @@ public class SolitaireBoard extends Board {
         for (int tCard = 0; tCard < selectedCards.size(); tCard++) {
             int r = (int) selectedCards.get(tCard).getX();
             int c = (int) selectedCards.get(tCard).getY();
-            for (int fPile = 0; fPile < 4; fPile++) {
-                if (tabCardAt(r,c).pointValue() == 1
-                && fCardAt(fPile) == null) {
-                    return new Point(r,c);
-                } else if (fCardAt(fPile) != null
-                && sameSuit(r,c,fPile)
-                && oneLess(r,c,fPile)) {
+            for (int fPile = 0; fPile < foundationCount(); fPile++) {
+                if (canMoveToFoundation(r, c, fPile)) {
                     return new Point(r,c);
                 }
             }
@@ -118,68 +188,102 @@ public class SolitaireBoard extends Board {
     }
     
     public Point findDealMove(List<Point> selectedCards) {
+        if (dCardAt() == null) {
+            return new Point(-1,-1);
+        }
         for (int tCard = 0; tCard < selectedCards.size(); tCard++) {
             int r = (int) selectedCards.get(tCard).getX();
             int c = (int) selectedCards.get(tCard).getY();
-            if (tabCardAt(r,c) != null && dCardAt() != null
-            && tabCardAt(r,c).pointValue() - dCardAt().pointValue() == 1) {
-                if ((tabCardAt(r, c).suit() == "hearts"
-                || tabCardAt(r, c).suit() == "diamonds")
-                && (dCardAt().suit() == "spades"
-                || dCardAt().suit() == "clubs")) {
-                    return new Point(r-1,c);
-                } else if ((dCardAt().suit() == "hearts"
-                || dCardAt().suit() == "diamonds")
-                && (tabCardAt(r, c).suit() == "spades"
-                || tabCardAt(r, c).suit() == "clubs")) {
-                    return new Point(r-1,c);
-                }
+            if (dealMoveIsPossibleAt(r, c)) {
+                return new Point(r-1,c);
             }
         }
         return new Point(-1,-1);
     }
     
     public boolean canDeal() {
-        if (deckSize() != 0) {
-            return true;
+        return canDraw();
+    }
+
+    /**
+     * Determines if some card that drawing can bring to the top of the
+     * waste could then be played.  Drawing itself is not counted as a
+     * play: once no reachable card fits anywhere, drawing cannot help.
+     * @return true if a reachable waste card can be played; false otherwise.
+     */
+    private boolean wastePlayIsPossible() {
+        int n = reachableWasteCards(reachable);
+        for (int k = 0; k < n; k++) {
+            if (wasteTarget(reachable[k]) != NO_TARGET) {
+                return true;
+            }
         }
         return false;
     }
-    
-    public boolean canMoveToFoundation(int r, int c, int fPile) {
-        if(I_AM_DEBUGGING) {
-            //System.out.println("foundation card: " + fCardAt(fPile) + "\n" + 
-            //"tableau card: " + tabCardAt(r,c));
+
+    /**
+     * Counts the cards that drawing can bring to the top of the waste and
+     * that could then be played.
+     * @return the number of playable stock and waste cards.
+     */
+    public int playableWasteCards() {
+        int n = reachableWasteCards(reachable);
+        int playable = 0;
+        for (int k = 0; k < n; k++) {
+            if (wasteTarget(reachable[k]) != NO_TARGET) {
+                playable++;
+            }
         }
-        if (tabCardAt(r,c).pointValue() == 1
-        && fCardAt(fPile) == null) {
-            if(I_AM_DEBUGGING)
-                //System.out.println("foundation card: " + fCardAt(fPile) + "\n" + 
-                //"tableau card: " + tabCardAt(r,c));
-            return true;
-        } else if (fCardAt(fPile) != null
-        && sameSuit(r,c,fPile)
-        && oneLess(r,c,fPile)) {
-            return true;
+        return playable;
+    }
+
+    /** Returned by <code>wasteTarget</code> when a card fits nowhere. */
+    private static final int NO_TARGET = Integer.MIN_VALUE;
+
+    /**
+     * Finds where a card from the waste could be played.
+     * @param card the card
+     * @return the index of a foundation pile, the column as -1 - column
+     *         for a tableau column, or <code>NO_TARGET</code>.
+     */
+    private int wasteTarget(Card card) {
+        for (int fPile = 0; fPile < foundationCount(); fPile++) {
+            if (canFound(card, fPile)) {
+                return fPile;
+            }
         }
-        return false;
+        for (int c = 0; c < tabColSize(); c++) {
+            Card top = tabCardAt(topRow(c), c);
+            if (top == null ? canFillEmpty(card) : canStack(card, top)) {
+                return -1 - c;
+            }
+        }
+        return NO_TARGET;
+    }
+    
+    /**
+     * Determines if a tableau card may go on a foundation pile.  Only the
+     * top card of a column can move there.
+     * @param r the row of the card
+     * @param c the column of the card
+     * @param fPile the foundation pile
+     * @return true if the move is allowed; false otherwise.
+     */
+    public boolean canMoveToFoundation(int r, int c, int fPile) {
+        Card card = tabCardAt(r, c);
+        return card != null && r == topRow(c) && canFound(card, fPile);
     }
     
     public List<Point> findStackingMove(List<Point> selectedCards) {
-        if (I_AM_DEBUGGING)
-            //System.out.println("selectedCards" + selectedCards);
         for (int sp1 = 0; sp1 < selectedCards.size(); sp1++) {
             int r1 = (int) selectedCards.get(sp1).getX();
             int c1 = (int) selectedCards.get(sp1).getY();
             for (int sp2 = sp1 + 1; sp2 < selectedCards.size(); sp2++) {
                 int r2 = (int) selectedCards.get(sp2).getX();
                 int c2 = (int) selectedCards.get(sp2).getY();
-                if (canMove(r1,c1,r2,c2).size() > 0) {
-                    if (I_AM_DEBUGGING) {
-                        System.out.println("Card at (r1,c1): " + tabCardAt(r1,c1) + " at " + r1 + " " + c1);
-                        System.out.println("Card at (r2,c2): " + tabCardAt(r2,c2) + " at " + r2 + " " + c2);
-                    }
-                    return canMove(r1,c1,r2,c2);
+                List<Point> intentCoords = canMove(r1,c1,r2,c2);
+                if (intentCoords.size() > 0) {
+                    return intentCoords;
                 }
             }
         }
@@ -188,19 +292,13 @@ public class SolitaireBoard extends Board {
     
     private List<Point> canMove(int r1, int c1, int r2, int c2) {
         List<Point> intentCoords = new ArrayList<Point>();
-        if (I_AM_DEBUGGING)
-            //System.out.println("Before opsuit/diffRow check: r1, c1, r2, c2: " + r1 + " " + c1 + " " + r2 + " " + c2);
-        if (opSuit(r1,c1,r2,c2) && (c1 != c2)) {
-            if (I_AM_DEBUGGING)
-                //System.out.println("After opsuit/diffRow check: r1, c1, r2, c2: " + r1 + " " + c1 + " " + r2 + " " + c2);
-            if ((tabCardAt(r1, c1).pointValue() - tabCardAt(r2, c2).pointValue() == 1)
-            && tabCardAt(r1 - 1, c1) == null) {
+        if (c1 != c2) {
+            if (r1 == topRow(c1) && canStack(tabCardAt(r2, c2), tabCardAt(r1, c1))) {
                 intentCoords.add(new Point(r2,c2));
                 //^coords of "move"; aka smaller
                 intentCoords.add(new Point(r1,c1));
                 //^coords of "target"; aka one below larger
-            } else if ((tabCardAt(r2, c2).pointValue() - tabCardAt(r1, c1).pointValue() == 1)
-            && tabCardAt(r2 - 1, c2) == null) {
+            } else if (r2 == topRow(c2) && canStack(tabCardAt(r1, c1), tabCardAt(r2, c2))) {
                 intentCoords.add(new Point(r1,c1));
                 //^coords of "move"; aka smaller
                 intentCoords.add(new Point(r2,c2));
@@ -210,57 +308,6 @@ public class SolitaireBoard extends Board {
         return intentCoords;
     }
     
-    private boolean opSuit(int r1, int c1, int r2, int c2) {
-        if ((tabCardAt(r1, c1).suit() == "hearts"
-        || tabCardAt(r1, c1).suit() == "diamonds")
-        && (tabCardAt(r2, c2).suit() == "spades"
-        || tabCardAt(r2, c2).suit() == "clubs")) {
-            return true;
-        } else if ((tabCardAt(r2, c2).suit() == "hearts"
-        || tabCardAt(r2, c2).suit() == "diamonds")
-        && (tabCardAt(r1, c1).suit() == "spades"
-        || tabCardAt(r1, c1).suit() == "clubs")) {
-            return true;
-        }
-        return false;
-    }
-    
-    private boolean OpSuit(int r, int c) {
-        if ((tabCardAt(r, c).suit() == "hearts"
-        || tabCardAt(r, c).suit() == "diamonds")
-        && (dCardAt().suit() == "spades"
-        || dCardAt().suit() == "clubs")) {
-            return true;
-        } else if ((dCardAt().suit() == "hearts"
-        || dCardAt().suit() == "diamonds")
-        && (tabCardAt(r, c).suit() == "spades"
-        || tabCardAt(r, c).suit() == "clubs")) {
-            return true;
-        }
-        return false;
-    }
-    
-    private boolean sameSuit(int r, int c, int fPile) {
-        if (tabCardAt(r,c).suit() == fCardAt(fPile).suit()) {
-            return true;
-        }
-        return false;
-    }
-    
-    private boolean oneLess(int r, int c, int fPile) {
-        if (tabCardAt(r,c).pointValue() - fCardAt(fPile).pointValue() == 1) {
-            return true;
-        }
-        return false;
-    }
-    
-    private boolean OneLess(int r, int c) {
-        if (tabCardAt(r,c).pointValue() - dCardAt().pointValue() == 1) {
-            return true;
-        }
-        return false;
-    }
-    
     /*
     private List<Point> findPairSum11(List<Point> selectedCards) {
         List<Point> foundCoords = new ArrayList<Point>();
@@ -318,10 +365,42 @@ public class SolitaireBoard extends Board {
      * @return true if a legal play was found (and made); false othewise.
      */
     public boolean playIfPossible() {
-        return StackIfPossible();
+        return StackIfPossible() || playWasteIfPossible();
         //|| playJQKIfPossible();
     }
 
+    /**
+     * Looks for a card that drawing can bring to the top of the waste and
+     * that can then be played.  If one is found, draws until it is on top
+     * and plays it.
+     * @return true if a waste card was found (and played); false otherwise.
+     */
+    private boolean playWasteIfPossible() {
+        JfrScanEvent event = new JfrScanEvent();
+        event.begin();
+        int n = reachableWasteCards(reachable);
+        Card card = null;
+        int target = NO_TARGET;
+        for (int k = 0; k < n && target == NO_TARGET; k++) {
+            card = reachable[k];
+            target = wasteTarget(card);
+        }
+        event.finish("reachableWaste", n, target != NO_TARGET);
+        if (target == NO_TARGET) {
+            return false;
+        }
+        while (dCardAt() != card) {
+            deal();
+        }
+        if (target >= 0) {
+            moveDeckCardToFoundation(target);
+        } else {
+            int c = -1 - target;
+            moveDeckCardToTableau(topRow(c) - 1, c);
+        }
+        return true;
+    }
+
     /**
      * Looks for a pair of non-face cards whose values sum to 11.
      * If found, replace them with the next two cards in the deck.
@@ -329,13 +408,18 @@ public class SolitaireBoard extends Board {
      * @return true if an 11-pair play was found (and made); false othewise.
      */
     private boolean StackIfPossible() {
+        JfrScanEvent event = new JfrScanEvent();
+        event.begin();
+        GameListener listener = gameListener();
+        long start = listener == null ? 0 : System.nanoTime();
         List<Point> foundIndexes = cardIndexes();
         List<Point> cardsToReplace = findStackingMove(foundIndexes);
+        if (listener != null) {
+            listener.movesScanned(this, System.nanoTime() - start);
+        }
+        event.finish("findStackingMove", foundIndexes.size(), cardsToReplace.size() > 0);
         if (cardsToReplace.size() > 0) {
             moveSelectedTabCard(cardsToReplace);
-            if (I_AM_DEBUGGING) {
-                System.out.println("Card Moved.\n");
-            }
             return true;
         } else {
             return false;
@@ -353,9 +437,6 @@ public class SolitaireBoard extends Board {
         List<Point> cardsToReplace = findJQK(foundIndexes);
         if (cardsToReplace.size() > 0) {
             moveSelectedTabCard(cardsToReplace);
-            if (I_AM_DEBUGGING) {
-                System.out.println("JQK-Triplet removed.\n");
-            }
             return true;
         } else {
             return false;
@@ -1,16 +1,176 @@
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+
 /**
  * This is a class that plays the GUI version of the Elevens game.
  * See accompanying documents for a description of how Elevens is played.
  */
 public class SolitaireGUIRunner {
-    
+
+    /** The system property naming the daily challenge file. */
+    public static final String DAILY_PROPERTY = "solitaire.daily";
+
     /**
      * Plays the GUI version of Elevens.
-     * @param args is not used.
+     * By default the frame is shown at once and the board, the card
+     * images and the players' records are prepared in parallel behind
+     * it; pass "--sync" to build
+     * everything before the frame is shown.
+     * If the <code>solitaire.daily</code> property names a daily challenge
+     * file, the first game is the day's deal.
+     * @param args "--sync" for the old startup, "--replay=DIR" to open
+     *             with a recorded game replayed, and "--game=N" for the
+     *             game of the directory to replay (default 1, the first)
+     * @throws IOException if the recorded games cannot be read
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        final StartupTimer timer = new StartupTimer();
+        boolean sync = false;
+        String replayDir = null;
+        long game = 1;
+        for (String arg : args) {
+            if (arg.equals("--sync")) {
+                sync = true;
+            } else if (arg.startsWith("--replay=")) {
+                replayDir = arg.substring("--replay=".length());
+            } else if (arg.startsWith("--game=")) {
+                game = Long.parseLong(arg.substring("--game=".length()));
+            }
+        }
+        final GameReplay replay = replayDir == null ? null : loadReplay(Paths.get(replayDir), game);
+        if (sync) {
+            Board board = replay == null ? newBoard() : boardLike(replay.board());
+            final CardGameGUI gui = new CardGameGUI(board);
+            if (replay != null) {
+                EventQueue.invokeLater(new Runnable() {
+                    public void run() {
+                        gui.replay(replay);
+                    }
+                });
+            }
+            gui.displayGame();
+            EventQueue.invokeLater(new Runnable() {
+                public void run() {
+                    timer.firstFrame();
+                    timer.interactive();
+                }
+            });
+            return;
+        }
+
+        final double scale = CardImages.defaultScale();
+        ExecutorService startup = Executors.newFixedThreadPool(3);
+        Future<Board> boardReady = startup.submit(new Callable<Board>() {
+            public Board call() {
+                return replay == null ? newBoard() : boardLike(replay.board());
+            }
+        });
+        Future<?> imagesReady = startup.submit(new Runnable() {
+            public void run() {
+                CardImages.forScale(scale).preload(SolitaireBoard.ranks(),
+                                                   SolitaireBoard.suits());
+            }
+        });
+        Future<StatsStore> statsReady = startup.submit(new Callable<StatsStore>() {
+            public StatsStore call() {
+                return CardGameGUI.openStats();
+            }
+        });
+        startup.shutdown();
+
+        final CardGameGUI[] gui = new CardGameGUI[1];
+        EventQueue.invokeLater(new Runnable() {
+            public void run() {
+                gui[0] = new CardGameGUI(scale);
+                gui[0].setVisible(true);
+                timer.firstFrame();
+            }
+        });
+
+        final Board board;
+        final StatsStore stats;
+        try {
+            board = boardReady.get();
+            imagesReady.get();
+            stats = statsReady.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not set up the game", e.getCause());
+        }
+        EventQueue.invokeLater(new Runnable() {
+            public void run() {
+                gui[0].setBoard(board, stats);
+                if (replay != null) {
+                    gui[0].replay(replay);
+                }
+                // Queued behind the paint of the filled-in table.
+                EventQueue.invokeLater(new Runnable() {
+                    public void run() {
+                        timer.interactive();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads a game from a directory of records, to be replayed.
+     * @param dir the directory
+     * @param game the number of the game, from 1
+     * @return the replay, at the start of the game.
+     * @throws IOException if the records cannot be read or have fewer games
+     */
+    private static GameReplay loadReplay(Path dir, long game) throws IOException {
+        try (GameRecordReader in = new GameRecordReader(dir)) {
+            for (long k = 1; ; k++) {
+                GameRecord record = in.read();
+                if (record == null) {
+                    throw new IOException(dir + " has fewer than " + game + " games");
+                }
+                if (k == game) {
+                    return new GameReplay(in.newBoard(), record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a board to play on with the layout and rules of another.
+     * @param other the board to copy the layout and rules of
+     * @return the board.
+     */
+    private static Board boardLike(Board other) {
+        return new SolitaireBoard(other.geometry(), other.ruleSet(), other.deckCount());
+    }
+
+    /**
+     * Builds the board, dealing the day's challenge if there is one.
+     * @return the board.
+     */
+    private static Board newBoard() {
         Board board = new SolitaireBoard();
-        CardGameGUI gui = new CardGameGUI(board);
-        gui.displayGame();
+        String daily = System.getProperty(DAILY_PROPERTY);
+        if (daily != null) {
+            try {
+                DailyChallenge challenge =
+                    DailyChallenge.load(Paths.get(daily), LocalDate.now(), board.ruleSet());
+                if (challenge != null) {
+                    board.newGame(challenge.seed());
+                }
+            } catch (IOException e) {
+                // Play a random deal instead.
+            }
+        }
+        return board;
     }
 }
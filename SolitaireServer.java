@@ -0,0 +1,580 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This is a class that hosts games of solitaire for remote players, without
+ * a display.  Clients connect to a socket on the local machine and send one
+ * command per line; every command gets a one-line reply starting with "OK"
+ * or "ERR".
+ * <pre>
+ * NEW [seed]           deal a game in a new session      OK id
+ * SHOW id              describe the position             OK stock=24 waste=- ...
+ * MOVES id             list the legal moves              OK t2&gt;t5*1 draw ...
+ * MOVE id code         make a move (see Move.code)       OK PLAYING|WON|LOST moves
+ * DEAL id [seed]       deal a new game in the session    OK
+ * SAVE id              save the game (base64 snapshot)   OK data
+ * RESTORE data         restore a game in a new session   OK id
+ * DAILY [yyyy-mm-dd]   deal the day's challenge (today   OK id EASY|MEDIUM|HARD
+ *                      by default) in a new session
+ * MATCH difficulty     deal a game the classifier rates  OK id
+ *                      EASY, MEDIUM or HARD
+ * CLOSE id             end the session                   OK
+ * PLAYER id name       count the session's games for     OK
+ *                      a player
+ * TOP [n]              the n best players (default 10)   OK name:wins/games ...
+ * STATS                server counters                   OK sessions=... p99us=...
+ * QUIT                 close the connection
+ * </pre>
+ * Sessions belong to no connection, so a player can reconnect and go on.
+ * Sessions that are not used for a while are removed.
+ */
+public class SolitaireServer {
+
+    /** The port listened on unless another is given. */
+    public static final int DEFAULT_PORT = 7777;
+
+    /** The number of buckets of the command latency histogram. */
+    private static final int HISTOGRAM_BUCKETS = 40;
+
+    /** The number of players listed by TOP unless another is given. */
+    private static final int DEFAULT_TOP = 10;
+
+    /** The number of deals MATCH rates before it gives up. */
+    private static final int MATCH_TRIES = 500;
+
+    /** The largest number of idle boards kept for reuse. */
+    private static final int BOARD_POOL_SIZE = 1024;
+
+    /** The live sessions. */
+    private SessionStore sessions;
+
+    /** The boards of closed sessions, waiting to be reused. */
+    private BoardPool<SolitaireBoard> boards;
+
+    /** The records of the players. */
+    private StatsStore stats;
+
+    /** The daily challenge file, or null if there is none. */
+    private Path dailyFile;
+
+    /** Rates deals for MATCH, or null if there is none. */
+    private DifficultyClassifier classifier;
+
+    /** The counters of every hosted game. */
+    private EngineMetrics metrics;
+
+    /** The writer the hosted games are recorded with, or null. */
+    private GameRecordWriter records;
+
+    /** The layout of new boards. */
+    private BoardGeometry layout;
+
+    /** The rules of new boards. */
+    private RuleSet rules;
+
+    /** The number of commands handled. */
+    private LongAdder commands;
+
+    /** Bucket k counts the commands that took from 2^k up to 2^(k+1) nanoseconds. */
+    private LongAdder[] latencyHistogram;
+
+    /**
+     * Creates a new <code>SolitaireServer</code> instance.
+     * @param shardCount the number of shards of the session map
+     * @param boardLayout the layout of new boards
+     * @param gameRules the rules of new boards
+     * @param playerStats the store the players' games are counted in
+     */
+    public SolitaireServer(int shardCount, BoardGeometry boardLayout, RuleSet gameRules,
+                           StatsStore playerStats) {
+        sessions = new SessionStore(shardCount);
+        stats = playerStats;
+        metrics = new EngineMetrics();
+        layout = boardLayout;
+        rules = gameRules;
+        boards = new BoardPool<SolitaireBoard>(BOARD_POOL_SIZE, new Supplier<SolitaireBoard>() {
+            public SolitaireBoard get() {
+                return new SolitaireBoard(layout, rules, 1);
+            }
+        });
+        commands = new LongAdder();
+        latencyHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+        for (int k = 0; k < HISTOGRAM_BUCKETS; k++) {
+            latencyHistogram[k] = new LongAdder();
+        }
+    }
+
+    /**
+     * Names the file the DAILY command reads the day's deal from.
+     * @param file the file written by <code>DailyChallengeBuilder</code>
+     */
+    public void setDailyChallenges(Path file) {
+        dailyFile = file;
+    }
+
+    /**
+     * Sets the model the MATCH command rates deals with.
+     * @param model the classifier
+     */
+    public void setClassifier(DifficultyClassifier model) {
+        classifier = model;
+    }
+
+    /**
+     * Records every game hosted from now on.
+     * @param writer the writer to record the games with, or null to stop
+     */
+    public void setGameRecords(GameRecordWriter writer) {
+        records = writer;
+    }
+
+    /**
+     * Runs the server until it is killed.  The counters of the hosted
+     * games can be watched through JMX under
+     * <code>Solitaire:type=EngineMetrics,name="server"</code>.
+     * <p>
+     * Each connection is served by a thread of its own from a pool, reading
+     * with blocking I/O; a player's latency depends only on the player's own
+     * commands.  (This would be a virtual thread per connection on a newer
+     * Java; the pool is the nearest thing on Java 8.)
+     * @param args "--port=N", "--shards=N", "--idle-minutes=N" to remove
+     *             sessions unused that long, "--max-connections=N",
+     *             "--draw=N" and "--recycles=N" for the draw rules, and
+     *             "--stats=FILE" to keep the players' records in a file,
+     *             "--daily=FILE" for the daily challenges,
+     *             "--classifier=FILE" for the model MATCH rates deals with,
+     *             and "--records=DIR" to record every game in a directory
+     * @throws IOException if the port cannot be listened on or the
+     *         statistics file cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int shards = 64;
+        long idleMinutes = 30;
+        int maxConnections = 4096;
+        ToolOptions options = new ToolOptions();
+        String statsFile = null;
+        String daily = null;
+        String model = null;
+        String recordsDir = null;
+        for (String arg : args) {
+            if (options.read(arg)) {
+                continue;
+            }
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--shards=")) {
+                shards = Integer.parseInt(arg.substring("--shards=".length()));
+            } else if (arg.startsWith("--idle-minutes=")) {
+                idleMinutes = Long.parseLong(arg.substring("--idle-minutes=".length()));
+            } else if (arg.startsWith("--max-connections=")) {
+                maxConnections = Integer.parseInt(arg.substring("--max-connections=".length()));
+            } else if (arg.startsWith("--stats=")) {
+                statsFile = arg.substring("--stats=".length());
+            } else if (arg.startsWith("--daily=")) {
+                daily = arg.substring("--daily=".length());
+            } else if (arg.startsWith("--classifier=")) {
+                model = arg.substring("--classifier=".length());
+            } else if (arg.startsWith("--records=")) {
+                recordsDir = arg.substring("--records=".length());
+            }
+        }
+        final StatsStore stats = statsFile == null ? new StatsStore()
+            : StatsStore.open(Paths.get(statsFile));
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                try {
+                    stats.close();
+                } catch (IOException e) {
+                    // The games since the last write are lost.
+                }
+            }
+        }, "stats-saver"));
+        RuleSet rules = options.rules();
+        final SolitaireServer server = new SolitaireServer(shards, BoardGeometry.STANDARD,
+            rules, stats);
+        server.metrics.register("server");
+        if (daily != null) {
+            server.setDailyChallenges(Paths.get(daily));
+        }
+        if (model != null) {
+            server.setClassifier(DifficultyClassifier.load(Paths.get(model)));
+        }
+        if (recordsDir != null) {
+            final GameRecordWriter records = new GameRecordWriter(Paths.get(recordsDir),
+                BoardGeometry.STANDARD, rules);
+            server.setGameRecords(records);
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        records.close();
+                    } catch (IOException e) {
+                        // The games since the last write are lost.
+                    }
+                }
+            }, "records-closer"));
+        }
+
+        final long idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        ScheduledExecutorService evictor =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("session-evictor"));
+        long period = Math.max(TimeUnit.SECONDS.toNanos(1), idleNanos / 4);
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                server.evictIdle(idleNanos);
+            }
+        }, period, period, TimeUnit.NANOSECONDS);
+
+        ThreadPoolExecutor connections = new ThreadPoolExecutor(0, maxConnections,
+            60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            daemonThreads("connection"));
+        ServerSocket listener = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        System.out.println("Solitaire server listening on " + listener.getLocalSocketAddress());
+        while (true) {
+            final Socket socket = listener.accept();
+            try {
+                connections.execute(new Runnable() {
+                    public void run() {
+                        server.serve(socket);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                socket.getOutputStream().write(
+                    "ERR server busy\n".getBytes(StandardCharsets.US_ASCII));
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Answers the commands of one connection until the client quits or
+     * goes away.
+     * @param socket the connection
+     */
+    public void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                out.write(handle(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; its sessions live on until they idle out.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing more to do.
+            }
+        }
+    }
+
+    /**
+     * Carries out one command.
+     * @param line the command
+     * @return the reply, without a line end.
+     */
+    public String handle(String line) {
+        long start = System.nanoTime();
+        String reply;
+        try {
+            reply = execute(line.trim().split("\\s+"));
+        } catch (IllegalArgumentException e) {
+            reply = "ERR " + e.getMessage();
+        }
+        long nanos = System.nanoTime() - start;
+        commands.increment();
+        int bucket = 63 - Long.numberOfLeadingZeros(Math.max(nanos, 1));
+        latencyHistogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)].increment();
+        return reply;
+    }
+
+    /**
+     * Carries out one command, split into words.
+     */
+    private String execute(String[] words) {
+        String command = words[0].toUpperCase();
+        if (command.equals("NEW")) {
+            SolitaireBoard board = sessionBoard();
+            GameSession session = sessions.create(board);
+            session.newGame(seed(words, 1));
+            return "OK " + session.id();
+        } else if (command.equals("RESTORE")) {
+            if (words.length < 2) {
+                throw new IllegalArgumentException("missing snapshot");
+            }
+            SolitaireBoard board = sessionBoard();
+            GameSession session = sessions.create(board);
+            try {
+                session.restore(Base64.getDecoder().decode(words[1]));
+            } catch (IllegalArgumentException e) {
+                sessions.remove(session.id());
+                close(session);
+                throw e;
+            }
+            return "OK " + session.id();
+        } else if (command.equals("DAILY")) {
+            DailyChallenge challenge = daily(words.length > 1 ? words[1] : null);
+            SolitaireBoard board = sessionBoard();
+            GameSession session = sessions.create(board);
+            session.newGame(challenge.seed());
+            return "OK " + session.id() + " " + challenge.difficulty();
+        } else if (command.equals("MATCH")) {
+            long seed = match(words.length > 1 ? words[1] : "");
+            SolitaireBoard board = sessionBoard();
+            GameSession session = sessions.create(board);
+            session.newGame(seed);
+            return "OK " + session.id();
+        } else if (command.equals("TOP")) {
+            int n = DEFAULT_TOP;
+            if (words.length > 1) {
+                try {
+                    n = Integer.parseInt(words[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("bad count " + words[1]);
+                }
+            }
+            StringBuilder reply = new StringBuilder("OK");
+            for (PlayerStats player : stats.top(n)) {
+                reply.append(' ').append(player.name().replace(' ', '_'))
+                    .append(':').append(player.wins()).append('/').append(player.games());
+            }
+            return reply.toString();
+        } else if (command.equals("STATS")) {
+            return "OK sessions=" + sessions.size() + " commands=" + commands.sum()
+                + String.format(" p99us=%.1f", latencyP99Micros())
+                + " games=" + metrics.getGamesPlayed() + " moves=" + metrics.getMovesMade();
+        }
+        if (words.length < 2) {
+            throw new IllegalArgumentException("unknown command or missing session id");
+        }
+        GameSession session = session(words[1]);
+        if (command.equals("SHOW")) {
+            return "OK " + session.describe();
+        } else if (command.equals("MOVES")) {
+            return "OK " + session.legalMoves();
+        } else if (command.equals("MOVE")) {
+            if (words.length < 3) {
+                throw new IllegalArgumentException("missing move");
+            }
+            if (!session.play(Move.parse(words[2]))) {
+                throw new IllegalArgumentException("illegal move " + words[2]);
+            }
+            return "OK " + session.status() + " " + session.movesMade();
+        } else if (command.equals("DEAL")) {
+            session.newGame(seed(words, 2));
+            return "OK";
+        } else if (command.equals("SAVE")) {
+            return "OK " + Base64.getEncoder().encodeToString(session.snapshot());
+        } else if (command.equals("PLAYER")) {
+            if (words.length < 3) {
+                throw new IllegalArgumentException("missing player name");
+            }
+            session.countFor(new StatsRecorder(stats, words[2]));
+            return "OK";
+        } else if (command.equals("CLOSE")) {
+            sessions.remove(session.id());
+            close(session);
+            return "OK";
+        }
+        throw new IllegalArgumentException("unknown command " + words[0]);
+    }
+
+    /**
+     * Removes the sessions that have not been used for a while, ending
+     * their games.
+     * @param idleNanos how long a session may go unused
+     * @return the number of sessions removed.
+     */
+    public int evictIdle(long idleNanos) {
+        int n = 0;
+        for (GameSession session : sessions.evictIdle(idleNanos)) {
+            close(session);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Takes a board from the pool for a new session, counted in the
+     * metrics and recorded if games are recorded.
+     */
+    private SolitaireBoard sessionBoard() {
+        SolitaireBoard board = boards.acquire();
+        board.addGameListener(metrics);
+        GameRecordWriter writer = records;
+        if (writer != null) {
+            board.addGameListener(new GameRecorder(writer, board));
+        }
+        return board;
+    }
+
+    /**
+     * Closes a session that has been removed, ending its game, and puts
+     * its board back in the pool.
+     */
+    private void close(GameSession session) {
+        SolitaireBoard board = session.close();
+        if (board != null) {
+            boards.release(board);
+        }
+    }
+
+    /**
+     * Accesses the counters of the hosted games.
+     * @return the metrics.
+     */
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Works out the 99th percentile of the command latency.
+     * @return the latency in microseconds, to the histogram's
+     *         power-of-two resolution.
+     */
+    public double latencyP99Micros() {
+        long total = commands.sum();
+        long seen = 0;
+        for (int k = 0; k < HISTOGRAM_BUCKETS && total > 0; k++) {
+            seen += latencyHistogram[k].sum();
+            if (seen * 100 >= total * 99) {
+                return (1L << (k + 1)) / 1000.0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the session named by a word of a command.
+     */
+    private GameSession session(String word) {
+        GameSession session;
+        try {
+            session = sessions.get(Long.parseLong(word));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad session id " + word);
+        }
+        if (session == null) {
+            throw new IllegalArgumentException("no session " + word);
+        }
+        return session;
+    }
+
+    /**
+     * Finds a random deal the classifier rates as wanted.  The deals are
+     * tried on a board of the pool, which has no listeners.
+     * @param wanted the name of the difficulty
+     * @return the seed of the deal.
+     */
+    private long match(String wanted) {
+        if (classifier == null) {
+            throw new IllegalArgumentException("no classifier");
+        }
+        DailyChallenge.Difficulty difficulty;
+        try {
+            difficulty = DailyChallenge.Difficulty.valueOf(wanted.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("bad difficulty " + wanted);
+        }
+        SolitaireBoard board = boards.acquire();
+        try {
+            DealFeatures features = new DealFeatures(board);
+            int[] vector = new int[DealFeatures.COUNT];
+            for (int k = 0; k < MATCH_TRIES; k++) {
+                long seed = ThreadLocalRandom.current().nextLong();
+                if (classifier.predict(features.extract(seed, vector)) == difficulty) {
+                    return seed;
+                }
+            }
+        } finally {
+            boards.release(board);
+        }
+        throw new IllegalArgumentException("no " + difficulty + " deal found");
+    }
+
+    /**
+     * Reads the daily challenge of a day.
+     * @param date the day, as yyyy-mm-dd, or null for today
+     */
+    private DailyChallenge daily(String date) {
+        if (dailyFile == null) {
+            throw new IllegalArgumentException("no daily challenges");
+        }
+        LocalDate day;
+        try {
+            day = date == null ? LocalDate.now() : LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("bad date " + date);
+        }
+        DailyChallenge challenge;
+        try {
+            challenge = DailyChallenge.load(dailyFile, day, rules);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (challenge == null) {
+            throw new IllegalArgumentException("no challenge for " + day);
+        }
+        return challenge;
+    }
+
+    /**
+     * Reads the optional seed of a command.
+     */
+    private static Long seed(String[] words, int k) {
+        if (words.length <= k) {
+            return null;
+        }
+        try {
+            return Long.valueOf(words[k]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad seed " + words[k]);
+        }
+    }
+
+    /**
+     * Makes a factory of daemon threads named after what they do.
+     */
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+}
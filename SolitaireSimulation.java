@@ -1,45 +1,169 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 /**
  * This is a class that plays noninteractive games of Elevens.
  * See accompanying documents for a description of how Elevens is played.
  */
 public class SolitaireSimulation {
-    
+
     /**
      * The number of games of Elevens to play.
      */
     private static final int GAMES_TO_PLAY = 1;
 
     /**
-     * Flag used to control debugging print statements.
+     * The number of moves after which a game is given up.  Loops are
+     * caught as repeated positions, so this only bounds a game that
+     * keeps finding new positions.
      */
-    private static final boolean I_AM_DEBUGGING = true;
-
+    private static final int MAX_MOVES_PER_GAME = 500;
 
     /**
-     * @param args is not used.
+     * The number of moves between checks for a dead end.  A check costs
+     * about as much as a move, so checking after every move would double
+     * the time of a game.
      */
-    public static void main(String[] args) {
-        SolitaireBoard board = new SolitaireBoard();
-        int wins = 0;
+    private static final int DEAD_END_INTERVAL = 16;
+
 
-        for (int k = 0; k < GAMES_TO_PLAY; k++) {
-            if (I_AM_DEBUGGING) {
-                System.out.println(board);
+    /**
+     * Plays the games.  Nothing is printed while they are played unless
+     * a trace is asked for; the counts can be watched through JMX under
+     * <code>Solitaire:type=EngineMetrics,name="simulation"</code>.
+     * @param args "--games=N" to play N games, "--threads=N" to play them on
+     *             N threads, "--decks=N" to play with N decks and 4N foundations,
+     *             "--draw=N" to turn N cards over per draw, "--recycles=N" to
+     *             allow turning the waste over N times (-1 for no limit),
+     *             "--trace" to print every event and the board after
+     *             every move, or "--trace-file=NAME" to write them to a file,
+     *             and "--records=DIR" to record every game in a directory.
+     * @throws IOException if the trace file or the records cannot be written
+     * @throws InterruptedException if interrupted while the games are played
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = GAMES_TO_PLAY;
+        int threads = 1;
+        int decks = 1;
+        ToolOptions options = new ToolOptions();
+        PrintGameListener trace = null;
+        String recordsDir = null;
+        for (String arg : args) {
+            if (options.read(arg)) {
+                continue;
+            }
+            if (arg.equals("--trace")) {
+                trace = PrintGameListener.console(true);
+            } else if (arg.startsWith("--trace-file=")) {
+                trace = PrintGameListener.file(arg.substring("--trace-file=".length()), true);
+            } else if (arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--decks=")) {
+                decks = Integer.parseInt(arg.substring("--decks=".length()));
+            } else if (arg.startsWith("--records=")) {
+                recordsDir = arg.substring("--records=".length());
             }
-            while (board.playIfPossible()) {
-                if (I_AM_DEBUGGING) {
-                    System.out.println(board);
+        }
+        final EngineMetrics metrics = new EngineMetrics();
+        metrics.register("simulation");
+        final BoardGeometry layout = decks == 1
+            ? BoardGeometry.STANDARD
+            : new BoardGeometry(BoardGeometry.STANDARD.columns(),
+                                SolitaireBoard.suits().length * decks,
+                                BoardGeometry.STANDARD.visibleRows());
+        final int deckCount = decks;
+        final RuleSet rules = options.rules();
+        final GameRecordWriter records = recordsDir == null ? null
+            : new GameRecordWriter(Paths.get(recordsDir), layout, rules);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            final int gamesForThread = games / threads + (t < games % threads ? 1 : 0);
+            final PrintGameListener threadTrace = trace;
+            workers.execute(new Runnable() {
+                public void run() {
+                    SolitaireBoard board = new SolitaireBoard(layout, rules, deckCount);
+                    board.addGameListener(metrics);
+                    if (threadTrace != null) {
+                        board.addGameListener(threadTrace);
+                    }
+                    if (records != null) {
+                        board.addGameListener(new GameRecorder(records, board));
+                    }
+                    play(board, gamesForThread);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        if (trace != null) {
+            trace.close();
+        }
+        if (records != null) {
+            records.close();
+        }
+
+        long wins = metrics.getGamesWon();
+        long played = metrics.getGamesPlayed();
+        double percentWon = (int)(1000.0 * wins / played + 0.5) / 10.0;
+        System.out.println("Games won:    " + wins);
+        System.out.println("Games played: " + played);
+        System.out.println("Percent won:  " + percentWon + "%");
+        System.out.println(metrics);
+    }
+
+    /**
+     * Plays games on a board, starting with the one already dealt.  A game
+     * is given up as lost once it is seen to be a dead end; the check is
+     * made each time another <code>DEAD_END_INTERVAL</code> moves have
+     * been made, a play often being several moves.  The player always
+     * plays the same way from the same position, so a game that comes
+     * back to a position it was in has gone into a loop and is stopped.
+     * That only shows the player cannot win it, not that the deal cannot
+     * be won, so it counts as stuck rather than lost.  Positions are
+     * compared by a 64-bit hash, so a collision can stop a game that had
+     * not looped, though that is too rare to show in the counts.
+     * Once nothing is hidden the rest of the game is played at once by
+     * <code>autoComplete</code>.
+     * @param board the board to play on
+     * @param games the number of games to play
+     */
+    private static void play(SolitaireBoard board, int games) {
+        Solver.LongSet seen = new Solver.LongSet();
+        for (int k = 0; k < games; k++) {
+            seen.clear();
+            seen.add(Solver.positionKey(board));
+            int lastCheck = -DEAD_END_INTERVAL;
+            boolean repeated = false;
+            while (board.movesMade() < MAX_MOVES_PER_GAME) {
+                if (board.movesMade() - lastCheck >= DEAD_END_INTERVAL) {
+                    lastCheck = board.movesMade();
+                    if (board.isDeadEnd()) {
+                        break;
+                    }
+                }
+                if (board.autoComplete() || !board.playIfPossible()) {
+                    break;
+                }
+                if (!seen.add(Solver.positionKey(board))) {
+                    // A loop, or in rare cases two positions with one hash.
+                    repeated = true;
+                    break;
                 }
             }
             if (board.gameIsWon()) {
-                wins++;
+                board.endGame(GameOutcome.WON);
+            } else if (board.isDeadEnd() || !repeated && !board.anotherPlayIsPossible()) {
+                board.endGame(GameOutcome.LOST);
+            } else {
+                board.endGame(GameOutcome.STUCK);
             }
             board.newGame();
         }
-
-        double percentWon = (int)(1000.0 * wins / GAMES_TO_PLAY + 0.5) / 10.0;
-        System.out.println("Games won:    " + wins);
-        System.out.println("Games played: " + GAMES_TO_PLAY);
-        System.out.println("Percent won:  " + percentWon + "%");
     }
 }
@@ -0,0 +1,361 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Solver.java
+ *
+ * <code>Solver</code> searches for a way to win the game on a board.  It
+ * tries the moves depth first, in the order a <code>MoveOrdering</code>
+ * gives them, restoring the board from a snapshot after each line, and
+ * never expands a position twice.
+ * Positions are told apart by a 64-bit hash in which the order of the
+ * columns and of the foundations does not count, so the same cards in
+ * other columns are one position.
+ * <p>
+ * Moves that only shift a run from one face-up card to another are tried
+ * only when they uncover a card that can go to a foundation.  After the
+ * moves at a position are searched, the one that led to the most
+ * progress is rewarded, so the ordering learns as the search goes.  A search
+ * that runs out of moves therefore shows that this solver cannot win the
+ * deal, not that no one can.  A win it finds is always a real win.
+ * Positions the board's <code>isDeadEnd</code> check shows to be lost
+ * are not expanded.  Given an <code>EndgameTable</code>, the solver
+ * looks endgames up instead of searching them: a lost one is dropped and
+ * a won one is finished by the table's shortest line.
+ */
+public class Solver {
+
+    /** What a search found. */
+    public enum Result {
+        /** A winning line was found; see <code>solution</code>. */
+        SOLVED,
+        /** Every line the solver tries was searched without a win. */
+        EXHAUSTED,
+        /** The search ran out of nodes or time first. */
+        GAVE_UP
+    }
+
+    /** The longest line searched, in moves. */
+    public static final int MAX_DEPTH = 400;
+
+    /** The number of nodes between looks at the clock. */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    /** What <code>search</code> returns when it finds a win. */
+    private static final int WON = Integer.MAX_VALUE;
+
+    /** The board searched on. */
+    private Board board;
+
+    /** The order the moves are tried in. */
+    private MoveOrdering ordering;
+
+    /** The legal moves at each depth of the current line. */
+    private List<List<Move>> movesAt;
+
+    /** The current line, then the winning line. */
+    private List<Move> line;
+
+    /** The positions expanded so far. */
+    private LongSet seen;
+
+    /** The number of positions expanded. */
+    private long nodes;
+
+    /** The length of the longest line searched. */
+    private int deepest;
+
+    /** The largest number of positions to expand. */
+    private long nodeBudget;
+
+    /** When to give up (System.nanoTime). */
+    private long deadline;
+
+    /** Whether the budget ran out. */
+    private boolean gaveUp;
+
+    /** The known endgames, or null. */
+    private EndgameTable endgames;
+
+    /** The canonical position of the board, for the endgame lookups. */
+    private CanonicalPosition endgamePosition;
+
+    /**
+     * Creates a new <code>Solver</code> instance that orders the moves by
+     * their static priorities and what it learns while searching.
+     * @param gameBoard the board to search on; its listeners are told of
+     *                  every move tried, so it should have none
+     */
+    public Solver(Board gameBoard) {
+        this(gameBoard, new MoveOrdering(gameBoard, MoveOrdering.Mode.LEARNED));
+    }
+
+    /**
+     * Creates a new <code>Solver</code> instance.
+     * @param gameBoard the board to search on; its listeners are told of
+     *                  every move tried, so it should have none
+     * @param moveOrdering the order to try the moves in, made for the same board
+     */
+    public Solver(Board gameBoard, MoveOrdering moveOrdering) {
+        board = gameBoard;
+        ordering = moveOrdering;
+        movesAt = new ArrayList<List<Move>>();
+        line = new ArrayList<Move>();
+        seen = new LongSet();
+    }
+
+    /**
+     * Searches for a win from the position on the board.  The board is
+     * put back in that position afterwards.
+     * @param maxNodes the largest number of positions to expand
+     * @param maxNanos the longest time to search for
+     * @return what the search found.
+     */
+    public Result solve(long maxNodes, long maxNanos) {
+        JfrSearchEvent event = new JfrSearchEvent();
+        event.begin();
+        nodes = 0;
+        deepest = 0;
+        nodeBudget = maxNodes;
+        deadline = System.nanoTime() + maxNanos;
+        gaveUp = false;
+        line.clear();
+        seen.clear();
+        ordering.clear();
+        byte[] start = BoardSnapshot.encode(board);
+        boolean won = search(0) == WON;
+        BoardSnapshot.decode(start, board);
+        Result result = won ? Result.SOLVED : gaveUp ? Result.GAVE_UP : Result.EXHAUSTED;
+        event.finish(board.seed(), nodes, deepest, result.name());
+        return result;
+    }
+
+    /**
+     * Gives the solver a table of endgames to look up rather than search.
+     * @param table the table, made for the rules of the board, or null
+     *              to search every position
+     */
+    public void setEndgameTable(EndgameTable table) {
+        endgames = table;
+        if (table != null && endgamePosition == null) {
+            endgamePosition = new CanonicalPosition(board);
+        }
+    }
+
+    /**
+     * Accesses the winning line of the last search.
+     * @return the moves from the starting position to the win, or an
+     *         empty list if no win was found.
+     */
+    public List<Move> solution() {
+        return line;
+    }
+
+    /**
+     * Accesses the number of positions the last search expanded.
+     * @return the number of nodes.
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Accesses the length of the longest line of the last search.
+     * @return the depth in moves.
+     */
+    public int deepest() {
+        return deepest;
+    }
+
+    /**
+     * Searches the lines from the position on the board.
+     * @param depth the number of moves made since the search started
+     * @return <code>WON</code> if a win was found, and the board is then
+     *         left won; otherwise the most progress reached on any line.
+     */
+    private int search(int depth) {
+        if (board.gameIsWon()) {
+            return WON;
+        }
+        int progress = progress();
+        if (depth >= MAX_DEPTH || gaveUp || !seen.add(positionKey(board))
+            || board.isDeadEnd()) {
+            return progress;
+        }
+        if (endgames != null && EndgameTable.isEndgame(board)) {
+            int outcome = endgames.lookup(endgamePosition.hash());
+            if (outcome == EndgameTable.LOST) {
+                return progress;
+            }
+            if (outcome > 0 && finish()) {
+                return WON;
+            }
+        }
+        nodes++;
+        deepest = Math.max(deepest, depth);
+        if (nodes >= nodeBudget
+            || nodes % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+            gaveUp = true;
+            return progress;
+        }
+        GameListener listener = board.gameListener();
+        if (listener != null) {
+            listener.nodeExpanded(board, depth);
+        }
+        List<Move> moves = orderedMoves(depth);
+        byte[] position = BoardSnapshot.encode(board);
+        int best = progress;
+        Move bestMove = null;
+        for (int k = 0; k < moves.size(); k++) {
+            Move move = moves.get(k);
+            board.apply(move);
+            line.add(move);
+            int reached = search(depth + 1);
+            if (reached == WON) {
+                return WON;
+            }
+            line.remove(line.size() - 1);
+            BoardSnapshot.decode(position, board);
+            if (reached > best) {
+                best = reached;
+                bestMove = move;
+            }
+        }
+        if (bestMove != null) {
+            ordering.reward(bestMove, depth, best - progress);
+        }
+        return best;
+    }
+
+    /**
+     * Plays the endgame table's shortest line from the position on the
+     * board, adding it to the current line.
+     * @return true if the game was won; otherwise the board and the line
+     *         are put back as they were.
+     */
+    private boolean finish() {
+        byte[] start = BoardSnapshot.encode(board);
+        int length = line.size();
+        Move move;
+        while ((move = endgames.finishingMove(board, endgamePosition)) != null) {
+            board.apply(move);
+            line.add(move);
+        }
+        if (board.gameIsWon()) {
+            return true;
+        }
+        // A hash collision sent the line astray; search instead.
+        line.subList(length, line.size()).clear();
+        BoardSnapshot.decode(start, board);
+        return false;
+    }
+
+    /**
+     * Measures how far the game on the board has got: the cards on the
+     * foundations less the cards still face down.
+     */
+    private int progress() {
+        int progress = -board.faceDownCount();
+        for (int f = 0; f < board.foundationCount(); f++) {
+            progress += board.fPileSize(f);
+        }
+        return progress;
+    }
+
+    /**
+     * Lists the moves worth trying at a position, most promising first.
+     */
+    private List<Move> orderedMoves(int depth) {
+        while (movesAt.size() <= depth * 2 + 1) {
+            movesAt.add(new ArrayList<Move>());
+        }
+        List<Move> legal = board.legalMoves(movesAt.get(depth * 2));
+        return ordering.order(legal, depth, movesAt.get(depth * 2 + 1));
+    }
+
+    /**
+     * Hashes the position on a board: the columns and the foundations as
+     * unordered sets, and the stock and waste in order.  The moves made
+     * and the seed do not count.  Swapped suits are not folded together
+     * as in <code>CanonicalPosition</code>: within one deal two positions
+     * never differ by a swap of every red or black card, so that would
+     * only make the hash slower.
+     * @param board the board
+     * @return the hash.
+     */
+    static long positionKey(Board board) {
+        long key = 0;
+        for (int c = 0; c < board.tabColSize(); c++) {
+            CardStack column = board.column(c);
+            long h = Deck.mix(board.faceDownCount(c) + 1);
+            for (int k = 0; k < column.size(); k++) {
+                h = Deck.mix(h + column.get(k).id() + 1);
+            }
+            key += h;
+        }
+        for (int f = 0; f < board.foundationCount(); f++) {
+            Card top = board.fCardAt(f);
+            key += Deck.mix(0x51ED27L + (top == null ? 0 : top.id() + 1));
+        }
+        StockPile stock = board.stockPile();
+        long h = Deck.mix(stock.wasteSize() * 31L + stock.stockSize());
+        for (int k = 0; k < stock.wasteSize() + stock.stockSize(); k++) {
+            h = Deck.mix(h + stock.at(k).id() + 1);
+        }
+        if (stock.recycleLimit() != StockPile.UNLIMITED) {
+            h = Deck.mix(h + stock.recycles());
+        }
+        return key * 0x9E3779B97F4A7C15L + h;
+    }
+
+    /**
+     * An open-addressing set of longs that grows as needed, so the
+     * positions seen are not boxed.  Zero is stored on the side.
+     */
+    static class LongSet {
+        private long[] table = new long[1 << 12];
+        private int size;
+        private boolean hasZero;
+
+        /** Adds a value; returns false if it was already there. */
+        boolean add(long value) {
+            if (value == 0) {
+                boolean added = !hasZero;
+                hasZero = true;
+                return added;
+            }
+            int mask = table.length - 1;
+            int k = (int) Deck.mix(value) & mask;
+            while (table[k] != 0) {
+                if (table[k] == value) {
+                    return false;
+                }
+                k = (k + 1) & mask;
+            }
+            table[k] = value;
+            if (++size * 2 > table.length) {
+                grow();
+            }
+            return true;
+        }
+
+        /** Empties the set, keeping its table. */
+        void clear() {
+            Arrays.fill(table, 0);
+            size = 0;
+            hasZero = false;
+        }
+
+        private void grow() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            size = 0;
+            for (long value : old) {
+                if (value != 0) {
+                    add(value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * SolverBenchmark.java
+ *
+ * <code>SolverBenchmark</code> gives the same deals to the
+ * <code>Solver</code> with each <code>MoveOrdering.Mode</code> and reports
+ * how many it won and how many positions it expanded for them.  The
+ * nodes per solved deal are compared over the deals every mode solved,
+ * so a mode is not flattered by giving up on the hard ones.
+ */
+public class SolverBenchmark {
+
+    /**
+     * Runs the benchmark and prints a line per mode.
+     * @param args "--from=SEED" (default 1) and "--games=N" (default 200)
+     *             for the deals; "--nodes=N" and "--budget-ms=N" to limit
+     *             each search; "--draw=N" and "--recycles=N" for the rules
+     */
+    public static void main(String[] args) {
+        long from = 1;
+        int games = 200;
+        ToolOptions options = new ToolOptions(200000, 2000);
+        for (String arg : args) {
+            if (options.read(arg)) {
+                continue;
+            }
+            if (arg.startsWith("--from=")) {
+                from = Long.parseLong(arg.substring("--from=".length()));
+            } else if (arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            }
+        }
+        RuleSet rules = options.rules();
+        SolitaireBoard board = new SolitaireBoard(BoardGeometry.STANDARD, rules, 1);
+        MoveOrdering.Mode[] modes = MoveOrdering.Mode.values();
+        long[][] expanded = new long[modes.length][games];
+        boolean[][] solved = new boolean[modes.length][games];
+        long[] millis = new long[modes.length];
+        for (int m = 0; m < modes.length; m++) {
+            Solver solver = new Solver(board, new MoveOrdering(board, modes[m]));
+            long start = System.nanoTime();
+            for (int g = 0; g < games; g++) {
+                board.newGame(from + g);
+                solved[m][g] = solver.solve(options.maxNodes(), options.maxNanos())
+                    == Solver.Result.SOLVED;
+                expanded[m][g] = solver.nodes();
+            }
+            millis[m] = (System.nanoTime() - start) / 1000000;
+        }
+
+        int common = 0;
+        boolean[] everyMode = new boolean[games];
+        for (int g = 0; g < games; g++) {
+            everyMode[g] = true;
+            for (int m = 0; m < modes.length; m++) {
+                everyMode[g] &= solved[m][g];
+            }
+            if (everyMode[g]) {
+                common++;
+            }
+        }
+        System.out.println(games + " deals from seed " + from + ", " + options.maxNodes()
+                           + " nodes at most; " + common + " solved by every mode");
+        for (int m = 0; m < modes.length; m++) {
+            int wins = 0;
+            long total = 0;
+            long[] commonNodes = new long[common];
+            int n = 0;
+            for (int g = 0; g < games; g++) {
+                if (solved[m][g]) {
+                    wins++;
+                }
+                if (everyMode[g]) {
+                    commonNodes[n++] = expanded[m][g];
+                    total += expanded[m][g];
+                }
+            }
+            Arrays.sort(commonNodes);
+            System.out.printf("%-8s solved %4d  mean nodes %9d  median nodes %7d  %6d ms%n",
+                              modes[m], wins, common == 0 ? 0 : total / common,
+                              common == 0 ? 0 : commonNodes[common / 2], millis[m]);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * This class measures how long the GUI takes to start:
+ * the time until the first frame is on the screen and the time until
+ * the game can be played.
+ */
+public class StartupTimer {
+
+    /** Time (System.nanoTime) at which startup began. */
+    private long start;
+    /** Milliseconds until the first frame was shown, or -1. */
+    private long firstFrameMillis;
+    /** Milliseconds until the game could be played, or -1. */
+    private long interactiveMillis;
+
+    /**
+     * Creates a new <code>StartupTimer</code> instance and starts timing.
+     */
+    public StartupTimer() {
+        start = System.nanoTime();
+        firstFrameMillis = -1;
+        interactiveMillis = -1;
+    }
+
+    /**
+     * Records that the first frame is on the screen.
+     */
+    public void firstFrame() {
+        firstFrameMillis = elapsedMillis();
+    }
+
+    /**
+     * Records that the game can be played, and reports both times.
+     */
+    public void interactive() {
+        interactiveMillis = elapsedMillis();
+        System.out.println(this);
+    }
+
+    /**
+     * Accesses the time to the first frame.
+     * @return milliseconds until the first frame was shown, or -1.
+     */
+    public long firstFrameMillis() {
+        return firstFrameMillis;
+    }
+
+    /**
+     * Accesses the time until the game could be played.
+     * @return milliseconds until the game could be played, or -1.
+     */
+    public long interactiveMillis() {
+        return interactiveMillis;
+    }
+
+    /**
+     * Generates and returns a string representation of the startup times.
+     * @return the startup times.
+     */
+    @Override
+    public String toString() {
+        return "Startup: first frame after " + firstFrameMillis
+            + " ms, interactive after " + interactiveMillis + " ms";
+    }
+
+    /**
+     * Time since startup began.
+     * @return the elapsed time in milliseconds.
+     */
+    private long elapsedMillis() {
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * StatsRecorder.java
+ *
+ * <code>StatsRecorder</code> is a <code>GameListener</code> that counts
+ * the games played on a board in one player's record in a
+ * <code>StatsStore</code>.  Games that are won or lost are counted, with
+ * the time since the deal and the moves made; games given up are not.
+ */
+public class StatsRecorder implements GameListener {
+
+    /** The store the games are counted in. */
+    private StatsStore store;
+
+    /** The player. */
+    private String player;
+
+    /** When the current game was dealt (System.nanoTime). */
+    private volatile long started;
+
+    /**
+     * Creates a new <code>StatsRecorder</code> instance.  The game on the
+     * board when it is attached is timed from the moment it is created.
+     * @param statsStore the store to count the games in
+     * @param playerName the player
+     */
+    public StatsRecorder(StatsStore statsStore, String playerName) {
+        store = statsStore;
+        player = playerName;
+        started = System.nanoTime();
+    }
+
+    /**
+     * Accesses the player whose games are counted.
+     * @return the player's name.
+     */
+    public String player() {
+        return player;
+    }
+
+    @Override
+    public void gameStarted(Board board) {
+        started = System.nanoTime();
+    }
+
+    @Override
+    public void gameEnded(Board board, GameOutcome outcome) {
+        if (outcome != GameOutcome.STUCK) {
+            long millis = (System.nanoTime() - started) / 1000000;
+            store.record(player, outcome == GameOutcome.WON, millis, board.movesMade());
+        }
+    }
+}
@@ -0,0 +1,361 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatsStore.java
+ *
+ * <code>StatsStore</code> keeps the records of every player and a
+ * leaderboard, and makes them outlive the program.  It can be shared by
+ * the GUI and by every thread of the server.
+ * <p>
+ * Recording a game updates the player's lock-free accumulators and the
+ * leaderboard and queues the game; nothing on that path locks or touches
+ * the disk.  A background thread appends the queued games to a log once
+ * a second and, every <code>SNAPSHOT_EVERY</code> games, compacts the log
+ * into a snapshot of every record.  The snapshot is written from a copy of
+ * the records that only the background thread updates, so it always
+ * matches the log it replaces.
+ * <p>
+ * A store kept in "stats" has its snapshot in "stats" and its log in
+ * "stats.log.G", where G is the generation named on the first line of
+ * the snapshot.  Opening the store reads the snapshot and replays its log.
+ */
+public class StatsStore {
+
+    /** The number of logged games after which the log is compacted. */
+    public static final int SNAPSHOT_EVERY = 10000;
+
+    /** How often the queued games are written to the log. */
+    private static final long FLUSH_MILLIS = 1000;
+
+    /** The first word of a snapshot. */
+    private static final String HEADER = "solitaire-stats";
+
+    /** The live records, by player name. */
+    private Map<String, PlayerStats> players;
+
+    /** The players in rank order. */
+    private Leaderboard leaderboard;
+
+    /** The games recorded but not yet logged. */
+    private ConcurrentLinkedQueue<LoggedGame> pending;
+
+    /** The snapshot file, or null if nothing is saved. */
+    private Path file;
+
+    /** The records as logged; only used by the thread writing the log. */
+    private Map<String, PlayerStats> logged;
+
+    /** The generation of the snapshot and of the open log. */
+    private long generation;
+
+    /** The open log. */
+    private BufferedWriter log;
+
+    /** The number of games in the open log. */
+    private int loggedGames;
+
+    /** Writes the log; null if nothing is saved. */
+    private ScheduledExecutorService writer;
+
+    /**
+     * Creates a new, empty <code>StatsStore</code> instance that is not
+     * saved anywhere.
+     */
+    public StatsStore() {
+        players = new ConcurrentHashMap<String, PlayerStats>();
+        leaderboard = new Leaderboard();
+        pending = new ConcurrentLinkedQueue<LoggedGame>();
+    }
+
+    /**
+     * Opens the store kept in a file, creating it if there is none yet,
+     * and starts writing the games recorded to it.
+     * @param snapshotFile the snapshot file; its log is kept beside it
+     * @return the store.
+     * @throws IOException if the store cannot be read or the log cannot
+     *         be opened
+     */
+    public static StatsStore open(Path snapshotFile) throws IOException {
+        StatsStore store = new StatsStore();
+        store.file = snapshotFile;
+        store.logged = new HashMap<String, PlayerStats>();
+        store.read();
+        store.log = Files.newBufferedWriter(store.logFile(store.generation),
+            StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        store.writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "stats-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        store.writer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    store.flush();
+                } catch (IOException e) {
+                    // Keep the games queued and try again next time.
+                }
+            }
+        }, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        return store;
+    }
+
+    /**
+     * Counts a finished game.
+     * @param playerName the player
+     * @param won true if the game was won; false if it was lost
+     * @param millis how long the game took
+     * @param moves the number of moves made
+     */
+    public void record(String playerName, boolean won, long millis, int moves) {
+        String name = clean(playerName);
+        PlayerStats player = player(name, players);
+        player.record(won, millis, moves);
+        leaderboard.update(player);
+        if (file != null) {
+            pending.add(new LoggedGame(name, won, millis, moves));
+        }
+    }
+
+    /**
+     * Finds the record of a player.
+     * @param playerName the player
+     * @return the record, or null if the player has finished no game.
+     */
+    public PlayerStats player(String playerName) {
+        return players.get(clean(playerName));
+    }
+
+    /**
+     * Lists the best players.
+     * @param n the largest number of players to list
+     * @return the players, best first.
+     */
+    public List<PlayerStats> top(int n) {
+        return leaderboard.top(n);
+    }
+
+    /**
+     * Writes the queued games to the log, compacting it if it has grown
+     * long enough.
+     * @throws IOException if the log or the snapshot cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (file == null) {
+            return;
+        }
+        LoggedGame game;
+        boolean wrote = false;
+        while ((game = pending.peek()) != null) {
+            log.write(game.toString());
+            log.newLine();
+            pending.poll();
+            player(game.name, logged).record(game.won, game.millis, game.moves);
+            loggedGames++;
+            wrote = true;
+        }
+        if (wrote) {
+            log.flush();
+        }
+        if (loggedGames >= SNAPSHOT_EVERY) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes every queued game and a fresh snapshot and stops writing.
+     * Games recorded afterwards are kept in memory only.
+     * @throws IOException if the log or the snapshot cannot be written
+     */
+    public synchronized void close() throws IOException {
+        if (file == null) {
+            return;
+        }
+        writer.shutdown();
+        flush();
+        compact();
+        log.close();
+        file = null;
+    }
+
+    /**
+     * Writes a snapshot of the logged records as the next generation and
+     * starts its empty log.  The old log is deleted only once the new
+     * snapshot is in place, so a crash at any point leaves a snapshot and
+     * the log that goes with it.
+     */
+    private void compact() throws IOException {
+        long next = generation + 1;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(HEADER + " generation=" + next);
+            out.newLine();
+            for (PlayerStats player : logged.values()) {
+                out.write(player.name() + "\t" + player.games() + "\t" + player.wins()
+                    + "\t" + player.streak() + "\t" + player.bestStreak()
+                    + "\t" + player.bestMillis() + "\t" + player.fewestMoves());
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.close();
+        Files.deleteIfExists(logFile(generation));
+        generation = next;
+        log = Files.newBufferedWriter(logFile(generation), StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        loggedGames = 0;
+    }
+
+    /**
+     * Reads the snapshot and replays its log into both sets of records.
+     */
+    private void read() throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null || !header.startsWith(HEADER + " generation=")) {
+                throw new IOException(file + " is not a statistics snapshot");
+            }
+            generation = Long.parseLong(header.substring((HEADER + " generation=").length()));
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t");
+                long games = Long.parseLong(f[1]);
+                long wins = Long.parseLong(f[2]);
+                int streak = Integer.parseInt(f[3]);
+                int bestStreak = Integer.parseInt(f[4]);
+                long bestMillis = Long.parseLong(f[5]);
+                int fewestMoves = Integer.parseInt(f[6]);
+                player(f[0], players).load(games, wins, streak, bestStreak, bestMillis, fewestMoves);
+                player(f[0], logged).load(games, wins, streak, bestStreak, bestMillis, fewestMoves);
+            }
+        } catch (NoSuchFileException e) {
+            generation = 0;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException(file + " is damaged", e);
+        }
+        // The log is at most SNAPSHOT_EVERY lines, so it is read whole.
+        Path logPath = logFile(generation);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(logPath);
+        } catch (NoSuchFileException e) {
+            // No game since the snapshot.
+            bytes = new byte[0];
+        }
+        int kept = 0;
+        for (int end = 0; end < bytes.length; end++) {
+            if (bytes[end] != '\n') {
+                continue;
+            }
+            int length = end - kept;
+            if (length > 0 && bytes[end - 1] == '\r') {
+                length--;
+            }
+            String line = new String(bytes, kept, length, StandardCharsets.UTF_8);
+            LoggedGame game = LoggedGame.parse(line);
+            if (game == null) {
+                break;
+            }
+            player(game.name, players).record(game.won, game.millis, game.moves);
+            player(game.name, logged).record(game.won, game.millis, game.moves);
+            loggedGames++;
+            kept = end + 1;
+        }
+        if (kept < bytes.length) {
+            // A line cut short by a crash; the games after it were never
+            // written.  It is cut off so that new games start on a line
+            // of their own.
+            try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                channel.truncate(kept);
+            }
+        }
+        for (PlayerStats player : players.values()) {
+            leaderboard.update(player);
+        }
+    }
+
+    /**
+     * Names the log of a generation.
+     */
+    private Path logFile(long logGeneration) {
+        return file.resolveSibling(file.getFileName() + ".log." + logGeneration);
+    }
+
+    /**
+     * Finds or adds the record of a player.
+     */
+    private static PlayerStats player(String name, Map<String, PlayerStats> records) {
+        PlayerStats player = records.get(name);
+        if (player == null) {
+            player = records.computeIfAbsent(name, PlayerStats::new);
+        }
+        return player;
+    }
+
+    /**
+     * Makes a player name safe to write: no tabs or line ends, not empty.
+     */
+    private static String clean(String name) {
+        String cleaned = name == null ? "" : name.trim().replaceAll("[\\t\\r\\n]", " ");
+        return cleaned.isEmpty() ? "anonymous" : cleaned;
+    }
+
+    /**
+     * One finished game, as queued and as written to the log.
+     */
+    private static class LoggedGame {
+        final String name;
+        final boolean won;
+        final long millis;
+        final int moves;
+
+        LoggedGame(String playerName, boolean gameWon, long gameMillis, int gameMoves) {
+            name = playerName;
+            won = gameWon;
+            millis = gameMillis;
+            moves = gameMoves;
+        }
+
+        /**
+         * Reads a log line.
+         * @return the game, or null if the line is not complete.
+         */
+        static LoggedGame parse(String line) {
+            String[] f = line.split("\t");
+            if (f.length != 4 || !(f[1].equals("W") || f[1].equals("L"))) {
+                return null;
+            }
+            try {
+                return new LoggedGame(f[0], f[1].equals("W"),
+                                      Long.parseLong(f[2]), Integer.parseInt(f[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + "\t" + (won ? "W" : "L") + "\t" + millis + "\t" + moves;
+        }
+    }
+}
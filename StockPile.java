@@ -0,0 +1,344 @@
+/**
+ * StockPile.java
+ *
+ * <code>StockPile</code> holds the stock and the waste of a game in one
+ * ring buffer.  Read around the ring from <code>start</code>, the buffer
+ * holds the waste from its bottom card to its top card and then the stock
+ * in the order it will be drawn.  Drawing moves the boundary between the
+ * two, and turning the waste over to form a new stock moves the boundary
+ * back to the start, so neither copies any cards.
+ */
+public class StockPile {
+
+    /** Recycle limit meaning the waste can be turned over any number of times. */
+    public static final int UNLIMITED = -1;
+
+    /** The cards, waste first, starting at start and wrapping around. */
+    private Card[] ring;
+
+    /** The position of the bottom card of the waste. */
+    private int start;
+
+    /** The number of cards in the waste. */
+    private int wasteSize;
+
+    /** The number of cards in the stock. */
+    private int stockSize;
+
+    /** The number of cards turned over from the stock in one draw. */
+    private int drawCount;
+
+    /** The number of times the waste may be turned over, or UNLIMITED. */
+    private int recycleLimit;
+
+    /** The number of times the waste has been turned over this game. */
+    private int recycles;
+
+    /**
+     * Creates a new, empty <code>StockPile</code> instance.
+     * @param capacity the largest number of cards the stock can hold
+     * @param cardsPerDraw the number of cards turned over in one draw, such as 1 or 3
+     * @param maxRecycles the number of times the waste may be turned over,
+     *                    or <code>UNLIMITED</code>
+     */
+    public StockPile(int capacity, int cardsPerDraw, int maxRecycles) {
+        ring = new Card[Math.max(1, capacity)];
+        setRules(cardsPerDraw, maxRecycles);
+    }
+
+    /**
+     * Creates a copy of a <code>StockPile</code>, for a board that is
+     * about to write to a stock it shares with a fork.
+     * @param original the stock and waste to copy
+     */
+    StockPile(StockPile original) {
+        ring = original.ring.clone();
+        start = original.start;
+        wasteSize = original.wasteSize;
+        stockSize = original.stockSize;
+        drawCount = original.drawCount;
+        recycleLimit = original.recycleLimit;
+        recycles = original.recycles;
+    }
+
+    /**
+     * Changes the draw rules.
+     * @param cardsPerDraw the number of cards turned over in one draw
+     * @param maxRecycles the number of times the waste may be turned over,
+     *                    or <code>UNLIMITED</code>
+     */
+    public void setRules(int cardsPerDraw, int maxRecycles) {
+        checkRules(cardsPerDraw, maxRecycles);
+        drawCount = cardsPerDraw;
+        recycleLimit = maxRecycles;
+    }
+
+    /**
+     * Makes sure draw rules can be played by.
+     * @param cardsPerDraw the number of cards turned over in one draw
+     * @param maxRecycles the number of times the waste may be turned over,
+     *                    or <code>UNLIMITED</code>
+     * @throws IllegalArgumentException if they cannot
+     */
+    static void checkRules(int cardsPerDraw, int maxRecycles) {
+        if (cardsPerDraw < 1 || maxRecycles < UNLIMITED) {
+            throw new IllegalArgumentException("Bad draw rules: draw " + cardsPerDraw
+                + ", recycle " + maxRecycles);
+        }
+    }
+
+    /**
+     * Takes every undealt card of a deck as the new stock, with an
+     * empty waste.
+     * @param deck the deck to take the cards from
+     */
+    public void fill(Deck deck) {
+        clear();
+        while (!deck.isEmpty()) {
+            ring[stockSize] = deck.deal();
+            stockSize++;
+        }
+    }
+
+    /**
+     * Removes every card from the stock and the waste.
+     */
+    public void clear() {
+        for (int k = 0; k < wasteSize + stockSize; k++) {
+            ring[(start + k) % ring.length] = null;
+        }
+        start = 0;
+        wasteSize = 0;
+        stockSize = 0;
+        recycles = 0;
+    }
+
+    /**
+     * Accesses the number of cards turned over in one draw.
+     * @return the draw count.
+     */
+    public int drawCount() {
+        return drawCount;
+    }
+
+    /**
+     * Accesses the number of times the waste may be turned over.
+     * @return the recycle limit, or <code>UNLIMITED</code>.
+     */
+    public int recycleLimit() {
+        return recycleLimit;
+    }
+
+    /**
+     * Accesses the number of times the waste has been turned over.
+     * @return the recycles used since the stock was filled.
+     */
+    public int recycles() {
+        return recycles;
+    }
+
+    /**
+     * Accesses the number of cards in the stock.
+     * @return the number of cards left to draw.
+     */
+    public int stockSize() {
+        return stockSize;
+    }
+
+    /**
+     * Accesses the number of cards in the waste.
+     * @return the number of cards in the waste.
+     */
+    public int wasteSize() {
+        return wasteSize;
+    }
+
+    /**
+     * Determines if both the stock and the waste are empty.
+     * @return true if there are no cards left here, false otherwise.
+     */
+    public boolean isEmpty() {
+        return wasteSize + stockSize == 0;
+    }
+
+    /**
+     * Accesses the top card of the waste.
+     * @return the top card of the waste, or null if the waste is empty.
+     */
+    public Card wasteTop() {
+        return wasteSize == 0 ? null : at(wasteSize - 1);
+    }
+
+    /**
+     * Accesses a card of the waste.
+     * @param depth how far down the card is, 0 for the top card
+     * @return the card, or null if the waste is not that deep.
+     */
+    public Card wasteCard(int depth) {
+        if (depth < 0 || depth >= wasteSize) {
+            return null;
+        }
+        return at(wasteSize - 1 - depth);
+    }
+
+    /**
+     * Determines if the waste can be turned over to form a new stock.
+     * @return true if the stock is empty, the waste is not, and
+     *         a recycle is left; false otherwise.
+     */
+    public boolean canRecycle() {
+        return stockSize == 0 && wasteSize > 0
+            && (recycleLimit == UNLIMITED || recycles < recycleLimit);
+    }
+
+    /**
+     * Turns cards over from the stock onto the waste.
+     * @return the number of cards drawn, 0 if the stock is empty.
+     */
+    public int draw() {
+        int n = Math.min(drawCount, stockSize);
+        wasteSize += n;
+        stockSize -= n;
+        return n;
+    }
+
+    /**
+     * Turns the waste over to form a new stock, if the rules allow it.
+     * @return true if the waste was turned over, false otherwise.
+     */
+    public boolean recycle() {
+        if (!canRecycle()) {
+            return false;
+        }
+        stockSize = wasteSize;
+        wasteSize = 0;
+        recycles++;
+        return true;
+    }
+
+    /**
+     * Takes the top card off the waste.  Whichever of the waste and the
+     * stock is shorter closes the gap, so at most half the cards move.
+     * @return the card taken, or null if the waste is empty.
+     */
+    public Card takeWasteTop() {
+        if (wasteSize == 0) {
+            return null;
+        }
+        int top = (start + wasteSize - 1) % ring.length;
+        Card card = ring[top];
+        if (wasteSize - 1 <= stockSize) {
+            // Move the rest of the waste up one place.
+            for (int k = wasteSize - 1; k > 0; k--) {
+                ring[(start + k) % ring.length] = ring[(start + k - 1) % ring.length];
+            }
+            ring[start] = null;
+            start = (start + 1) % ring.length;
+        } else {
+            // Move the stock down one place.
+            for (int k = wasteSize - 1; k < wasteSize - 1 + stockSize; k++) {
+                ring[(start + k) % ring.length] = ring[(start + k + 1) % ring.length];
+            }
+            ring[(start + wasteSize - 1 + stockSize) % ring.length] = null;
+        }
+        wasteSize--;
+        return card;
+    }
+
+    /**
+     * Finds every card that can be brought to the top of the waste by
+     * drawing (and turning the waste over, while recycles are left),
+     * without drawing anything.  The current top of the waste comes first.
+     * @param into the array to put the cards in; it needs room for
+     *             <code>wasteSize() + stockSize()</code> cards
+     * @return the number of cards put in the array.
+     */
+    public int reachableCards(Card[] into) {
+        int total = wasteSize + stockSize;
+        int n = 0;
+        if (wasteSize > 0) {
+            into[n++] = at(wasteSize - 1);
+        }
+        // Draws from the current stock.
+        for (int top = wasteSize; top < total; top += drawCount) {
+            into[n++] = at(Math.min(top + drawCount, total) - 1);
+        }
+        boolean canTurnOver = recycleLimit == UNLIMITED || recycles < recycleLimit;
+        if (!canTurnOver) {
+            return n;
+        }
+        // Once the stock is used up the waste holds every card in ring
+        // order; after it is turned over the draws reach every drawCount-th
+        // position.  Positions the first pass reached are skipped.
+        for (int top = 0; top < total; top += drawCount) {
+            int k = Math.min(top + drawCount, total) - 1;
+            if (!reachedWithoutRecycle(k, total)) {
+                into[n++] = at(k);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Determines if a position can become the top of the waste without
+     * turning the waste over.
+     * @param k the position, counted from the bottom of the waste
+     * @param total the number of cards in the waste and the stock
+     * @return true if the position is the top of the waste now or after
+     *         some draws from the current stock.
+     */
+    private boolean reachedWithoutRecycle(int k, int total) {
+        if (k == wasteSize - 1) {
+            return true;
+        }
+        return k >= wasteSize
+            && ((k - wasteSize + 1) % drawCount == 0 || k == total - 1);
+    }
+
+    /**
+     * Accesses the card at a position counted from the bottom of the waste;
+     * positions past the waste are in the stock, in draw order.
+     * @param k the position, from 0 to <code>wasteSize() + stockSize() - 1</code>
+     * @return the card at the position.
+     */
+    Card at(int k) {
+        return ring[(start + k) % ring.length];
+    }
+
+    /**
+     * Replaces the waste and the stock, for a game restored from a snapshot.
+     * @param cards the cards of the waste, bottom first, then the stock in
+     *              draw order
+     * @param waste the number of cards in the waste
+     * @param stockCards the number of cards in the stock
+     * @param recyclesUsed the number of times the waste has been turned over
+     */
+    void load(Card[] cards, int waste, int stockCards, int recyclesUsed) {
+        clear();
+        System.arraycopy(cards, 0, ring, 0, waste + stockCards);
+        wasteSize = waste;
+        stockSize = stockCards;
+        recycles = recyclesUsed;
+    }
+
+    /**
+     * Generates and returns a string representation of the waste and stock.
+     * @return the cards of the waste, bottom first, then the stock.
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("waste [");
+        for (int k = 0; k < wasteSize + stockSize; k++) {
+            if (k == wasteSize) {
+                s.append("] stock [");
+            } else if (k > 0) {
+                s.append(", ");
+            }
+            s.append(at(k));
+        }
+        if (stockSize == 0) {
+            s.append("] stock [");
+        }
+        return s.append("]").toString();
+    }
+}
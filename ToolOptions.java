@@ -0,0 +1,92 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ToolOptions.java
+ *
+ * <code>ToolOptions</code> reads the command-line options the tools have
+ * in common: "--draw=N" and "--recycles=N" for the draw rules, played with
+ * the other rules of Klondike, and "--nodes=N" and "--budget-ms=N" to
+ * limit each search of the tools that search.  Each tool reads its own
+ * options and hands the rest to <code>read</code>.
+ */
+public class ToolOptions {
+
+    /** The number of cards turned over in one draw. */
+    private int draw;
+
+    /** The number of times the waste may be turned over. */
+    private int recycles;
+
+    /** The largest number of positions a search may expand. */
+    private long maxNodes;
+
+    /** The longest a search may take, in milliseconds. */
+    private long budgetMillis;
+
+    /**
+     * Creates a new <code>ToolOptions</code> instance for a tool that does
+     * not search, with draw 1 and no recycles.
+     */
+    public ToolOptions() {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a new <code>ToolOptions</code> instance with draw 1, no
+     * recycles and a search budget.
+     * @param defaultNodes the positions a search may expand unless
+     *                     "--nodes=N" says otherwise
+     * @param defaultBudgetMillis the milliseconds a search may take unless
+     *                            "--budget-ms=N" says otherwise
+     */
+    public ToolOptions(long defaultNodes, long defaultBudgetMillis) {
+        draw = 1;
+        recycles = 0;
+        maxNodes = defaultNodes;
+        budgetMillis = defaultBudgetMillis;
+    }
+
+    /**
+     * Reads an argument if it is one of the shared options.
+     * @param arg the argument
+     * @return true if the argument was read; false if it is left to the tool.
+     */
+    public boolean read(String arg) {
+        if (arg.startsWith("--draw=")) {
+            draw = Integer.parseInt(arg.substring("--draw=".length()));
+        } else if (arg.startsWith("--recycles=")) {
+            recycles = Integer.parseInt(arg.substring("--recycles=".length()));
+        } else if (arg.startsWith("--nodes=")) {
+            maxNodes = Long.parseLong(arg.substring("--nodes=".length()));
+        } else if (arg.startsWith("--budget-ms=")) {
+            budgetMillis = Long.parseLong(arg.substring("--budget-ms=".length()));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Accesses the rules asked for.
+     * @return the rules of Klondike with the draw rules asked for.
+     */
+    public RuleSet rules() {
+        return RuleSet.KLONDIKE.withDrawRules(draw, recycles);
+    }
+
+    /**
+     * Accesses the largest number of positions a search may expand.
+     * @return the node budget.
+     */
+    public long maxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Accesses the longest a search may take.
+     * @return the time budget, in nanoseconds.
+     */
+    public long maxNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+}